@@ -0,0 +1,63 @@
+package com.argorand.samgov.jmh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.argorand.samgov.beans.ApiResponse;
+import com.argorand.samgov.beans.Solicitation;
+import com.argorand.samgov.lambda.NotifierComponents;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Databind of the full beans from recorded responses: the search response into {@link ApiResponse}
+ * and an opportunity's details into {@link Solicitation}, which is read once per notified result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializationBenchmark {
+
+    private byte[] searchResponse;
+    private byte[] opportunity;
+    private JsonMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        searchResponse = read("fixtures/search-response.json");
+        opportunity = read("fixtures/opportunity.json");
+        objectMapper = NotifierComponents.objectMapper();
+    }
+
+    @Benchmark
+    public ApiResponse apiResponse() {
+        return objectMapper.readValue(searchResponse, ApiResponse.class);
+    }
+
+    @Benchmark
+    public Solicitation solicitation() {
+        return objectMapper.readValue(opportunity, Solicitation.class);
+    }
+
+    static byte[] read(String fixture) throws IOException {
+        try (InputStream in = DeserializationBenchmark.class.getClassLoader().getResourceAsStream(fixture)) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.argorand.samgov.jmh;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+import com.argorand.samgov.lambda.ProcessedOpportunities;
+
+/**
+ * Diffing one page of results against the opportunities a query has already notified about.
+ * {@code removeIf} is the plain diff against the stored {@code processedOpportunities} set; the
+ * other two include reading the query's dedup state as a run does, from the legacy set and from
+ * compact storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessedDiffBenchmark {
+
+    @Param({"1000", "100000"})
+    public int processed;
+
+    @Param({"100"})
+    public int results;
+
+    private static final ProcessedOpportunities.Policy LEGACY = new ProcessedOpportunities.Policy(false, 7, 256, 0.001, 6);
+    private static final ProcessedOpportunities.Policy COMPACT = new ProcessedOpportunities.Policy(true, 7, 256, 0.001, 6);
+
+    private List<SearchHit> page;
+    private Set<String> processedOpportunities;
+    private SamQuery legacyQuery;
+    private SamQuery compactQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        processedOpportunities = IntStream.range(0, processed).mapToObj(ProcessedDiffBenchmark::id).collect(Collectors.toSet());
+        // Half of the page is known already, half is new
+        page = IntStream.range(processed - results / 2, processed + results / 2)
+            .mapToObj(i -> new SearchHit(id(i), "Notice " + i, true, "DEPT OF DEFENSE", "2026-10-18T08:00:00.000+00:00",
+                "o", List.of("541511"), List.of("D300"), null, List.of("100000000"), true))
+            .toList();
+
+        legacyQuery = new SamQuery();
+        legacyQuery.setProcessedOpportunities(new HashSet<>(processedOpportunities));
+
+        // All but the last week's results folded into the Bloom filter
+        compactQuery = new SamQuery();
+        LocalDate today = LocalDate.of(2026, 10, 18);
+        ProcessedOpportunities compact = ProcessedOpportunities.of(compactQuery, COMPACT);
+        List<String> ids = new ArrayList<>(processedOpportunities);
+        int recent = Math.min(ids.size(), 200);
+        compact.record(compactQuery, ids.subList(recent, ids.size()), today.minusDays(30));
+        compact.record(compactQuery, ids.subList(0, recent), today);
+    }
+
+    @Benchmark
+    public List<SearchHit> removeIf() {
+        List<SearchHit> newResults = new ArrayList<>(page);
+        newResults.removeIf(r -> processedOpportunities.contains(r.id()));
+        return newResults;
+    }
+
+    @Benchmark
+    public List<SearchHit> legacyState() {
+        return diff(ProcessedOpportunities.of(legacyQuery, LEGACY));
+    }
+
+    @Benchmark
+    public List<SearchHit> compactState() {
+        return diff(ProcessedOpportunities.of(compactQuery, COMPACT));
+    }
+
+    private List<SearchHit> diff(ProcessedOpportunities state) {
+        return page.stream().filter(r -> !state.contains(r.id())).collect(Collectors.toList());
+    }
+
+    private static String id(int i) {
+        return String.format("%032x", (long) i * 0x9E3779B97F4A7C15L);
+    }
+}
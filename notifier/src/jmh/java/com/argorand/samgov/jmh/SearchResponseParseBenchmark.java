@@ -0,0 +1,62 @@
+package com.argorand.samgov.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.argorand.samgov.beans.SearchPage;
+import com.argorand.samgov.lambda.NotifierComponents;
+import com.argorand.samgov.lambda.SearchResponseParser;
+
+/**
+ * Compares the databind and the streaming parse of a recorded search response. Both start from
+ * the raw response bytes, as delivered by the HTTP client. Run with {@code ./gradlew jmh}; the gc
+ * profiler reports the allocation rate per operation next to the timing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchResponseParseBenchmark {
+
+    @Param({"fixtures/search-response.json"})
+    public String fixture;
+
+    private byte[] response;
+    private SearchResponseParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(fixture)) {
+            response = in.readAllBytes();
+        }
+        parser = new SearchResponseParser(NotifierComponents.objectMapper());
+    }
+
+    @Benchmark
+    public SearchPage databind() {
+        return parser.parse(new String(response, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public SearchPage streaming() {
+        return parser.parse(new ByteArrayInputStream(response));
+    }
+}
@@ -0,0 +1,60 @@
+package com.argorand.samgov.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.Solicitation;
+import com.argorand.samgov.lambda.NotifierComponents;
+import com.argorand.samgov.lambda.SamUtils;
+import com.argorand.samgov.lambda.SearchResponseParser;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Rendering the email of one saved query. The detail fetch is stubbed: every result gets the
+ * details of the recorded opportunity, as if {@code OpportunityEnricher} had returned them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SummaryBenchmark {
+
+    private List<SearchHit> results;
+    private Map<String, Solicitation> details;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        JsonMapper objectMapper = NotifierComponents.objectMapper();
+        results = new SearchResponseParser(objectMapper)
+            .parse(new String(DeserializationBenchmark.read("fixtures/search-response.json"), StandardCharsets.UTF_8))
+            .hits();
+        Solicitation opportunity = objectMapper.readValue(DeserializationBenchmark.read("fixtures/opportunity.json"), Solicitation.class);
+        details = new HashMap<>();
+        results.forEach(result -> details.put(result.id(), opportunity));
+    }
+
+    @Benchmark
+    public String generateSummary() {
+        return SamUtils.generateSummary(results, details);
+    }
+}
@@ -0,0 +1,52 @@
+package com.argorand.samgov.jmh;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.argorand.samgov.lambda.DateSubstitutor;
+import com.argorand.samgov.lambda.SamUtils;
+
+/**
+ * Rewriting a saved search URL for a run and describing it for the email subject, both done once
+ * per saved query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlBenchmark {
+
+    private static final String SAVED_URL = "https://sam.gov/api/prod/sgs/v1/search/?random=1729238400000&index=opp"
+        + "&page=0&sort=-modifiedDate&size=25&mode=search&responseType=json&is_active=true&q=cloud%20migration"
+        + "&qMode=ALL&naics=541511,541512,541519&psc=DA01,DA10&notice_type=o,k,r&set_aside=SBA"
+        + "&modified_date.from=2026-10-01-04:00&modified_date.to=2026-10-18-04:00";
+
+    private final LocalDate from = LocalDate.of(2026, 10, 18);
+
+    @Benchmark
+    public String updateUrl() {
+        return DateSubstitutor.updateUrl(SAVED_URL, from, false);
+    }
+
+    @Benchmark
+    public String updateUrlNewestFirst() {
+        return DateSubstitutor.updateUrl(SAVED_URL, from, true);
+    }
+
+    @Benchmark
+    public String describeUrl() {
+        return SamUtils.describeUrl(SAVED_URL);
+    }
+}
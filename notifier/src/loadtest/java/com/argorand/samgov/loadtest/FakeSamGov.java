@@ -0,0 +1,164 @@
+package com.argorand.samgov.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded stand-in of the sam.gov endpoints the notifier calls. Searches ({@code .../search}, e.g.
+ * {@code /opportunities/v2/search} or the {@code /api/prod/sgs/v1/search/} path of saved URLs) return
+ * synthetic results derived from the {@code q} parameter, so every saved query sees its own stable
+ * results; {@code .../opportunities/{id}} returns the details of one of them.
+ *
+ * <p>Every response is delayed by the configured latency, up to twice as much at random, and a
+ * share of requests is answered with 429 and {@code Retry-After: 1}.
+ */
+public class FakeSamGov implements AutoCloseable {
+
+    /**
+     * @param resultsPerPage results of a page when the request does not ask for a size
+     * @param throttleRate share of requests answered with 429, from 0 to 1
+     */
+    public record Settings(Duration searchLatency, Duration detailsLatency, int pages, int resultsPerPage,
+            double throttleRate) {}
+
+    private static final Pattern DETAILS = Pattern.compile(".*/opportunities/([^/]+)/?$");
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder details = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public FakeSamGov(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public URI baseUrl() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    /**
+     * The id of result {@code index} of the search for {@code query}.
+     */
+    public static String resultId(String query, int index) {
+        return String.format("%08x%08x", query.hashCode(), index);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            Matcher detailsPath = DETAILS.matcher(path);
+            boolean search = path.endsWith("/search") || path.endsWith("/search/");
+            if (!search && !detailsPath.matches()) {
+                respond(exchange, 404, "{}");
+                return;
+            }
+            sleep(search ? settings.searchLatency() : settings.detailsLatency());
+            if (ThreadLocalRandom.current().nextDouble() < settings.throttleRate()) {
+                throttled.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 429, "{}");
+                return;
+            }
+            if (search) {
+                searches.increment();
+                respond(exchange, 200, searchResponse(parameters(exchange.getRequestURI())));
+            } else {
+                details.increment();
+                respond(exchange, 200, detailsResponse(detailsPath.group(1)));
+            }
+        }
+    }
+
+    private String searchResponse(Map<String, String> parameters) {
+        String query = parameters.getOrDefault("q", "");
+        int page = Integer.parseInt(parameters.getOrDefault("page", "0"));
+        int size = parameters.containsKey("size") ? Integer.parseInt(parameters.get("size")) : settings.resultsPerPage();
+        String modifiedDate = Instant.now().toString();
+
+        StringBuilder results = new StringBuilder();
+        for (int i = page * size; i < (page + 1) * size; i++) {
+            if (!results.isEmpty()) {
+                results.append(',');
+            }
+            results.append("{\"_id\":\"").append(resultId(query, i))
+                .append("\",\"title\":\"Load test notice ").append(i).append(" for ").append(query.replace("\"", ""))
+                .append("\",\"descriptions\":[],\"modifiedDate\":\"").append(modifiedDate)
+                .append("\",\"organizationHierarchy\":[{\"level\":1,\"name\":\"DEPT OF LOAD TESTING\"}]}");
+        }
+        return "{\"_embedded\":{\"results\":[" + results + "]},\"page\":{\"size\":" + size
+            + ",\"totalElements\":" + size * settings.pages() + ",\"totalPages\":" + settings.pages()
+            + ",\"number\":" + page + ",\"maxAllowedRecords\":10000}}";
+    }
+
+    private static String detailsResponse(String id) {
+        return "{\"id\":\"" + id + "\",\"description\":[{\"lastModifiedDate\":\"" + Instant.now()
+            + "\",\"body\":\"<p>Synthetic description of opportunity " + id + ".</p>\"}]}";
+    }
+
+    private static Map<String, String> parameters(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        if (uri.getRawQuery() != null) {
+            for (String parameter : uri.getRawQuery().split("&")) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(pair[0], pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/hal+json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(Duration latency) {
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(latency.toNanos() + ThreadLocalRandom.current().nextLong(latency.toNanos() + 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("fake sam.gov served %d searches, %d details, %d throttled", searches.sum(), details.sum(),
+            throttled.sum());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+}
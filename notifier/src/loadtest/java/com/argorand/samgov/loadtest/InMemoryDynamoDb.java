@@ -0,0 +1,351 @@
+package com.argorand.samgov.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+/**
+ * In-memory stand-in of the DynamoDB calls the notifier makes: segmented, paginated and projected
+ * scans, single and batch reads, puts, deletes, and conditional updates. Update expressions support
+ * {@code SET} to a value, {@code ADD}, {@code DELETE} and {@code REMOVE}. Conditions support
+ * {@code attribute_exists}, {@code attribute_not_exists}, {@code =}, {@code <>} and {@code <} on strings
+ * joined by {@code AND}, and parenthesized alternatives joined by {@code OR}. Anything else fails loudly
+ * rather than being ignored.
+ *
+ * <p>Every call is delayed by the configured latency and timed under {@code dynamodb <operation>}.
+ * Tables have a string hash key only.
+ */
+public class InMemoryDynamoDb implements DynamoDbClient {
+
+    private static final int SCAN_PAGE_SIZE = 100;
+    private static final Pattern CLAUSE = Pattern.compile("\\b(SET|ADD|REMOVE|DELETE)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FUNCTION = Pattern.compile("(attribute_exists|attribute_not_exists)\\(\\s*([^)\\s]+)\\s*\\)");
+    private static final Pattern COMPARISON = Pattern.compile("(\\S+)\\s*(=|<>|<)\\s*(\\S+)");
+
+    private record Table(String keyAttribute, NavigableMap<String, Map<String, AttributeValue>> items) {}
+
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final Duration latency;
+    private final StageTimings timings;
+
+    public InMemoryDynamoDb(Duration latency, StageTimings timings) {
+        this.latency = latency;
+        this.timings = timings;
+    }
+
+    public void createTable(String tableName, String keyAttribute) {
+        tables.put(tableName, new Table(keyAttribute, new ConcurrentSkipListMap<>()));
+    }
+
+    public void seed(String tableName, Map<String, AttributeValue> item) {
+        Table table = table(tableName);
+        table.items().put(item.get(table.keyAttribute()).s(), new HashMap<>(item));
+    }
+
+    public int size(String tableName) {
+        return table(tableName).items().size();
+    }
+
+    @Override
+    public ScanResponse scan(ScanRequest request) {
+        long started = call();
+        Table table = table(request.tableName());
+        int limit = request.limit() != null ? request.limit() : SCAN_PAGE_SIZE;
+        NavigableMap<String, Map<String, AttributeValue>> remaining = request.hasExclusiveStartKey()
+            ? table.items().tailMap(request.exclusiveStartKey().get(table.keyAttribute()).s(), false)
+            : table.items();
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        String lastKey = null;
+        for (Map.Entry<String, Map<String, AttributeValue>> entry : remaining.entrySet()) {
+            if (request.totalSegments() != null
+                    && Math.floorMod(entry.getKey().hashCode(), request.totalSegments()) != request.segment()) {
+                continue;
+            }
+            items.add(project(entry.getValue(), request.projectionExpression(), request.expressionAttributeNames()));
+            lastKey = entry.getKey();
+            if (items.size() == limit) {
+                break;
+            }
+        }
+        ScanResponse.Builder response = ScanResponse.builder().items(items).count(items.size()).scannedCount(items.size());
+        if (items.size() == limit && lastKey != null && table.items().higherKey(lastKey) != null) {
+            response.lastEvaluatedKey(Map.of(table.keyAttribute(), AttributeValue.fromS(lastKey)));
+        }
+        timings.record("dynamodb scan", started);
+        return response.build();
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        long started = call();
+        Table table = table(request.tableName());
+        Map<String, AttributeValue> item = table.items().get(request.key().get(table.keyAttribute()).s());
+        GetItemResponse.Builder response = GetItemResponse.builder();
+        if (item != null) {
+            synchronized (item) {
+                response.item(project(item, request.projectionExpression(), request.expressionAttributeNames()));
+            }
+        }
+        timings.record("dynamodb get", started);
+        return response.build();
+    }
+
+    @Override
+    public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+        long started = call();
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        request.requestItems().forEach((tableName, keysAndAttributes) -> {
+            Table table = table(tableName);
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            for (Map<String, AttributeValue> key : keysAndAttributes.keys()) {
+                Map<String, AttributeValue> item = table.items().get(key.get(table.keyAttribute()).s());
+                if (item != null) {
+                    synchronized (item) {
+                        items.add(project(item, keysAndAttributes.projectionExpression(),
+                            keysAndAttributes.expressionAttributeNames()));
+                    }
+                }
+            }
+            responses.put(tableName, items);
+        });
+        timings.record("dynamodb batch get", started);
+        return BatchGetItemResponse.builder().responses(responses).unprocessedKeys(Map.of()).build();
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        long started = call();
+        Table table = table(request.tableName());
+        String key = request.item().get(table.keyAttribute()).s();
+        synchronized (table) {
+            check(table.items().get(key), request.conditionExpression(), request.expressionAttributeNames(),
+                request.expressionAttributeValues());
+            table.items().put(key, new HashMap<>(request.item()));
+        }
+        timings.record("dynamodb put", started);
+        return PutItemResponse.builder().build();
+    }
+
+    @Override
+    public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        long started = call();
+        Table table = table(request.tableName());
+        synchronized (table) {
+            String key = request.key().get(table.keyAttribute()).s();
+            check(table.items().get(key), request.conditionExpression(), request.expressionAttributeNames(),
+                request.expressionAttributeValues());
+            table.items().remove(key);
+        }
+        timings.record("dynamodb delete", started);
+        return DeleteItemResponse.builder().build();
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        long started = call();
+        Table table = table(request.tableName());
+        String key = request.key().get(table.keyAttribute()).s();
+        Map<String, AttributeValue> updated;
+        synchronized (table) {
+            Map<String, AttributeValue> existing = table.items().get(key);
+            check(existing, request.conditionExpression(), request.expressionAttributeNames(),
+                request.expressionAttributeValues());
+            updated = existing == null ? new HashMap<>(request.key()) : new HashMap<>(existing);
+            if (request.updateExpression() != null) {
+                apply(updated, request.updateExpression(), request.expressionAttributeNames(), request.expressionAttributeValues());
+            }
+            // Items are replaced, never changed in place, so readers see whole updates
+            table.items().put(key, updated);
+        }
+        timings.record("dynamodb update", started);
+        UpdateItemResponse.Builder response = UpdateItemResponse.builder();
+        if (request.returnValues() == ReturnValue.ALL_NEW) {
+            response.attributes(updated);
+        }
+        return response.build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Table table(String tableName) {
+        Table table = tables.get(tableName);
+        if (table == null) {
+            throw ResourceNotFoundException.builder().message("Requested resource not found: " + tableName).build();
+        }
+        return table;
+    }
+
+    private long call() {
+        long started = System.nanoTime();
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return started;
+    }
+
+    private static Map<String, AttributeValue> project(Map<String, AttributeValue> item, String projection,
+            Map<String, String> names) {
+        if (projection == null || projection.isBlank()) {
+            return new HashMap<>(item);
+        }
+        Map<String, AttributeValue> projected = new HashMap<>();
+        for (String path : projection.split(",")) {
+            String attribute = name(path.trim(), names);
+            if (item.containsKey(attribute)) {
+                projected.put(attribute, item.get(attribute));
+            }
+        }
+        return projected;
+    }
+
+    private static void check(Map<String, AttributeValue> item, String condition, Map<String, String> names,
+            Map<String, AttributeValue> values) {
+        if (condition == null || condition.isBlank()) {
+            return;
+        }
+        if (condition.matches("(?is).*\\bNOT\\b.*")) {
+            throw new UnsupportedOperationException("Unsupported condition: " + condition);
+        }
+        Map<String, AttributeValue> current = item == null ? Map.of() : item;
+        for (String term : condition.split("(?i)\\s+AND\\s+")) {
+            term = term.trim();
+            boolean holds = false;
+            if (term.startsWith("(") && term.endsWith(")")) {
+                for (String alternative : term.substring(1, term.length() - 1).split("(?i)\\s+OR\\s+")) {
+                    holds |= holds(current, alternative.trim(), condition, names, values);
+                }
+            } else if (term.matches("(?is).*\\bOR\\b.*")) {
+                throw new UnsupportedOperationException("Unsupported condition: " + condition);
+            } else {
+                holds = holds(current, term, condition, names, values);
+            }
+            if (!holds) {
+                throw ConditionalCheckFailedException.builder().message("The conditional request failed").build();
+            }
+        }
+    }
+
+    private static boolean holds(Map<String, AttributeValue> item, String term, String condition, Map<String, String> names,
+            Map<String, AttributeValue> values) {
+        Matcher function = FUNCTION.matcher(term);
+        Matcher comparison = COMPARISON.matcher(term);
+        if (function.matches()) {
+            boolean exists = item.containsKey(name(function.group(2), names));
+            return function.group(1).equals("attribute_exists") == exists;
+        }
+        if (comparison.matches()) {
+            AttributeValue expected = values.get(comparison.group(3));
+            AttributeValue actual = item.get(name(comparison.group(1), names));
+            if (comparison.group(2).equals("<")) {
+                // Like DynamoDB, a missing attribute or one of another type fails the comparison
+                return actual != null && actual.s() != null && expected.s() != null && actual.s().compareTo(expected.s()) < 0;
+            }
+            return comparison.group(2).equals("=") == expected.equals(actual);
+        }
+        throw new UnsupportedOperationException("Unsupported condition: " + condition);
+    }
+
+    private static void apply(Map<String, AttributeValue> item, String expression, Map<String, String> names,
+            Map<String, AttributeValue> values) {
+        Matcher clauses = CLAUSE.matcher(expression);
+        List<int[]> bounds = new ArrayList<>();
+        while (clauses.find()) {
+            bounds.add(new int[] {clauses.start(), clauses.end()});
+        }
+        for (int i = 0; i < bounds.size(); i++) {
+            String clause = expression.substring(bounds.get(i)[0], bounds.get(i)[1]).toUpperCase();
+            String actions = expression.substring(bounds.get(i)[1], i + 1 < bounds.size() ? bounds.get(i + 1)[0] : expression.length());
+            for (String action : actions.split(",")) {
+                action = action.trim();
+                switch (clause) {
+                    case "SET" -> {
+                        String[] assignment = action.split("=", 2);
+                        String operand = assignment[1].trim();
+                        if (!operand.startsWith(":")) {
+                            throw new UnsupportedOperationException("Unsupported SET action: " + action);
+                        }
+                        item.put(name(assignment[0].trim(), names), values.get(operand));
+                    }
+                    case "REMOVE" -> item.remove(name(action, names));
+                    case "ADD", "DELETE" -> {
+                        String[] parts = action.split("\\s+", 2);
+                        String attribute = name(parts[0], names);
+                        AttributeValue value = values.get(parts[1].trim());
+                        AttributeValue merged = clause.equals("ADD") ? add(item.get(attribute), value) : delete(item.get(attribute), value);
+                        if (merged == null) {
+                            item.remove(attribute);
+                        } else {
+                            item.put(attribute, merged);
+                        }
+                    }
+                    default -> throw new UnsupportedOperationException("Unsupported clause: " + clause);
+                }
+            }
+        }
+    }
+
+    private static AttributeValue add(AttributeValue current, AttributeValue value) {
+        if (value.hasSs()) {
+            Set<String> merged = new LinkedHashSet<>(current == null ? List.of() : current.ss());
+            merged.addAll(value.ss());
+            return AttributeValue.fromSs(new ArrayList<>(merged));
+        }
+        if (value.n() != null) {
+            double sum = Double.parseDouble(value.n()) + (current == null ? 0 : Double.parseDouble(current.n()));
+            return AttributeValue.fromN(sum == Math.rint(sum) ? Long.toString((long) sum) : Double.toString(sum));
+        }
+        throw new UnsupportedOperationException("ADD supports string sets and numbers only");
+    }
+
+    private static AttributeValue delete(AttributeValue current, AttributeValue value) {
+        if (current == null) {
+            return null;
+        }
+        Set<String> remaining = new LinkedHashSet<>(current.ss());
+        value.ss().forEach(remaining::remove);
+        return remaining.isEmpty() ? null : AttributeValue.fromSs(new ArrayList<>(remaining));
+    }
+
+    private static String name(String path, Map<String, String> names) {
+        return path.startsWith("#") ? names.get(path) : path;
+    }
+}
@@ -0,0 +1,127 @@
+package com.argorand.samgov.loadtest;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+import com.argorand.samgov.lambda.InMemoryMetricsRegistry;
+import com.argorand.samgov.lambda.NotifierComponents;
+import com.argorand.samgov.lambda.NotifierSettings;
+import com.argorand.samgov.lambda.QueryUpdates;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+/**
+ * Runs the notifier against {@link FakeSamGov}, {@link InMemoryDynamoDb} and {@link RecordingSes}
+ * and reports its throughput and the latency of each stage. The run goes through
+ * {@link QueryUpdates#processAll()}, the same code as the {@code checkQueryUpdates} function.
+ *
+ * <p>The harness is configured with {@code loadtest.*} system properties (see {@link #main}); the
+ * notifier itself with the usual {@code samgov.*} properties, so
+ * {@code ./gradlew loadTest -Psamgov.concurrency.enabled=true -Ploadtest.queries=5000} compares a
+ * setting under load. The async pipeline and checkpoints need real AWS clients and are not supported.
+ */
+public class LoadTestDriver {
+
+    private static final String TABLE = "load-test-queries";
+
+    /**
+     * Properties, with their defaults: {@code loadtest.queries} (1000) saved queries,
+     * {@code loadtest.runs} (1) runs over the same table, {@code loadtest.pages} (1) pages and
+     * {@code loadtest.results-per-page} (25) results of every search, {@code loadtest.known-results}
+     * (20) results of every query already processed, {@code loadtest.search-latency} (300ms),
+     * {@code loadtest.details-latency} (150ms), {@code loadtest.dynamodb-latency} (5ms),
+     * {@code loadtest.ses-latency} (20ms), {@code loadtest.ses-max-send-rate} (14), and
+     * {@code loadtest.throttle-rate} (0) share of sam.gov requests answered with 429.
+     */
+    public static void main(String[] args) throws Exception {
+        int queries = Integer.getInteger("loadtest.queries", 1000);
+        int runs = Integer.getInteger("loadtest.runs", 1);
+        int resultsPerPage = Integer.getInteger("loadtest.results-per-page", 25);
+        int knownResults = Integer.getInteger("loadtest.known-results", 20);
+        FakeSamGov.Settings samGov = new FakeSamGov.Settings(
+            duration("loadtest.search-latency", "PT0.3S"), duration("loadtest.details-latency", "PT0.15S"),
+            Integer.getInteger("loadtest.pages", 1), resultsPerPage,
+            Double.parseDouble(System.getProperty("loadtest.throttle-rate", "0")));
+        if (Boolean.getBoolean("samgov.async.enabled") || !System.getProperty("samgov.checkpoint.table", "").isEmpty()) {
+            throw new IllegalArgumentException("The async pipeline and checkpoints are not supported by the load test");
+        }
+
+        StageTimings timings = new StageTimings();
+        InMemoryDynamoDb dynamoDb = new InMemoryDynamoDb(duration("loadtest.dynamodb-latency", "PT0.005S"), timings);
+        RecordingSes ses = new RecordingSes(duration("loadtest.ses-latency", "PT0.02S"),
+            Double.parseDouble(System.getProperty("loadtest.ses-max-send-rate", "14")), timings);
+
+        try (FakeSamGov server = new FakeSamGov(samGov)) {
+            Map<String, String> defaults = new HashMap<>();
+            defaults.put("aws.region", "us-east-1");
+            defaults.put("SAVED_QUERIES_TABLE", TABLE);
+            defaults.put("samgov.api.base-url", server.baseUrl().toString());
+            NotifierSettings settings = NotifierSettings.from(key -> System.getProperty(key, defaults.get(key)));
+
+            TableSchema<SamQuery> tableSchema = NotifierComponents.samQueryTableSchema();
+            seed(dynamoDb, tableSchema, queries, Math.min(knownResults, resultsPerPage));
+
+            ExecutorService executor = NotifierComponents.httpExecutor(settings);
+            HttpClient httpClient = new TimedHttpClient(NotifierComponents.httpClient(settings, executor), timings);
+            InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+            QueryUpdates queryUpdates = new QueryUpdates(settings,
+                DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDb).build(), dynamoDb, ses,
+                NotifierComponents.objectMapper(), NotifierComponents.opportunityCache(settings), httpClient, tableSchema,
+                metrics, NotifierComponents.tracer(settings, NotifierComponents.objectMapper()));
+
+            for (int run = 1; run <= runs; run++) {
+                timings.clear();
+                metrics.reset();
+                long sentBefore = ses.sent();
+                long started = System.nanoTime();
+                queryUpdates.processAll();
+                double seconds = (System.nanoTime() - started) / 1e9;
+
+                System.out.printf("Run %d/%d: %d queries in %.2f s, %.1f queries/s, %d emails%n", run, runs, queries,
+                    seconds, queries / seconds, ses.sent() - sentBefore);
+                timings.report().forEach(line -> System.out.println("  " + line));
+                System.out.println("  Notifier metrics: " + metrics.total());
+            }
+            System.out.println(server);
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Saves {@code queries} searches of {@code load-<i>}, each with its first {@code knownResults}
+     * results already processed, so every query sends one email with the rest.
+     */
+    private static void seed(InMemoryDynamoDb dynamoDb, TableSchema<SamQuery> tableSchema, int queries, int knownResults) {
+        dynamoDb.createTable(TABLE, "notificationId");
+        String createdAt = Instant.now().minus(Duration.ofDays(30)).toString();
+        for (int i = 0; i < queries; i++) {
+            String query = "load-" + i;
+            Set<String> processed = new HashSet<>();
+            for (int result = 0; result < knownResults; result++) {
+                processed.add(FakeSamGov.resultId(query, result));
+            }
+            SamQuery savedQuery = new SamQuery();
+            savedQuery.setNotificationId(String.format("load-%06d", i));
+            savedQuery.setUserId("load-user-" + i % 100);
+            savedQuery.setCreatedAt(createdAt);
+            savedQuery.setQueryUrl("https://sam.gov/api/prod/sgs/v1/search/?index=opp&page=0&sort=-modifiedDate"
+                + "&size=25&mode=search&is_active=true&q=" + query);
+            savedQuery.setQueryDescription("Load test query " + i);
+            savedQuery.setEmail("load-" + i + "@example.com");
+            savedQuery.setProcessedOpportunities(processed.isEmpty() ? null : processed);
+            dynamoDb.seed(TABLE, tableSchema.itemToMap(savedQuery, true));
+        }
+    }
+
+    private static Duration duration(String key, String defaultValue) {
+        return Duration.parse(System.getProperty(key, defaultValue));
+    }
+}
@@ -0,0 +1,61 @@
+package com.argorand.samgov.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import software.amazon.awssdk.services.ses.SesClient;
+import software.amazon.awssdk.services.ses.model.GetSendQuotaRequest;
+import software.amazon.awssdk.services.ses.model.GetSendQuotaResponse;
+import software.amazon.awssdk.services.ses.model.SendEmailRequest;
+import software.amazon.awssdk.services.ses.model.SendEmailResponse;
+
+/**
+ * Stand-in of SES that counts the emails instead of sending them. Every send is delayed by the
+ * configured latency and timed under {@code ses send}.
+ */
+public class RecordingSes implements SesClient {
+
+    private final Duration latency;
+    private final double maxSendRate;
+    private final StageTimings timings;
+    private final LongAdder sent = new LongAdder();
+
+    public RecordingSes(Duration latency, double maxSendRate, StageTimings timings) {
+        this.latency = latency;
+        this.maxSendRate = maxSendRate;
+        this.timings = timings;
+    }
+
+    public long sent() {
+        return sent.sum();
+    }
+
+    @Override
+    public SendEmailResponse sendEmail(SendEmailRequest request) {
+        long started = System.nanoTime();
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sent.increment();
+        timings.record("ses send", started);
+        return SendEmailResponse.builder().messageId(Long.toHexString(System.nanoTime())).build();
+    }
+
+    @Override
+    public GetSendQuotaResponse getSendQuota(GetSendQuotaRequest request) {
+        return GetSendQuotaResponse.builder().maxSendRate(maxSendRate).max24HourSend(1_000_000.0).sentLast24Hours(0.0).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
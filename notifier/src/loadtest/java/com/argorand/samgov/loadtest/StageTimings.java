@@ -0,0 +1,48 @@
+package com.argorand.samgov.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durations of the I/O calls of a run, per stage, as seen by the notifier.
+ */
+public class StageTimings {
+
+    private final Map<String, Queue<Long>> stages = new ConcurrentSkipListMap<>();
+
+    public void record(String stage, long startedNanos) {
+        stages.computeIfAbsent(stage, k -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - startedNanos);
+    }
+
+    public void clear() {
+        stages.clear();
+    }
+
+    /**
+     * One line per stage with the call count and the p50, p99 and maximum duration in milliseconds.
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        stages.forEach((stage, durations) -> {
+            long[] sorted = durations.stream().mapToLong(Long::longValue).sorted().toArray();
+            if (sorted.length > 0) {
+                lines.add(String.format("%-18s %7d calls  p50 %8.1f ms  p99 %8.1f ms  max %8.1f ms", stage, sorted.length,
+                    millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)), millis(sorted[sorted.length - 1])));
+            }
+        });
+        return lines;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,111 @@
+package com.argorand.samgov.loadtest;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * Times every exchange of the notifier with sam.gov, under {@code sam.gov search} or
+ * {@code sam.gov details}. Retries of the request controller are timed one by one.
+ */
+public class TimedHttpClient extends HttpClient {
+
+    private final HttpClient delegate;
+    private final StageTimings timings;
+
+    public TimedHttpClient(HttpClient delegate, StageTimings timings) {
+        this.delegate = delegate;
+        this.timings = timings;
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        try {
+            return delegate.send(request, handler);
+        } finally {
+            timings.record(stage(request), started);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        long started = System.nanoTime();
+        return delegate.sendAsync(request, handler).whenComplete((response, e) -> timings.record(stage(request), started));
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        long started = System.nanoTime();
+        return delegate.sendAsync(request, handler, pushPromiseHandler)
+            .whenComplete((response, e) -> timings.record(stage(request), started));
+    }
+
+    private static String stage(HttpRequest request) {
+        String path = request.uri().getPath();
+        return path.endsWith("/search") || path.endsWith("/search/") ? "sam.gov search" : "sam.gov details";
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return delegate.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,32 @@
+package com.argorand.samgov.beans;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class Naics {
+
+    @JsonProperty("code")
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private List<String> code;
+
+    @JsonProperty("type")
+    private String type;
+
+    public void setCode(List<String> code) {
+        this.code = code;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<String> getCode() {
+        return code;
+    }
+
+    public String getType() {
+        return type;
+    }
+}
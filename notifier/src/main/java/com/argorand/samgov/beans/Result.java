@@ -3,6 +3,8 @@ package com.argorand.samgov.beans;
 import java.util.List;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import tools.jackson.databind.JsonNode;
+
 public class Result {
     @JsonProperty("isCanceled")
     private boolean isCanceled;
@@ -55,6 +57,16 @@ public class Result {
     @JsonProperty("responseDateActual")
     private String responseDateActual;
 
+    @JsonProperty("naics")
+    private List<Naics> naics;
+
+    @JsonProperty("psc")
+    private List<Type> psc;
+
+    // A code or a code and value pair, read as is
+    @JsonProperty("setAside")
+    private JsonNode setAside;
+
     public void setCanceled(boolean isCanceled) {
         this.isCanceled = isCanceled;
     }
@@ -123,6 +135,18 @@ public class Result {
         this.responseDateActual = responseDateActual;
     }
 
+    public void setNaics(List<Naics> naics) {
+        this.naics = naics;
+    }
+
+    public void setPsc(List<Type> psc) {
+        this.psc = psc;
+    }
+
+    public void setSetAside(JsonNode setAside) {
+        this.setAside = setAside;
+    }
+
     public boolean isCanceled() {
         return isCanceled;
     }
@@ -190,4 +214,16 @@ public class Result {
     public String getResponseDateActual() {
         return responseDateActual;
     }
+
+    public List<Naics> getNaics() {
+        return naics;
+    }
+
+    public List<Type> getPsc() {
+        return psc;
+    }
+
+    public JsonNode getSetAside() {
+        return setAside;
+    }
 }
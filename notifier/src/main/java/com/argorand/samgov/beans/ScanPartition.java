@@ -0,0 +1,7 @@
+package com.argorand.samgov.beans;
+
+/**
+ * The share of the saved queries table one worker invocation processes: scan segment
+ * {@code segment} of {@code totalSegments}. Sent as the worker's JSON payload.
+ */
+public record ScanPartition(int segment, int totalSegments) {}
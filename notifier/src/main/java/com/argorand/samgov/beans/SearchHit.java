@@ -0,0 +1,61 @@
+package com.argorand.samgov.beans;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Compact form of a search result, holding only the fields used to diff and render notifications
+ * and to match saved searches locally. The code lists are empty, never null, when the result has none.
+ */
+public record SearchHit(
+    String id,
+    String title,
+    boolean hasDescriptions,
+    String organizationName,
+    String modifiedDate,
+    String noticeType,
+    List<String> naics,
+    List<String> psc,
+    String setAside,
+    List<String> organizationIds,
+    boolean active
+) {
+
+    public static SearchHit from(Result result) {
+        List<Organization> hierarchy = Optional.ofNullable(result.getOrganizationHierarchy()).orElse(List.of());
+        String organizationName = hierarchy.stream()
+            .filter(o -> o.getLevel() == 1)
+            .findFirst()
+            .map(Organization::getName)
+            .orElse(null);
+        List<String> naics = Optional.ofNullable(result.getNaics()).orElse(List.of()).stream()
+            .filter(Objects::nonNull)
+            .flatMap(n -> Optional.ofNullable(n.getCode()).orElse(List.of()).stream())
+            .filter(Objects::nonNull)
+            .toList();
+        List<String> psc = Optional.ofNullable(result.getPsc()).orElse(List.of()).stream()
+            .filter(Objects::nonNull)
+            .map(Type::getCode)
+            .filter(Objects::nonNull)
+            .toList();
+        List<String> organizationIds = hierarchy.stream()
+            .map(Organization::getOrganizationId)
+            .filter(Objects::nonNull)
+            .toList();
+        return new SearchHit(result.getId(), result.getTitle(), result.getDescriptions() != null,
+            organizationName, result.getModifiedDate(),
+            Optional.ofNullable(result.getTypeInfo()).map(Type::getCode).orElse(null),
+            naics, psc, code(result.getSetAside()), organizationIds, result.isActive());
+    }
+
+    /**
+     * The code of a value that is either a plain code or a code and value pair.
+     */
+    private static String code(JsonNode node) {
+        JsonNode code = node != null && node.isObject() ? node.get("code") : node;
+        return code == null || code.isNull() || !code.isValueNode() ? null : code.asString();
+    }
+}
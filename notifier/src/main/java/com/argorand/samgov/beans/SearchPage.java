@@ -0,0 +1,15 @@
+package com.argorand.samgov.beans;
+
+import java.util.List;
+
+/**
+ * One page of sam.gov search results. {@code page} is null when the response had no paging block.
+ */
+public record SearchPage(List<SearchHit> hits, Page page) {
+
+    public static SearchPage from(ApiResponse response) {
+        return new SearchPage(
+            response.getEmbedded().getResults().stream().map(SearchHit::from).toList(),
+            response.getPage());
+    }
+}
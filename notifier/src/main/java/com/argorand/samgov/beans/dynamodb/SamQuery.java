@@ -4,6 +4,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
@@ -21,6 +22,8 @@ public class SamQuery {
     private String queryDescription;
     private String email;
     private Set<String> processedOpportunities;
+    private Set<String> recentOpportunities;
+    private SdkBytes opportunityHistory;
     private Integer version;
 
     @DynamoDbPartitionKey
@@ -85,6 +88,24 @@ public class SamQuery {
         this.processedOpportunities = processedOpportunities;
     }
 
+    @DynamoDbAttribute("email_recent")
+    public Set<String> getRecentOpportunities() {
+        return recentOpportunities;
+    }
+
+    public void setRecentOpportunities(Set<String> recentOpportunities) {
+        this.recentOpportunities = recentOpportunities;
+    }
+
+    @DynamoDbAttribute("email_history")
+    public SdkBytes getOpportunityHistory() {
+        return opportunityHistory;
+    }
+
+    public void setOpportunityHistory(SdkBytes opportunityHistory) {
+        this.opportunityHistory = opportunityHistory;
+    }
+
     public String getEmail() {
         return email;
     }
@@ -0,0 +1,340 @@
+package com.argorand.samgov.lambda;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the requests built by {@link RestRequestFactory} to sam.gov.
+ *
+ * <p>The number of requests in flight follows AIMD: every fast successful response raises the limit
+ * by {@code 1/limit}, a 429, a 5xx, a timeout or a response slower than the latency target halves
+ * it, at most once per latency target. Throttled, failed and timed out requests are retried with
+ * full jitter backoff, or after {@code Retry-After} when sam.gov sends one. Requests without a
+ * timeout get the default one, and no request or retry is started past the run deadline. With
+ * {@code acceptCompressed} every request asks for a compressed response, so responses must be
+ * read with the {@link ResponseDecoding} handlers.
+ *
+ * <p>Requests never block the caller; requests over the limit wait in a queue. The limit lives in a
+ * {@link Limit} that outlasts the run, so a warm container starts where the previous run left off,
+ * and runs of the same container share it.
+ */
+public class AdaptiveRequestController {
+
+    /**
+     * Settings of a run. A policy that is not {@code adaptive} sends every request immediately and
+     * only once, as a plain client would.
+     */
+    public record Policy(boolean adaptive, int initialLimit, int maxLimit, Duration latencyTarget, int maxAttempts,
+            Duration baseBackoff, Duration maxBackoff, Duration requestTimeout) {
+
+        /**
+         * @param requestTimeout timeout of requests that do not set their own, null for none
+         */
+        public static Policy passThrough(Duration requestTimeout) {
+            return new Policy(false, Integer.MAX_VALUE, Integer.MAX_VALUE, Duration.ZERO, 1, Duration.ZERO, Duration.ZERO,
+                requestTimeout);
+        }
+    }
+
+    /**
+     * The concurrency limit of a policy and the requests waiting for it. Kept as long as the HTTP
+     * client, as both describe the same connection to sam.gov.
+     */
+    public static final class Limit {
+
+        private static final Logger log = LoggerFactory.getLogger(Limit.class);
+
+        private final Policy policy;
+        private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private double limit;
+        private int inFlight;
+        private long lastDecreaseNanos;
+
+        public Limit(Policy policy) {
+            if (policy.initialLimit() < 1 || policy.maxLimit() < policy.initialLimit()) {
+                throw new IllegalArgumentException("Limits must satisfy 1 <= initialLimit <= maxLimit, got "
+                    + policy.initialLimit() + " and " + policy.maxLimit());
+            }
+            this.policy = policy;
+            this.limit = policy.initialLimit();
+            // The first overload signal may decrease at once
+            this.lastDecreaseNanos = System.nanoTime() - policy.latencyTarget().toNanos();
+        }
+
+        synchronized double current() {
+            return limit;
+        }
+
+        private CompletableFuture<Void> acquire() {
+            synchronized (this) {
+                if (inFlight < limit) {
+                    inFlight++;
+                    return CompletableFuture.completedFuture(null);
+                }
+                CompletableFuture<Void> slot = new CompletableFuture<>();
+                waiting.add(slot);
+                return slot;
+            }
+        }
+
+        private void release() {
+            synchronized (this) {
+                inFlight--;
+            }
+            admitWaiting();
+        }
+
+        // Waiters are completed outside the lock, their continuation sends the next request
+        private void admitWaiting() {
+            while (true) {
+                CompletableFuture<Void> slot;
+                synchronized (this) {
+                    if (waiting.isEmpty() || inFlight >= limit) {
+                        return;
+                    }
+                    inFlight++;
+                    slot = waiting.poll();
+                }
+                slot.complete(null);
+            }
+        }
+
+        private void increase() {
+            if (!policy.adaptive()) {
+                return;
+            }
+            synchronized (this) {
+                limit = Math.min(policy.maxLimit(), limit + 1 / limit);
+            }
+            admitWaiting();
+        }
+
+        private synchronized void decrease() {
+            if (!policy.adaptive()) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos < policy.latencyTarget().toNanos()) {
+                // One overload signal per round trip, the responses of a burst all report the same congestion
+                return;
+            }
+            lastDecreaseNanos = now;
+            limit = Math.max(1, limit / 2);
+            log.info("Reduced sam.gov concurrency to {}", (int) limit);
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(AdaptiveRequestController.class);
+
+    private final HttpClient client;
+    private final Policy policy;
+    private final Limit limit;
+    private final Instant runDeadline;
+    private final boolean acceptCompressed;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * A controller with a limit of its own.
+     *
+     * @param runDeadline instant after which no request is started, null for none
+     */
+    public AdaptiveRequestController(HttpClient client, Policy policy, Instant runDeadline, boolean acceptCompressed) {
+        this(client, new Limit(policy), runDeadline, acceptCompressed);
+    }
+
+    /**
+     * A controller of one run, sharing {@code limit} with the runs before and beside it.
+     *
+     * @param runDeadline instant after which no request is started, null for none
+     */
+    public AdaptiveRequestController(HttpClient client, Limit limit, Instant runDeadline, boolean acceptCompressed) {
+        if (limit.policy.maxAttempts() < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive, got " + limit.policy.maxAttempts());
+        }
+        this.client = client;
+        this.policy = limit.policy;
+        this.limit = limit;
+        this.runDeadline = runDeadline;
+        this.acceptCompressed = acceptCompressed;
+    }
+
+    /**
+     * Sends the request, retrying it as the policy allows. Completes with the last response, which
+     * may still be an error status, or exceptionally with the last failure.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return attempt(request, handler, 1);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> attempt(HttpRequest request, HttpResponse.BodyHandler<T> handler, int attempt) {
+        return limit.acquire().thenCompose(ignored -> {
+            HttpRequest prepared;
+            try {
+                prepared = prepare(request);
+            } catch (HttpTimeoutException e) {
+                limit.release();
+                return CompletableFuture.failedFuture(e);
+            }
+            requests.increment();
+            long started = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> response;
+            try {
+                response = client.sendAsync(prepared, handler);
+            } catch (RuntimeException e) {
+                limit.release();
+                return CompletableFuture.failedFuture(e);
+            }
+            return response
+                .handle((r, e) -> {
+                    limit.release();
+                    return onComplete(request, handler, attempt, r, e instanceof CompletionException ? e.getCause() : e,
+                        System.nanoTime() - started);
+                })
+                .thenCompose(Function.identity());
+        });
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> onComplete(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+            int attempt, HttpResponse<T> response, Throwable failure, long latencyNanos) {
+        boolean retryable;
+        if (failure != null) {
+            retryable = failure instanceof IOException;
+            if (failure instanceof HttpTimeoutException) {
+                timeouts.increment();
+                limit.decrease();
+            }
+        } else if (response.statusCode() == 429 || response.statusCode() >= 500) {
+            retryable = true;
+            if (response.statusCode() == 429) {
+                throttled.increment();
+            } else {
+                serverErrors.increment();
+            }
+            limit.decrease();
+        } else {
+            retryable = false;
+            if (latencyNanos > policy.latencyTarget().toNanos()) {
+                limit.decrease();
+            } else {
+                limit.increase();
+            }
+        }
+
+        CompletableFuture<HttpResponse<T>> result = failure == null
+            ? CompletableFuture.completedFuture(response)
+            : CompletableFuture.failedFuture(failure);
+        if (!retryable || attempt >= policy.maxAttempts()) {
+            return result;
+        }
+
+        Duration retryAfter = response == null ? null : retryAfter(response.headers(), Instant.now());
+        if (retryAfter != null && retryAfter.compareTo(policy.maxBackoff()) > 0) {
+            log.warn("sam.gov asked to retry {} after {}, giving up", request.uri(), retryAfter);
+            return result;
+        }
+        long capNanos = Math.min(policy.maxBackoff().toNanos(), policy.baseBackoff().toNanos() << Math.min(attempt, 20));
+        long delayNanos = retryAfter != null ? retryAfter.toNanos() : ThreadLocalRandom.current().nextLong(capNanos + 1);
+        if (runDeadline != null && Instant.now().plusNanos(delayNanos).isAfter(runDeadline)) {
+            return result;
+        }
+
+        retries.increment();
+        log.info("Retrying {} in {} ms (attempt {}/{}): {}", request.uri(), TimeUnit.NANOSECONDS.toMillis(delayNanos),
+            attempt + 1, policy.maxAttempts(), failure != null ? failure.toString() : "HTTP " + response.statusCode());
+        if (response != null) {
+            discard(response);
+        }
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS))
+            .thenCompose(ignored -> attempt(request, handler, attempt + 1));
+    }
+
+    private HttpRequest prepare(HttpRequest request) throws HttpTimeoutException {
+        Duration timeout = request.timeout().orElse(policy.requestTimeout());
+        if (runDeadline != null) {
+            Duration remaining = Duration.between(Instant.now(), runDeadline);
+            if (remaining.isNegative() || remaining.isZero()) {
+                throw new HttpTimeoutException("Run deadline reached, not requesting " + request.uri());
+            }
+            if (timeout == null || timeout.compareTo(remaining) > 0) {
+                timeout = remaining;
+            }
+        }
+        boolean keepTimeout = timeout == null || request.timeout().filter(timeout::equals).isPresent();
+        if (keepTimeout && !acceptCompressed) {
+            return request;
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+        if (!keepTimeout) {
+            builder.timeout(timeout);
+        }
+        if (acceptCompressed) {
+            builder.setHeader("Accept-Encoding", ResponseDecoding.ACCEPT_ENCODING);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The delay asked for by a {@code Retry-After} header, in seconds or as an RFC 1123 date; null
+     * when there is none or it cannot be read.
+     */
+    static Duration retryAfter(HttpHeaders headers, Instant now) {
+        String value = headers.firstValue("Retry-After").orElse(null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Duration delay = Duration.between(now,
+                    ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    // A streamed body that is not going to be read still holds its connection
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof AutoCloseable body) {
+            try {
+                body.close();
+            } catch (Exception ignored) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("sam.gov requests: %d, retries: %d, throttled: %d, server errors: %d, timeouts: %d, "
+            + "concurrency limit: %.1f", requests.sum(), retries.sum(), throttled.sum(), serverErrors.sum(), timeouts.sum(),
+            limit.current());
+    }
+}
@@ -0,0 +1,47 @@
+package com.argorand.samgov.lambda;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A semaphore that never blocks: {@link #acquire()} returns a future that completes once a permit
+ * is free, in the order the permits were asked for. Waiters are completed outside the lock, so
+ * their continuations may acquire and release again.
+ */
+public class AsyncPermits {
+
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private int available;
+
+    public AsyncPermits(int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be positive, got " + permits);
+        }
+        this.available = permits;
+    }
+
+    public CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            if (available > 0) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> permit = new CompletableFuture<>();
+            waiting.add(permit);
+            return permit;
+        }
+    }
+
+    public void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                available++;
+                return;
+            }
+        }
+        next.complete(null);
+    }
+}
@@ -0,0 +1,169 @@
+package com.argorand.samgov.lambda;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+
+/**
+ * Runs saved queries without blocking a thread on I/O. Every scan segment is a paginated scan
+ * publisher of the async table, and every query it emits runs through
+ * {@link QueryProcessor#processAsync(SamQuery)}. Demand is the backpressure: a segment asks for
+ * {@code maxInFlight} queries up front and for one more whenever one finishes, so the publisher
+ * never reads further ahead than the pipeline can work on, and a handful of threads keep all of
+ * these queries' requests in flight.
+ *
+ * <p>A failing query is logged and never affects the others. Once {@code stopAt} has passed no
+ * further queries are requested; the ones in flight are finished.
+ */
+public class AsyncQueryPipeline {
+
+    private final Logger log = LoggerFactory.getLogger(AsyncQueryPipeline.class);
+
+    private final DynamoDbAsyncTable<SamQuery> table;
+    private final List<String> attributesToProject;
+    private final QueryProcessor processor;
+    private final int maxInFlight;
+
+    /**
+     * @param attributesToProject attributes read from every item, empty reads all of them
+     * @param maxInFlight queries processed at once, shared by the segments of a run
+     */
+    public AsyncQueryPipeline(DynamoDbAsyncTable<SamQuery> table, List<String> attributesToProject,
+            QueryProcessor processor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive, got " + maxInFlight);
+        }
+        this.table = table;
+        this.attributesToProject = attributesToProject;
+        this.processor = processor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Completes when every query of the given segments has been processed, or when the time is up
+     * and the queries in flight have been.
+     *
+     * @param stopAt instant after which no query is started, null for none
+     */
+    public CompletableFuture<Void> run(List<Integer> segments, int totalSegments, Instant stopAt) {
+        int perSegment = Math.max(1, maxInFlight / segments.size());
+        return CompletableFuture.allOf(segments.stream()
+            .map(segment -> {
+                ScanEnhancedRequest.Builder request = ScanEnhancedRequest.builder()
+                    .segment(segment)
+                    .totalSegments(totalSegments);
+                if (!attributesToProject.isEmpty()) {
+                    request.attributesToProject(attributesToProject);
+                }
+                SegmentSubscriber subscriber = new SegmentSubscriber(segment, totalSegments, perSegment, stopAt);
+                table.scan(request.build()).items().subscribe(subscriber);
+                return subscriber.done;
+            })
+            .toArray(CompletableFuture[]::new));
+    }
+
+    private final class SegmentSubscriber implements Subscriber<SamQuery> {
+
+        private final int segment;
+        private final int totalSegments;
+        private final int limit;
+        private final Instant stopAt;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Subscription subscription;
+        private int inFlight;
+        private boolean ended;
+
+        SegmentSubscriber(int segment, int totalSegments, int limit, Instant stopAt) {
+            this.segment = segment;
+            this.totalSegments = totalSegments;
+            this.limit = limit;
+            this.stopAt = stopAt;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(limit);
+        }
+
+        @Override
+        public void onNext(SamQuery userQuery) {
+            if (stopAt != null && Instant.now().isAfter(stopAt)) {
+                log.warn("Time budget used up, the remaining queries of segment {}/{} are left to the next run",
+                    segment, totalSegments);
+                subscription.cancel();
+                end();
+                return;
+            }
+            synchronized (this) {
+                if (ended) {
+                    // Delivered after the cancellation
+                    return;
+                }
+                inFlight++;
+            }
+            CompletableFuture<Void> result;
+            try {
+                result = processor.processAsync(userQuery);
+            } catch (Exception e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            result.whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    log.error("Query {} failed", userQuery.getNotificationId(),
+                        failure instanceof CompletionException ? failure.getCause() : failure);
+                }
+                boolean request;
+                boolean finished;
+                synchronized (this) {
+                    inFlight--;
+                    request = !ended;
+                    finished = ended && inFlight == 0;
+                }
+                if (finished) {
+                    done.complete(null);
+                } else if (request) {
+                    subscription.request(1);
+                }
+            });
+        }
+
+        @Override
+        public void onError(Throwable failure) {
+            log.error("Scan of segment {}/{} failed, its remaining queries are skipped in this run",
+                segment, totalSegments, failure);
+            end();
+        }
+
+        @Override
+        public void onComplete() {
+            end();
+        }
+
+        private void end() {
+            boolean finished;
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+                finished = inFlight == 0;
+            }
+            if (finished) {
+                done.complete(null);
+            }
+        }
+    }
+}
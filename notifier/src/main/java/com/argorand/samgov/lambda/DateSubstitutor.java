@@ -1,8 +1,8 @@
 package com.argorand.samgov.lambda;
 
 import java.net.URI;
+import java.time.LocalDate;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
@@ -12,13 +12,20 @@ import java.util.stream.Collectors;
 public class DateSubstitutor {
 
     public static String updateUrl(String inputUrl) {
-        try {
+        return updateUrl(inputUrl, LocalDate.now(ZoneId.of("US/Eastern")), false);
+    }
 
-            ZonedDateTime now = ZonedDateTime.now(ZoneId.of("US/Eastern"));
+    /**
+     * Searches for opportunities modified since {@code from}. sam.gov filters by day, finer
+     * watermarks have to be applied to the results. With {@code newestFirst} results are sorted by
+     * descending modification date.
+     */
+    public static String updateUrl(String inputUrl, LocalDate from, boolean newestFirst) {
+        try {
 
             // DateTime formatter for the desired format
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'-00:00'");
-            String modifiedDateFrom = now.format(formatter);
+            String modifiedDateFrom = from.format(formatter);
             //String modifiedDateTo = URLEncoder.encode(now.format(formatter), StandardCharsets.UTF_8);
 
             // Parse the input URL
@@ -38,6 +45,9 @@ public class DateSubstitutor {
             // Substitute `modified_date` parameters
             queryParams.put("modified_date.from", modifiedDateFrom);
             queryParams.put("modified_date.to", "");
+            if (newestFirst) {
+                queryParams.put("sort", "-modifiedDate");
+            }
 
             // Reconstruct the query string
             String updatedQuery = queryParams.entrySet().stream()
@@ -0,0 +1,183 @@
+package com.argorand.samgov.lambda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+
+/**
+ * Delivery stage between the query loop and SES. Rendered emails wait in a bounded queue, which
+ * blocks the query loop when full, and are drained by several sender threads. Every send takes a
+ * token from a bucket filled at the SES maximum send rate; throttled and failed sends are retried
+ * with jittered exponential backoff.
+ *
+ * <p>{@link #sendAsync} never blocks its caller, which in the async pipeline is a thread completing
+ * I/O: when the queue is full the email waits for room on a virtual thread of its own.
+ */
+public class EmailDeliveryQueue implements EmailSender {
+
+    /**
+     * @param delivery completed once the email was sent or given up on, null when nobody waits for it
+     */
+    private record Email(String recipient, String subject, String bodyHtml, Span parent, CompletableFuture<Void> delivery) {
+        static final Email END = new Email(null, null, null, Span.NONE, null);
+    }
+
+    private final Logger log = LoggerFactory.getLogger(EmailDeliveryQueue.class);
+
+    private final EmailSender delegate;
+    private final TokenBucket rateLimiter;
+    private final int maxAttempts;
+    private final BlockingQueue<Email> queue;
+    private final List<Thread> senders = new ArrayList<>();
+
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final List<Long> latenciesMillis = Collections.synchronizedList(new ArrayList<>());
+
+    public EmailDeliveryQueue(EmailSender delegate, TokenBucket rateLimiter, int capacity, int senderCount, int maxAttempts) {
+        if (senderCount < 1) {
+            throw new IllegalArgumentException("senderCount must be positive, got " + senderCount);
+        }
+        this.delegate = delegate;
+        this.rateLimiter = rateLimiter;
+        this.maxAttempts = maxAttempts;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < senderCount; i++) {
+            senders.add(Thread.ofVirtual().name("ses-sender-" + i).start(this::drain));
+        }
+    }
+
+    /**
+     * Queues the email, waiting while the queue is full.
+     */
+    @Override
+    public void send(String recipient, String subject, String bodyHtml, Span parent) throws InterruptedException {
+        queue.put(new Email(recipient, subject, bodyHtml, parent, null));
+        maxDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    /**
+     * Queues the email without blocking; the result completes on the sender thread once the email
+     * was sent, or exceptionally once it was given up on.
+     */
+    @Override
+    public CompletableFuture<Void> sendAsync(String recipient, String subject, String bodyHtml, Span parent) {
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        Email email = new Email(recipient, subject, bodyHtml, parent, delivery);
+        if (queue.offer(email)) {
+            maxDepth.accumulateAndGet(queue.size(), Math::max);
+            return delivery;
+        }
+        Thread.ofVirtual().name("ses-enqueue").start(() -> {
+            try {
+                queue.put(email);
+                maxDepth.accumulateAndGet(queue.size(), Math::max);
+            } catch (InterruptedException e) {
+                delivery.completeExceptionally(e);
+            }
+        });
+        return delivery;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    private void drain() {
+        try {
+            for (Email email = queue.take(); email != Email.END; email = queue.take()) {
+                deliver(email);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliver(Email email) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            long start = System.nanoTime();
+            try {
+                delegate.send(email.recipient(), email.subject(), email.bodyHtml(), email.parent());
+                latenciesMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                delivered.increment();
+                if (email.delivery() != null) {
+                    email.delivery().complete(null);
+                }
+                return;
+            } catch (InterruptedException e) {
+                if (email.delivery() != null) {
+                    email.delivery().completeExceptionally(e);
+                }
+                throw e;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    failed.increment();
+                    log.error("Could not send email to {} after {} attempt(s)", email.recipient(), attempt, e);
+                    if (email.delivery() != null) {
+                        email.delivery().completeExceptionally(e);
+                    }
+                    return;
+                }
+                retries.increment();
+                long backoff = ThreadLocalRandom.current().nextLong(100, 200L << Math.min(attempt, 6));
+                log.warn("Sending email to {} failed ({}), retrying in {} ms", email.recipient(), e.getMessage(), backoff);
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        return e instanceof AwsServiceException serviceException
+            ? serviceException.isThrottlingException() || serviceException.statusCode() >= 500
+            : true;
+    }
+
+    /**
+     * Delivers everything still queued, stops the senders and logs the delivery summary.
+     */
+    @Override
+    public void close() {
+        try {
+            for (int i = 0; i < senders.size(); i++) {
+                queue.put(Email.END);
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            senders.forEach(Thread::interrupt);
+        }
+
+        List<Long> latencies;
+        synchronized (latenciesMillis) {
+            latencies = new ArrayList<>(latenciesMillis);
+        }
+        Collections.sort(latencies);
+        log.info("Email delivery finished: delivered={}, failed={}, retries={}, maxQueueDepth={}, sendLatencyMs p50={} p99={} max={}",
+            delivered.sum(), failed.sum(), retries.sum(), maxDepth.get(),
+            percentile(latencies, 0.50), percentile(latencies, 0.99), latencies.isEmpty() ? 0 : latencies.get(latencies.size() - 1));
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1));
+    }
+}
@@ -0,0 +1,31 @@
+package com.argorand.samgov.lambda;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Delivers a rendered notification. Implementations may deliver asynchronously; {@link #close()}
+ * returns once everything handed over before has been delivered or given up on.
+ */
+public interface EmailSender extends AutoCloseable {
+
+    /**
+     * @param parent span the SES call is a child of, also when it happens after this returns
+     */
+    void send(String recipient, String subject, String bodyHtml, Span parent) throws Exception;
+
+    /**
+     * Delivers without blocking where the implementation can; by default sends on the caller thread.
+     */
+    default CompletableFuture<Void> sendAsync(String recipient, String subject, String bodyHtml, Span parent) {
+        try {
+            send(recipient, subject, bodyHtml, parent);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    default void close() {
+    }
+}
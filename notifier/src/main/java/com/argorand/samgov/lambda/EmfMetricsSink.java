@@ -0,0 +1,91 @@
+package com.argorand.samgov.lambda;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Writes the metrics of a run to standard output in CloudWatch Embedded Metric Format. Lambda
+ * forwards the lines to CloudWatch Logs, which extracts the metrics from them, so publishing costs
+ * no request of its own.
+ *
+ * <p>A metric carries at most 100 values per line, so distributions with more samples are spread
+ * over several lines; the counters go on the first one. Every metric is reported with the
+ * configured dimensions, e.g. the function of the run.
+ */
+public class EmfMetricsSink implements MetricsSink {
+
+    private static final int MAX_VALUES_PER_LINE = 100;
+
+    private final JsonMapper objectMapper;
+    private final String namespace;
+    private final Map<String, String> dimensions;
+    private final PrintStream out;
+
+    public EmfMetricsSink(JsonMapper objectMapper, String namespace, Map<String, String> dimensions, PrintStream out) {
+        this.objectMapper = objectMapper;
+        this.namespace = namespace;
+        this.dimensions = dimensions;
+        this.out = out;
+    }
+
+    @Override
+    public void publish(RunMetrics metrics) {
+        Map<RunMetrics.Metric, double[]> distributions = new LinkedHashMap<>();
+        int lines = 1;
+        for (RunMetrics.Metric metric : RunMetrics.Metric.values()) {
+            if (!metric.isCounter()) {
+                double[] values = metrics.values(metric);
+                distributions.put(metric, values);
+                lines = Math.max(lines, (values.length + MAX_VALUES_PER_LINE - 1) / MAX_VALUES_PER_LINE);
+            }
+        }
+        long timestamp = System.currentTimeMillis();
+        for (int line = 0; line < lines; line++) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            if (line == 0) {
+                for (RunMetrics.Metric metric : RunMetrics.Metric.values()) {
+                    if (metric.isCounter()) {
+                        values.put(metric.metricName(), metrics.count(metric));
+                    }
+                }
+            }
+            int from = line * MAX_VALUES_PER_LINE;
+            distributions.forEach((metric, all) -> {
+                if (from < all.length) {
+                    double[] slice = Arrays.copyOfRange(all, from, Math.min(all.length, from + MAX_VALUES_PER_LINE));
+                    values.put(metric.metricName(), slice);
+                }
+            });
+            out.println(objectMapper.writeValueAsString(line(timestamp, values)));
+        }
+    }
+
+    private Map<String, Object> line(long timestamp, Map<String, Object> values) {
+        List<Map<String, String>> definitions = new ArrayList<>();
+        for (RunMetrics.Metric metric : RunMetrics.Metric.values()) {
+            if (values.containsKey(metric.metricName())) {
+                definitions.add(Map.of("Name", metric.metricName(), "Unit", metric.unit().cloudWatchName()));
+            }
+        }
+        Map<String, Object> directive = new LinkedHashMap<>();
+        directive.put("Namespace", namespace);
+        directive.put("Dimensions", List.of(List.copyOf(dimensions.keySet())));
+        directive.put("Metrics", definitions);
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("Timestamp", timestamp);
+        metadata.put("CloudWatchMetrics", List.of(directive));
+
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("_aws", metadata);
+        line.putAll(dimensions);
+        line.putAll(values);
+        return line;
+    }
+}
@@ -0,0 +1,52 @@
+package com.argorand.samgov.lambda;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Appends spans to a file, one X-Ray segment document per line, for local runs without a daemon.
+ * Slow queries show up by sorting the {@code query} spans by duration; their children tell which
+ * call took the time.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private final Logger log = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private final JsonMapper objectMapper;
+    private final BufferedWriter writer;
+
+    public FileSpanExporter(JsonMapper objectMapper, Path file) {
+        this.objectMapper = objectMapper;
+        try {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open trace file " + file, e);
+        }
+    }
+
+    @Override
+    public void export(Map<String, Object> document) {
+        try {
+            String line = objectMapper.writeValueAsString(document);
+            synchronized (writer) {
+                writer.write(line);
+                writer.newLine();
+                writer.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write span {}", document.get("name"), e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.argorand.samgov.lambda;
+
+/**
+ * Keeps the metrics of all runs in memory, for local runs and the load test, where there is no
+ * CloudWatch to read log lines.
+ */
+public class InMemoryMetricsRegistry implements MetricsSink {
+
+    private RunMetrics total = new RunMetrics();
+    private int runs;
+
+    @Override
+    public synchronized void publish(RunMetrics metrics) {
+        total.addAll(metrics);
+        runs++;
+    }
+
+    /**
+     * Everything recorded by the runs published since the last {@link #reset()}.
+     */
+    public synchronized RunMetrics total() {
+        return total;
+    }
+
+    public synchronized int runs() {
+        return runs;
+    }
+
+    public synchronized void reset() {
+        total = new RunMetrics();
+        runs = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return runs + " runs: " + total;
+    }
+}
@@ -0,0 +1,42 @@
+package com.argorand.samgov.lambda;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.ScanPartition;
+
+/**
+ * Runs every partition on its own virtual thread of the coordinator's process and waits for all
+ * of them, for local runs and tests of the fan-out without Lambda.
+ */
+public class InProcessPartitionDispatcher implements PartitionDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(InProcessPartitionDispatcher.class);
+
+    private final Consumer<ScanPartition> worker;
+
+    public InProcessPartitionDispatcher(Consumer<ScanPartition> worker) {
+        this.worker = worker;
+    }
+
+    @Override
+    public void dispatch(List<ScanPartition> partitions) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (ScanPartition partition : partitions) {
+            threads.add(Thread.ofVirtual().name("partition-" + partition.segment()).start(() -> {
+                try {
+                    worker.accept(partition);
+                } catch (Exception e) {
+                    log.error("Segment {}/{} failed", partition.segment(), partition.totalSegments(), e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.argorand.samgov.lambda;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.ScanPartition;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.InvocationType;
+import software.amazon.awssdk.services.lambda.model.InvokeRequest;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Invokes the worker function asynchronously once per partition, so every partition runs in its
+ * own Lambda container with its own timeout. Lambda retries failed asynchronous invocations itself.
+ */
+public class LambdaPartitionDispatcher implements PartitionDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(LambdaPartitionDispatcher.class);
+
+    private final LambdaClient lambdaClient;
+    private final String workerFunction;
+    private final JsonMapper objectMapper;
+
+    public LambdaPartitionDispatcher(LambdaClient lambdaClient, String workerFunction, JsonMapper objectMapper) {
+        if (workerFunction == null || workerFunction.isBlank()) {
+            throw new IllegalArgumentException("A worker function is required to dispatch partitions to Lambda");
+        }
+        this.lambdaClient = lambdaClient;
+        this.workerFunction = workerFunction;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void dispatch(List<ScanPartition> partitions) {
+        int failed = 0;
+        for (ScanPartition partition : partitions) {
+            try {
+                lambdaClient.invoke(InvokeRequest.builder()
+                    .functionName(workerFunction)
+                    .invocationType(InvocationType.EVENT)
+                    .payload(SdkBytes.fromUtf8String(objectMapper.writeValueAsString(partition)))
+                    .build());
+            } catch (Exception e) {
+                failed++;
+                log.error("Could not invoke {} for segment {}/{}, it is skipped in this run",
+                    workerFunction, partition.segment(), partition.totalSegments(), e);
+            }
+        }
+        log.info("Dispatched {} of {} partitions to {}", partitions.size() - failed, partitions.size(), workerFunction);
+    }
+}
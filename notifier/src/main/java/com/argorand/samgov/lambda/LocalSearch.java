@@ -0,0 +1,113 @@
+package com.argorand.samgov.lambda;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.SearchHit;
+
+/**
+ * Fetch-once search: every opportunity modified since the start of the day is fetched once per run,
+ * and saved searches are answered from it by {@link QueryMatcher}, so sam.gov traffic grows with the
+ * number of opportunities that change rather than with the number of saved queries. Searches that do
+ * not compile, or whose window starts before the feed, are still sent to sam.gov, and so is every
+ * search when the feed cannot be fetched in full.
+ *
+ * <p>The feed is sorted newest first. An opportunity modified while the feed is read may move to a
+ * page already read; it is modified after the feed started, so the next run's window covers it as
+ * long as watermarks are not advanced past the start of the feed, see {@link Feed#searchedAt()}.
+ */
+public class LocalSearch {
+
+    private final Logger log = LoggerFactory.getLogger(LocalSearch.class);
+
+    private final SearchPager pager;
+    private final SearchWindow window;
+    private final String feedUrl;
+    private final boolean keywords;
+    private final Span run;
+
+    private CompletableFuture<Feed> feed;
+
+    /**
+     * @param pager reads the feed, with a page size and page limit that fit a whole day of changes
+     * @param feedUrl search of all opportunities; its modification range is replaced like that of saved searches
+     * @param keywords whether keyword queries are matched locally, against titles only
+     * @param run span of the run, the feed is fetched under it
+     */
+    public LocalSearch(SearchPager pager, SearchWindow window, String feedUrl, boolean keywords, Span run) {
+        this.pager = pager;
+        this.window = window;
+        this.feedUrl = feedUrl;
+        this.keywords = keywords;
+        this.run = run;
+    }
+
+    /**
+     * The feed of the run, fetched on first use; completes with null when it could not be fetched in full.
+     */
+    public synchronized CompletableFuture<Feed> feed() {
+        if (feed == null) {
+            feed = CompletableFuture.supplyAsync(this::fetchFeed, task -> Thread.ofVirtual().name("samgov-feed").start(task));
+        }
+        return feed;
+    }
+
+    private Feed fetchFeed() {
+        Instant startedAt = Instant.now();
+        Instant from = window.startOfDay(startedAt);
+        String preparedUrl = window.prepare(feedUrl, from);
+        log.info("Fetching the opportunity feed: {}", preparedUrl);
+        Span span = run.child("feed", null);
+        try {
+            List<SearchHit> hits = pager.fetchAll(preparedUrl, span);
+            OpportunityIndex index = new OpportunityIndex(hits);
+            log.info("Indexed {} opportunities modified since {} for local matching", index.size(), from);
+            span.annotate("opportunities", index.size()).end();
+            return new Feed(startedAt, from, index);
+        } catch (Exception e) {
+            log.warn("Could not fetch the opportunity feed, all queries are searched on sam.gov", e);
+            span.end(e);
+            return null;
+        }
+    }
+
+    /**
+     * The opportunities modified between {@code from} and {@code startedAt}.
+     */
+    public final class Feed {
+
+        private final Instant startedAt;
+        private final Instant from;
+        private final OpportunityIndex index;
+
+        private Feed(Instant startedAt, Instant from, OpportunityIndex index) {
+            this.startedAt = startedAt;
+            this.from = from;
+            this.index = index;
+        }
+
+        /**
+         * When the searches of this run count as done: the start of the feed, which is never later
+         * than a search sent to sam.gov afterwards, so watermarks stay behind every change the feed may have missed.
+         */
+        public Instant searchedAt() {
+            return startedAt;
+        }
+
+        /**
+         * The results of a search modified since {@code searchFrom}, in feed order, or null when the
+         * search has to be sent to sam.gov.
+         */
+        public List<SearchHit> search(String preparedUrl, Instant searchFrom) {
+            if (searchFrom.isBefore(from)) {
+                return null;
+            }
+            QueryMatcher matcher = QueryMatcher.compile(preparedUrl, keywords);
+            return matcher == null ? null : index.match(matcher);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.argorand.samgov.lambda;
+
+/**
+ * Receives the metrics of every run once it ended.
+ */
+public interface MetricsSink {
+
+    void publish(RunMetrics metrics);
+}
@@ -0,0 +1,154 @@
+package com.argorand.samgov.lambda;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.awscore.client.builder.AwsAsyncClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.ses.SesAsyncClient;
+import software.amazon.awssdk.services.ses.SesClient;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Builds the long-lived components of the notifier from its settings, for the beans of
+ * {@link SamNotifier} and for {@link NotifierHandler}, which has no container to build them.
+ */
+public class NotifierComponents {
+
+    private NotifierComponents() {
+    }
+
+    public static JsonMapper objectMapper() {
+        return JsonMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+                .build();
+    }
+
+    public static DynamoDbClient dynamoDbClient(NotifierSettings settings) {
+        return configure(DynamoDbClient.builder(), settings).build();
+    }
+
+    public static SesClient sesClient(NotifierSettings settings) {
+        return configure(SesClient.builder(), settings).build();
+    }
+
+    public static LambdaClient lambdaClient(NotifierSettings settings) {
+        return configure(LambdaClient.builder(), settings).build();
+    }
+
+    /**
+     * The DynamoDB client of the async pipeline; see {@link #configureAsync}.
+     */
+    public static DynamoDbAsyncClient dynamoDbAsyncClient(NotifierSettings settings) {
+        return configureAsync(configure(DynamoDbAsyncClient.builder(), settings), settings).build();
+    }
+
+    /**
+     * The SES client of the async pipeline; see {@link #configureAsync}.
+     */
+    public static SesAsyncClient sesAsyncClient(NotifierSettings settings) {
+        return configureAsync(configure(SesAsyncClient.builder(), settings), settings).build();
+    }
+
+    /**
+     * Threads completing sam.gov exchanges; a fixed pool when threads are configured, otherwise a
+     * virtual thread per task.
+     */
+    public static ExecutorService httpExecutor(NotifierSettings settings) {
+        if (settings.httpExecutorThreads > 0) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(settings.httpExecutorThreads, task -> {
+                Thread thread = new Thread(task, "samgov-http-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("samgov-http-", 0).factory());
+    }
+
+    /**
+     * One client, and so one connection pool, per container. HTTP/2 lets concurrent requests to
+     * sam.gov share a connection; the client falls back to HTTP/1.1 when the server does not offer it.
+     */
+    public static HttpClient httpClient(NotifierSettings settings, ExecutorService executor) {
+        return HttpClient.newBuilder()
+                .version(settings.httpVersion)
+                .connectTimeout(settings.httpConnectTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Introspecting the bean is expensive, so the schema is built once per container.
+     */
+    public static TableSchema<SamQuery> samQueryTableSchema() {
+        return TableSchema.fromBean(SamQuery.class);
+    }
+
+    public static OpportunityCache opportunityCache(NotifierSettings settings) {
+        return new OpportunityCache(settings.detailsCacheMaxEntries, settings.detailsCacheTtl);
+    }
+
+    /**
+     * The sink of the run metrics, null when they are not recorded. EMF lines carry the function of
+     * the run as dimension, so coordinator and workers of a fanned out run are told apart.
+     */
+    public static MetricsSink metricsSink(NotifierSettings settings, JsonMapper objectMapper) {
+        return switch (settings.metricsSink) {
+            case "emf" -> new EmfMetricsSink(objectMapper, settings.metricsNamespace,
+                Map.of("Function", settings.functionDefinition), System.out);
+            case "memory" -> new InMemoryMetricsRegistry();
+            case "none" -> null;
+            default -> throw new IllegalArgumentException("Unknown metrics sink " + settings.metricsSink
+                + ", expected emf, memory or none");
+        };
+    }
+
+    /**
+     * Traces runs to the X-Ray daemon or to a file of segment documents, or not at all.
+     */
+    public static Tracer tracer(NotifierSettings settings, JsonMapper objectMapper) {
+        return switch (settings.tracingExporter) {
+            case "xray" -> new Tracer(new XRayUdpExporter(objectMapper, settings.xrayDaemonAddress));
+            case "file" -> new Tracer(new FileSpanExporter(objectMapper, Path.of(settings.tracingFile)));
+            case "none" -> Tracer.disabled();
+            default -> throw new IllegalArgumentException("Unknown tracing exporter " + settings.tracingExporter
+                + ", expected xray, file or none");
+        };
+    }
+
+    /**
+     * The connection pool grows with the pipeline's in-flight limit beyond the SDK default of 50.
+     * Responses complete on the SDK's own pool rather than the sam.gov executor: continuations of the
+     * pipeline may wait for SES sends, which could never complete if they shared a fixed pool with them.
+     */
+    private static <B extends AwsAsyncClientBuilder<B, ?>> B configureAsync(B builder, NotifierSettings settings) {
+        return builder
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(Math.max(settings.asyncMaxInFlight, 50)));
+    }
+
+    private static <B extends AwsClientBuilder<B, ?>> B configure(B builder, NotifierSettings settings) {
+        builder.region(Region.of(settings.region))
+                .credentialsProvider(DefaultCredentialsProvider.builder().build());
+
+        if (settings.awsEndpoint != null && !settings.awsEndpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(settings.awsEndpoint));
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,125 @@
+package com.argorand.samgov.lambda;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.argorand.samgov.beans.ScanPartition;
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Lambda entry point without Spring: builds the components directly during the init phase and
+ * runs the same {@link QueryUpdates} as the functions of {@link SamNotifier}. Shipped in the
+ * {@code slim} jar, which leaves out the Spring libraries, for a shorter cold start.
+ *
+ * <p>Settings have the keys of the Spring application and are resolved from system properties,
+ * environment variables (upper case, dots and dashes as underscores, e.g. {@code SAMGOV_TIME_BUDGET}),
+ * {@code application-<profile>.properties} of the active profiles and {@code application.properties},
+ * in that order. {@code spring.cloud.function.definition} selects the run as it does for
+ * {@code FunctionInvoker}.
+ */
+public class NotifierHandler implements RequestHandler<Map<String, Object>, Void> {
+
+    private final Logger log = LoggerFactory.getLogger(NotifierHandler.class);
+
+    private final NotifierSettings settings;
+    private final QueryUpdates queryUpdates;
+
+    /**
+     * Called by the Lambda runtime once per container.
+     */
+    public NotifierHandler() {
+        this(NotifierSettings.from(propertyLookup()));
+    }
+
+    public NotifierHandler(NotifierSettings settings) {
+        this.settings = settings;
+        JsonMapper objectMapper = NotifierComponents.objectMapper();
+        DynamoDbClient regularDynamoDbClient = NotifierComponents.dynamoDbClient(settings);
+        TableSchema<SamQuery> tableSchema = NotifierComponents.samQueryTableSchema();
+        HttpClient httpClient = NotifierComponents.httpClient(settings, NotifierComponents.httpExecutor(settings));
+        this.queryUpdates = new QueryUpdates(settings,
+            DynamoDbEnhancedClient.builder().dynamoDbClient(regularDynamoDbClient).build(), regularDynamoDbClient,
+            NotifierComponents.sesClient(settings), objectMapper, NotifierComponents.opportunityCache(settings),
+            httpClient, tableSchema, NotifierComponents.metricsSink(settings, objectMapper),
+            NotifierComponents.tracer(settings, objectMapper));
+
+        if (settings.priming) {
+            try {
+                new StartupPrimer(objectMapper, tableSchema, httpClient).prime(settings.primingConnect);
+            } catch (Exception e) {
+                log.warn("Priming failed, the first run pays for its own warm-up", e);
+            }
+        }
+    }
+
+    @Override
+    public Void handleRequest(Map<String, Object> input, Context context) {
+        switch (settings.functionDefinition) {
+            case "checkQueryUpdates" -> queryUpdates.processAll();
+            case "processQueryPartition" -> queryUpdates.processPartition(partition(input));
+            case "coordinateQueryUpdates" -> queryUpdates.coordinate(queryUpdates::processPartition);
+            default -> throw new IllegalStateException("Unknown function " + settings.functionDefinition);
+        }
+        return null;
+    }
+
+    private static ScanPartition partition(Map<String, Object> input) {
+        if (input == null || !(input.get("segment") instanceof Number segment)
+                || !(input.get("totalSegments") instanceof Number totalSegments)) {
+            throw new IllegalArgumentException("Expected a partition payload, got " + input);
+        }
+        return new ScanPartition(segment.intValue(), totalSegments.intValue());
+    }
+
+    private static Function<String, String> propertyLookup() {
+        Properties defaults = load("application.properties", null);
+        String profiles = System.getProperty("spring.profiles.active",
+            System.getenv().getOrDefault("SPRING_PROFILES_ACTIVE", defaults.getProperty("spring.profiles.active", "")));
+        Properties properties = defaults;
+        for (String profile : profiles.split(",")) {
+            if (!profile.isBlank()) {
+                properties = load("application-" + profile.trim() + ".properties", properties);
+            }
+        }
+        Properties files = properties;
+        return key -> {
+            String value = System.getProperty(key);
+            if (value == null) {
+                value = System.getenv(key);
+            }
+            if (value == null) {
+                value = System.getenv(key.replace('.', '_').replace('-', '_').toUpperCase(Locale.ROOT));
+            }
+            return value != null ? value : files.getProperty(key);
+        };
+    }
+
+    // Later profiles override earlier ones, as in Spring
+    private static Properties load(String resource, Properties defaults) {
+        Properties properties = new Properties(defaults);
+        try (InputStream in = NotifierHandler.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + resource, e);
+        }
+        return properties;
+    }
+}
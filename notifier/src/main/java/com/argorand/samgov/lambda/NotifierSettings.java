@@ -0,0 +1,255 @@
+package com.argorand.samgov.lambda;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The configuration of the notifier, read through a property lookup so that the Spring function
+ * (which passes its {@code Environment}) and the plain {@link NotifierHandler} share one set of
+ * keys and defaults. The keys are documented in {@code additional-spring-configuration-metadata.json}.
+ */
+public class NotifierSettings {
+
+    private static final Pattern SIMPLE_DURATION = Pattern.compile("^([+-]?\\d+)(ns|us|ms|s|m|h|d)?$");
+
+    final String region;
+    final String awsEndpoint;
+    final String savedQueriesTable;
+    final String senderEmailAddress;
+    final String functionDefinition;
+
+    final boolean priming;
+    final boolean primingConnect;
+
+    final boolean concurrentExecution;
+    final int maxConcurrency;
+    final int scanSegments;
+    final boolean projectedScan;
+    final int fanoutPartitions;
+    final boolean fanoutInProcess;
+    final String fanoutWorkerFunction;
+    final Duration timeBudget;
+    final String checkpointTable;
+    final boolean asyncPipeline;
+    final int asyncMaxInFlight;
+
+    final boolean deduplicateSearches;
+    final boolean digest;
+    final boolean watermarks;
+    final Duration watermarkOverlap;
+    final int watermarkMaxLookbackDays;
+
+    final int searchPageSize;
+    final int searchMaxPages;
+    final boolean streamingParse;
+    final boolean localMatching;
+    final boolean localMatchingKeywords;
+    final String localMatchingFeedUrl;
+    final int localMatchingPageSize;
+    final int localMatchingMaxPages;
+    final int detailsMaxInFlight;
+    final Duration detailsRequestTimeout;
+    final int detailsCacheMaxEntries;
+    final Duration detailsCacheTtl;
+
+    final boolean compactStorage;
+    final int recentWindowDays;
+    final int historyInitialCapacity;
+    final double historyFalsePositiveRate;
+    final int historyMaxBlocks;
+    final boolean deltaWrites;
+    final int writeAttempts;
+
+    final boolean deliveryQueue;
+    final int deliveryQueueCapacity;
+    final int deliverySenders;
+    final int deliveryAttempts;
+    final double sesMaxSendRate;
+
+    final URI apiBaseUrl;
+    final HttpClient.Version httpVersion;
+    final Duration httpConnectTimeout;
+    final Duration httpReadTimeout;
+    final int httpExecutorThreads;
+    final boolean httpCompression;
+    final boolean requestControl;
+    final int controlInitialLimit;
+    final int controlMaxLimit;
+    final Duration controlLatencyTarget;
+    final int controlMaxAttempts;
+    final Duration controlBaseBackoff;
+    final Duration controlMaxBackoff;
+    final Duration controlRequestTimeout;
+    final Duration runTimeout;
+
+    final String metricsSink;
+    final String metricsNamespace;
+
+    final String tracingExporter;
+    final String tracingFile;
+    final String xrayDaemonAddress;
+
+    private final Function<String, String> lookup;
+
+    /**
+     * @param lookup resolves a property key to its value, null when it is not set
+     */
+    public static NotifierSettings from(Function<String, String> lookup) {
+        return new NotifierSettings(lookup);
+    }
+
+    private NotifierSettings(Function<String, String> lookup) {
+        this.lookup = lookup;
+
+        region = string("aws.region", null);
+        awsEndpoint = string("aws.endpoint", "");
+        savedQueriesTable = string("SAVED_QUERIES_TABLE", "__FIXME__MISSING_TABLE_NAME");
+        senderEmailAddress = string("SES_SENDER", "api@argorand.io");
+        functionDefinition = string("spring.cloud.function.definition", "checkQueryUpdates");
+
+        priming = bool("samgov.priming.enabled", false);
+        primingConnect = bool("samgov.priming.connect", true);
+
+        concurrentExecution = bool("samgov.concurrency.enabled", false);
+        maxConcurrency = integer("samgov.concurrency.max", 16);
+        scanSegments = integer("samgov.scan.segments", 1);
+        projectedScan = bool("samgov.scan.projected", false);
+        fanoutPartitions = integer("samgov.fanout.partitions", 4);
+        fanoutInProcess = bool("samgov.fanout.in-process", false);
+        fanoutWorkerFunction = string("samgov.fanout.worker-function", "");
+        timeBudget = duration("samgov.time-budget", Duration.ZERO);
+        checkpointTable = string("samgov.checkpoint.table", "");
+        asyncPipeline = bool("samgov.async.enabled", false);
+        asyncMaxInFlight = integer("samgov.async.max-in-flight", 64);
+
+        deduplicateSearches = bool("samgov.dedup-searches.enabled", false);
+        digest = bool("samgov.digest.enabled", false);
+        // Only the per query scan resumes where a run stopped, the others would serve the same queries first every time
+        if (!timeBudget.isZero() && (asyncPipeline || deduplicateSearches || digest)) {
+            throw new IllegalArgumentException("samgov.time-budget cannot be combined with samgov.async.enabled, "
+                + "samgov.dedup-searches.enabled or samgov.digest.enabled");
+        }
+        watermarks = bool("samgov.watermark.enabled", false);
+        watermarkOverlap = duration("samgov.watermark.overlap", Duration.ofHours(1));
+        watermarkMaxLookbackDays = integer("samgov.watermark.max-lookback-days", 7);
+
+        searchPageSize = integer("samgov.search.page-size", 0);
+        // With watermarks a window can span several days, which rarely fits one page
+        searchMaxPages = integer("samgov.search.max-pages", watermarks ? 10 : 1);
+        if (watermarks && searchMaxPages < 2) {
+            throw new IllegalArgumentException("samgov.search.max-pages must be at least 2 with samgov.watermark.enabled, got "
+                + searchMaxPages);
+        }
+        streamingParse = bool("samgov.search.streaming-parse", false);
+        localMatching = bool("samgov.local-matching.enabled", false);
+        localMatchingKeywords = bool("samgov.local-matching.keywords", false);
+        localMatchingFeedUrl = string("samgov.local-matching.feed-url",
+            "https://sam.gov/api/prod/sgs/v1/search/?index=opp&page=0&sort=-modifiedDate&mode=search&responseType=json");
+        localMatchingPageSize = integer("samgov.local-matching.page-size", 100);
+        localMatchingMaxPages = integer("samgov.local-matching.max-pages", 100);
+        detailsMaxInFlight = integer("samgov.details.max-in-flight", 8);
+        detailsRequestTimeout = duration("samgov.details.request-timeout", Duration.ofSeconds(10));
+        detailsCacheMaxEntries = integer("samgov.details.cache.max-entries", 5000);
+        detailsCacheTtl = duration("samgov.details.cache.ttl", Duration.ofHours(6));
+
+        compactStorage = bool("samgov.processed.compact", false);
+        recentWindowDays = integer("samgov.processed.recent-window-days", 7);
+        historyInitialCapacity = integer("samgov.processed.history.initial-capacity", 256);
+        historyFalsePositiveRate = decimal("samgov.processed.history.false-positive-rate", 0.001);
+        // At most about 140 KB per item with the defaults: six blocks of 8192 ids once the oldest are dropped
+        historyMaxBlocks = integer("samgov.processed.history.max-blocks", 6);
+        // The history shares the 400 KB DynamoDB item with the recent set and the query itself
+        long historyMaxBytes = OpportunityBloomFilter.maxSerializedSize(historyInitialCapacity, historyFalsePositiveRate,
+            historyMaxBlocks);
+        if (compactStorage && historyMaxBytes > 256 * 1024) {
+            throw new IllegalArgumentException("samgov.processed.history.* allows a Bloom filter of up to " + historyMaxBytes
+                + " bytes, more than the 262144 that fit next to the rest of the item");
+        }
+        deltaWrites = bool("samgov.processed.delta-writes", false);
+        writeAttempts = integer("samgov.processed.write-attempts", 5);
+
+        deliveryQueue = bool("samgov.ses.delivery-queue.enabled", false);
+        deliveryQueueCapacity = integer("samgov.ses.delivery-queue.capacity", 100);
+        deliverySenders = integer("samgov.ses.delivery-queue.senders", 4);
+        deliveryAttempts = integer("samgov.ses.delivery-queue.max-attempts", 5);
+        sesMaxSendRate = decimal("samgov.ses.max-send-rate", 0);
+
+        apiBaseUrl = URI.create(string("samgov.api.base-url", RestRequestFactory.SAMGOV_API.toString()));
+        httpVersion = HttpClient.Version.valueOf(string("samgov.http.version", "HTTP_2"));
+        httpConnectTimeout = duration("samgov.http.connect-timeout", Duration.ofSeconds(10));
+        httpReadTimeout = duration("samgov.http.read-timeout", Duration.ZERO);
+        httpExecutorThreads = integer("samgov.http.executor-threads", 0);
+        httpCompression = bool("samgov.http.compression.enabled", false);
+        requestControl = bool("samgov.http.control.enabled", false);
+        controlInitialLimit = integer("samgov.http.control.initial-limit", 4);
+        controlMaxLimit = integer("samgov.http.control.max-limit", 32);
+        controlLatencyTarget = duration("samgov.http.control.latency-target", Duration.ofSeconds(3));
+        controlMaxAttempts = integer("samgov.http.control.max-attempts", 4);
+        controlBaseBackoff = duration("samgov.http.control.base-backoff", Duration.ofMillis(250));
+        controlMaxBackoff = duration("samgov.http.control.max-backoff", Duration.ofSeconds(30));
+        controlRequestTimeout = duration("samgov.http.control.request-timeout", Duration.ofSeconds(30));
+        runTimeout = duration("samgov.run-timeout", Duration.ZERO);
+
+        metricsSink = string("samgov.metrics.sink", "none").toLowerCase();
+        metricsNamespace = string("samgov.metrics.namespace", "SamGovNotifier");
+
+        tracingExporter = string("samgov.tracing.exporter", "none").toLowerCase();
+        tracingFile = string("samgov.tracing.file", "traces.jsonl");
+        // Set by Lambda when active tracing is on
+        xrayDaemonAddress = string("AWS_XRAY_DAEMON_ADDRESS", "");
+    }
+
+    private String string(String key, String defaultValue) {
+        String value = lookup.apply(key);
+        if (value == null) {
+            if (defaultValue == null) {
+                throw new IllegalStateException("Missing required property " + key);
+            }
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    private boolean bool(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(string(key, Boolean.toString(defaultValue)));
+    }
+
+    private int integer(String key, int defaultValue) {
+        return Integer.parseInt(string(key, Integer.toString(defaultValue)));
+    }
+
+    private double decimal(String key, double defaultValue) {
+        return Double.parseDouble(string(key, Double.toString(defaultValue)));
+    }
+
+    // The formats Spring Boot accepts: ISO-8601 or a number with an optional unit, milliseconds by default
+    private Duration duration(String key, Duration defaultValue) {
+        String value = lookup.apply(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        value = value.trim();
+        if (value.startsWith("P") || value.startsWith("p") || value.startsWith("-P")) {
+            return Duration.parse(value);
+        }
+        Matcher matcher = SIMPLE_DURATION.matcher(value.toLowerCase());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Property " + key + " is not a duration: " + value);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2) == null ? "ms" : matcher.group(2)) {
+            case "ns" -> Duration.ofNanos(amount);
+            case "us" -> Duration.of(amount, ChronoUnit.MICROS);
+            case "s" -> Duration.ofSeconds(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            case "d" -> Duration.ofDays(amount);
+            default -> Duration.ofMillis(amount);
+        };
+    }
+}
@@ -0,0 +1,227 @@
+package com.argorand.samgov.lambda;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scalable Bloom filter of opportunity ids. It starts with one small block; when a block is full a
+ * new one with twice the capacity is appended, so short histories stay small. Every block gets half
+ * the false positive rate of the one before, so the filter as a whole stays below the configured
+ * rate however many blocks it has. A false positive means one missed notification for an
+ * opportunity that was modified long after it was first sent.
+ *
+ * <p>At most {@code maxBlocks} blocks are kept. When the last one is full and there are that many,
+ * the oldest block is dropped and the new one keeps the capacity of the last, so the filter stops
+ * growing; the ids of the dropped block are forgotten, and such an old opportunity is notified
+ * again if it is ever modified.
+ *
+ * <p>Serialized form: version byte, block count, then per block capacity, count, number of hash
+ * functions, number of words and the bit words, all big endian.
+ */
+public class OpportunityBloomFilter {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final class Block {
+        final int capacity;
+        final int hashes;
+        final long[] bits;
+        int count;
+
+        Block(int capacity, int hashes, long[] bits, int count) {
+            this.capacity = capacity;
+            this.hashes = hashes;
+            this.bits = bits;
+            this.count = count;
+        }
+
+        static Block create(int capacity, double falsePositiveRate) {
+            int words = words(capacity, falsePositiveRate);
+            int hashes = (int) Math.max(1, Math.round((double) words * 64 / capacity * Math.log(2)));
+            return new Block(capacity, hashes, new long[words], 0);
+        }
+
+        static int words(int capacity, double falsePositiveRate) {
+            long bitCount = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            return (int) Math.max(1, (bitCount + 63) / 64);
+        }
+
+        long bitCount() {
+            return (long) bits.length * 64;
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long index = Long.remainderUnsigned(h1 + i * h2, bitCount());
+                if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long index = Long.remainderUnsigned(h1 + i * h2, bitCount());
+                bits[(int) (index >>> 6)] |= 1L << index;
+            }
+            count++;
+        }
+    }
+
+    private final int initialCapacity;
+    private final double falsePositiveRate;
+    private final int maxBlocks;
+    private final List<Block> blocks = new ArrayList<>();
+
+    /**
+     * @param falsePositiveRate bound of the false positive rate of the whole filter
+     * @param maxBlocks number of blocks after which the oldest is dropped for every new one
+     */
+    public OpportunityBloomFilter(int initialCapacity, double falsePositiveRate, int maxBlocks) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity must be positive, got " + initialCapacity);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1), got " + falsePositiveRate);
+        }
+        if (maxBlocks < 1) {
+            throw new IllegalArgumentException("maxBlocks must be positive, got " + maxBlocks);
+        }
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxBlocks = maxBlocks;
+    }
+
+    public boolean isEmpty() {
+        return blocks.isEmpty();
+    }
+
+    public boolean mightContain(String id) {
+        long h1 = hash(id);
+        long h2 = secondHash(h1);
+        for (Block block : blocks) {
+            if (block.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(String id) {
+        long h1 = hash(id);
+        long h2 = secondHash(h1);
+        if (blocks.isEmpty()) {
+            blocks.add(Block.create(initialCapacity, blockFalsePositiveRate(0)));
+        } else if (blocks.stream().anyMatch(block -> block.mightContain(h1, h2))) {
+            return;
+        }
+        Block last = blocks.get(blocks.size() - 1);
+        if (last.count >= last.capacity) {
+            int capacity = last.capacity * 2;
+            while (blocks.size() >= maxBlocks) {
+                blocks.remove(0);
+                capacity = last.capacity;
+            }
+            last = Block.create(capacity, blockFalsePositiveRate(blocks.size()));
+            blocks.add(last);
+        }
+        last.put(h1, h2);
+    }
+
+    /**
+     * The rate of the block at {@code position}: p/2, p/4, ... sums to less than p. Dropping the
+     * oldest block and adding one at the last position keeps every block at or below the rate of
+     * its position, so the bound holds after rotation too.
+     */
+    private double blockFalsePositiveRate(int position) {
+        return falsePositiveRate / Math.pow(2, position + 1);
+    }
+
+    public int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * The largest {@link #toBytes()} a filter with these parameters can reach. That is either the
+     * last block before the first rotation, or, long after it, {@code maxBlocks} blocks that all have
+     * the capacity and the false positive rate of the last position.
+     */
+    public static long maxSerializedSize(int initialCapacity, double falsePositiveRate, int maxBlocks) {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(initialCapacity, falsePositiveRate, maxBlocks);
+        long growing = 0;
+        int capacity = initialCapacity;
+        for (int position = 0; position < maxBlocks; position++) {
+            growing += Block.words(capacity, filter.blockFalsePositiveRate(position));
+            if (position < maxBlocks - 1) {
+                capacity *= 2;
+            }
+        }
+        long rotated = (long) maxBlocks * Block.words(capacity, filter.blockFalsePositiveRate(maxBlocks - 1));
+        return 1 + Integer.BYTES + (long) maxBlocks * 4 * Integer.BYTES + Math.max(growing, rotated) * Long.BYTES;
+    }
+
+    public byte[] toBytes() {
+        int size = 1 + Integer.BYTES;
+        for (Block block : blocks) {
+            size += 4 * Integer.BYTES + block.bits.length * Long.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(FORMAT_VERSION);
+        buffer.putInt(blocks.size());
+        for (Block block : blocks) {
+            buffer.putInt(block.capacity);
+            buffer.putInt(block.count);
+            buffer.putInt(block.hashes);
+            buffer.putInt(block.bits.length);
+            for (long word : block.bits) {
+                buffer.putLong(word);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Restores a filter. New blocks appended later are sized for {@code falsePositiveRate} and
+     * {@code maxBlocks}; existing blocks keep the parameters they were created with.
+     */
+    public static OpportunityBloomFilter fromBytes(byte[] bytes, int initialCapacity, double falsePositiveRate, int maxBlocks) {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(initialCapacity, falsePositiveRate, maxBlocks);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported Bloom filter format " + version);
+        }
+        int blockCount = buffer.getInt();
+        for (int i = 0; i < blockCount; i++) {
+            int capacity = buffer.getInt();
+            int count = buffer.getInt();
+            int hashes = buffer.getInt();
+            long[] bits = new long[buffer.getInt()];
+            for (int w = 0; w < bits.length; w++) {
+                bits[w] = buffer.getLong();
+            }
+            filter.blocks.add(new Block(capacity, hashes, bits, count));
+        }
+        return filter;
+    }
+
+    // 64-bit FNV-1a, then double hashing (Kirsch-Mitzenmacher) to derive the k bit positions
+    private static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long secondHash(long h1) {
+        long h = h1 ^ 0x9e3779b97f4a7c15L;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return (h ^ (h >>> 31)) | 1;
+    }
+}
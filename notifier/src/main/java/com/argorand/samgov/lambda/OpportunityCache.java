@@ -0,0 +1,108 @@
+package com.argorand.samgov.lambda;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.argorand.samgov.beans.Solicitation;
+
+/**
+ * Bounded in-memory cache of opportunity details. Entries are keyed by opportunity id and
+ * {@code modifiedDate}, so a modified opportunity is fetched again. The least recently used entry
+ * is evicted once {@code maxEntries} is reached, and entries older than {@code ttl} are dropped.
+ * A {@code maxEntries} of zero disables caching.
+ *
+ * <p>The cache lives as long as the container and counts its lookups over that lifetime; a run
+ * reports the difference of the counts at its start and end.
+ */
+public class OpportunityCache {
+
+    private record Entry(Solicitation value, long expiresAtNanos) {}
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public OpportunityCache(int maxEntries, Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > OpportunityCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static String key(String opportunityId, String modifiedDate) {
+        return opportunityId + "@" + modifiedDate;
+    }
+
+    public synchronized Solicitation get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAtNanos() - System.nanoTime() <= 0) {
+            entries.remove(key);
+            evictions.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    public synchronized void put(String key, Solicitation value) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Drops expired entries, so memory held between warm invocations does not outlive the TTL.
+     */
+    public synchronized void evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAtNanos() - now <= 0) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OpportunityCache[size=%d, evictions=%d]", size(), evictions());
+    }
+}
@@ -0,0 +1,126 @@
+package com.argorand.samgov.lambda;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.Solicitation;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Fetches opportunity details for the results of one email concurrently. The number of detail
+ * requests in flight is bounded for the whole instance, so concurrent queries share one budget.
+ * Details found in the {@link OpportunityCache} are not fetched again.
+ */
+public class OpportunityEnricher {
+
+    private final Logger log = LoggerFactory.getLogger(OpportunityEnricher.class);
+
+    private final AdaptiveRequestController controller;
+    private final JsonMapper objectMapper;
+    private final OpportunityCache cache;
+    private final AsyncPermits inFlight;
+    private final Duration requestTimeout;
+    private final URI apiBase;
+    private final RunMetrics metrics;
+
+    public OpportunityEnricher(AdaptiveRequestController controller, JsonMapper objectMapper, OpportunityCache cache,
+            int maxInFlight, Duration requestTimeout, URI apiBase, RunMetrics metrics) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive, got " + maxInFlight);
+        }
+        this.controller = controller;
+        this.objectMapper = objectMapper;
+        this.cache = cache;
+        this.inFlight = new AsyncPermits(maxInFlight);
+        this.requestTimeout = requestTimeout;
+        this.apiBase = apiBase;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the details of every result that has descriptions, keyed by opportunity id.
+     * Results whose details could not be fetched are logged and left out of the map.
+     *
+     * @param parent span of the query, every details request is a child of it
+     */
+    public Map<String, Solicitation> fetchDetails(List<SearchHit> results, Span parent) {
+        return fetchDetailsAsync(results, parent).join();
+    }
+
+    /**
+     * Like {@link #fetchDetails(List, Span)}, without blocking: completes once every fetch finished.
+     */
+    public CompletableFuture<Map<String, Solicitation>> fetchDetailsAsync(List<SearchHit> results, Span parent) {
+        Map<String, CompletableFuture<Solicitation>> pending = new LinkedHashMap<>();
+        for (SearchHit result : results) {
+            if (result.hasDescriptions() && !pending.containsKey(result.id())) {
+                String cacheKey = OpportunityCache.key(result.id(), result.modifiedDate());
+                Solicitation cached = cache.get(cacheKey);
+                pending.put(result.id(), cached != null
+                    ? CompletableFuture.completedFuture(cached)
+                    : fetch(result.id(), parent).thenApply(details -> {
+                        cache.put(cacheKey, details);
+                        return details;
+                    }));
+            }
+        }
+
+        return CompletableFuture.allOf(pending.values().stream()
+                .map(details -> details.handle((d, e) -> null))
+                .toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> {
+                Map<String, Solicitation> details = new HashMap<>();
+                for (Map.Entry<String, CompletableFuture<Solicitation>> entry : pending.entrySet()) {
+                    try {
+                        details.put(entry.getKey(), entry.getValue().join());
+                    } catch (CompletionException e) {
+                        log.warn("Could not fetch details of opportunity {}", entry.getKey(), e.getCause());
+                    }
+                }
+                return details;
+            });
+    }
+
+    private CompletableFuture<Solicitation> fetch(String id, Span parent) {
+        return inFlight.acquire().thenCompose(ignored -> {
+            CompletableFuture<HttpResponse<String>> response;
+            HttpRequest request = RestRequestFactory.buildGetOpportunityQuery(id, requestTimeout, apiBase);
+            Span span = parent.child("sam.gov", Span.REMOTE).http("GET", request.uri());
+            long started = System.nanoTime();
+            try {
+                response = controller.send(request, ResponseDecoding.ofString());
+            } catch (RuntimeException e) {
+                inFlight.release();
+                span.end(e);
+                return CompletableFuture.failedFuture(e);
+            }
+            return span.endOn(response
+                .whenComplete((r, e) -> {
+                    inFlight.release();
+                    metrics.time(RunMetrics.Metric.DETAILS_LATENCY, started);
+                    if (r != null) {
+                        span.status(r.statusCode());
+                    }
+                }))
+                .thenApply(r -> {
+                    if (r.statusCode() != 200) {
+                        throw new IllegalStateException("Unexpected HTTP status " + r.statusCode());
+                    }
+                    return objectMapper.readValue(r.body(), Solicitation.class);
+                });
+        });
+    }
+}
@@ -0,0 +1,124 @@
+package com.argorand.samgov.lambda;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.argorand.samgov.beans.SearchHit;
+
+/**
+ * Inverted indexes from the field values of a fixed list of opportunities to their positions, so
+ * a {@link QueryMatcher} is only tested against the opportunities that share a value with every
+ * filter it has, rather than against all of them. NAICS and PSC codes are indexed under each of
+ * their prefixes, as filters match the codes they prefix. Immutable once built, so concurrent
+ * queries can share it.
+ */
+public class OpportunityIndex {
+
+    private final List<SearchHit> hits;
+    private final Map<String, List<Integer>> naics = new HashMap<>();
+    private final Map<String, List<Integer>> psc = new HashMap<>();
+    private final Map<String, List<Integer>> noticeTypes = new HashMap<>();
+    private final Map<String, List<Integer>> setAsides = new HashMap<>();
+    private final Map<String, List<Integer>> organizationIds = new HashMap<>();
+    private final Map<String, List<Integer>> titleTerms = new HashMap<>();
+
+    public OpportunityIndex(List<SearchHit> hits) {
+        this.hits = List.copyOf(hits);
+        for (int position = 0; position < this.hits.size(); position++) {
+            SearchHit hit = this.hits.get(position);
+            for (String code : hit.naics()) {
+                addPrefixes(naics, code.toUpperCase(Locale.ROOT), position);
+            }
+            for (String code : hit.psc()) {
+                addPrefixes(psc, code.toUpperCase(Locale.ROOT), position);
+            }
+            if (hit.noticeType() != null) {
+                add(noticeTypes, hit.noticeType().toLowerCase(Locale.ROOT), position);
+            }
+            if (hit.setAside() != null) {
+                add(setAsides, hit.setAside().toLowerCase(Locale.ROOT), position);
+            }
+            for (String organizationId : hit.organizationIds()) {
+                add(organizationIds, organizationId, position);
+            }
+            for (String term : new LinkedHashSet<>(QueryMatcher.terms(hit.title()))) {
+                add(titleTerms, term, position);
+            }
+        }
+    }
+
+    public int size() {
+        return hits.size();
+    }
+
+    /**
+     * The opportunities the query matches, in the order they were indexed.
+     */
+    public List<SearchHit> match(QueryMatcher query) {
+        BitSet candidates = new BitSet(hits.size());
+        candidates.set(0, hits.size());
+        restrict(candidates, naics, query.naics);
+        restrict(candidates, psc, query.psc);
+        restrict(candidates, noticeTypes, query.noticeTypes);
+        restrict(candidates, setAsides, query.setAsides);
+        restrict(candidates, organizationIds, query.organizationIds);
+        if (!query.keywords.isEmpty()) {
+            if (query.keywordMode == QueryMatcher.KeywordMode.ANY) {
+                restrict(candidates, titleTerms, query.keywords);
+            } else {
+                // Every term has to be in the title, for a phrase too
+                for (String keyword : query.keywords) {
+                    restrict(candidates, titleTerms, List.of(keyword));
+                }
+            }
+        }
+
+        List<SearchHit> matches = new ArrayList<>();
+        for (int position = candidates.nextSetBit(0); position >= 0; position = candidates.nextSetBit(position + 1)) {
+            SearchHit hit = hits.get(position);
+            if (query.matches(hit)) {
+                matches.add(hit);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Keeps the candidates that are indexed under any of the values; no values means no filter.
+     */
+    private static void restrict(BitSet candidates, Map<String, List<Integer>> index, Collection<String> values) {
+        if (values.isEmpty() || candidates.isEmpty()) {
+            return;
+        }
+        BitSet indexed = new BitSet(candidates.length());
+        for (String value : values) {
+            for (int position : index.getOrDefault(value, List.of())) {
+                indexed.set(position);
+            }
+        }
+        candidates.and(indexed);
+    }
+
+    private static void addPrefixes(Map<String, List<Integer>> index, String code, int position) {
+        for (int length = 1; length <= code.length(); length++) {
+            List<Integer> positions = index.computeIfAbsent(code.substring(0, length), k -> new ArrayList<>());
+            // A hit with several codes of the same branch is listed once
+            if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+                positions.add(position);
+            }
+        }
+    }
+
+    private static void add(Map<String, List<Integer>> index, String value, int position) {
+        List<Integer> positions = index.computeIfAbsent(value, k -> new ArrayList<>());
+        if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+            positions.add(position);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.argorand.samgov.lambda;
+
+import java.util.List;
+
+import com.argorand.samgov.beans.ScanPartition;
+
+/**
+ * Hands the partitions of a run to workers.
+ */
+public interface PartitionDispatcher {
+
+    void dispatch(List<ScanPartition> partitions) throws InterruptedException;
+}
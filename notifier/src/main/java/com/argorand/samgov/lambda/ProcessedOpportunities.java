@@ -0,0 +1,136 @@
+package com.argorand.samgov.lambda;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.core.SdkBytes;
+
+/**
+ * The opportunities a saved query has already notified about.
+ *
+ * <p>In legacy storage every id lives forever in {@code email_sent}. In compact storage ids are
+ * kept as {@code <date>#<id>} entries of {@code email_recent} for {@link Policy#recentWindowDays()}
+ * days after they were sent, which covers the date window of the search itself, and are then
+ * folded into the {@link OpportunityBloomFilter} stored in {@code email_history}. Queries written in
+ * the legacy format are read as before and migrated into the Bloom filter on their next write.
+ */
+public class ProcessedOpportunities {
+
+    /**
+     * Storage settings shared by all queries of a run.
+     */
+    public record Policy(boolean compact, int recentWindowDays, int historyInitialCapacity, double historyFalsePositiveRate,
+            int historyMaxBlocks) {}
+
+    private static final char RECENT_SEPARATOR = '#';
+
+    private final Policy policy;
+    private final Set<String> legacy;
+    private final Map<String, LocalDate> recent = new HashMap<>();
+    private OpportunityBloomFilter history;
+
+    private ProcessedOpportunities(Policy policy, Set<String> legacy) {
+        this.policy = policy;
+        this.legacy = legacy;
+    }
+
+    public static ProcessedOpportunities of(SamQuery userQuery, Policy policy) {
+        ProcessedOpportunities state = new ProcessedOpportunities(policy,
+            userQuery.getProcessedOpportunities() == null ? new HashSet<>() : new HashSet<>(userQuery.getProcessedOpportunities()));
+
+        if (userQuery.getRecentOpportunities() != null) {
+            for (String entry : userQuery.getRecentOpportunities()) {
+                int separator = entry.indexOf(RECENT_SEPARATOR);
+                if (separator > 0) {
+                    state.recent.merge(entry.substring(separator + 1), LocalDate.parse(entry.substring(0, separator)),
+                        (a, b) -> a.isBefore(b) ? a : b);
+                }
+            }
+        }
+        if (userQuery.getOpportunityHistory() != null) {
+            state.history = OpportunityBloomFilter.fromBytes(userQuery.getOpportunityHistory().asByteArray(),
+                policy.historyInitialCapacity(), policy.historyFalsePositiveRate(), policy.historyMaxBlocks());
+        }
+        return state;
+    }
+
+    public boolean contains(String id) {
+        return legacy.contains(id) || recent.containsKey(id) || (history != null && history.mightContain(id));
+    }
+
+    /**
+     * True when the query still carries the legacy attribute and compact storage is enabled.
+     */
+    public boolean needsMigration() {
+        return policy.compact() && !legacy.isEmpty();
+    }
+
+    /**
+     * True when recording on {@code today} would move entries out of the recent set, so the stored
+     * state has to be rewritten instead of only extended.
+     */
+    public boolean needsCompaction(LocalDate today) {
+        LocalDate oldestKept = today.minusDays(policy.recentWindowDays());
+        return needsMigration() || (policy.compact() && recent.values().stream().anyMatch(date -> date.isBefore(oldestKept)));
+    }
+
+    public Policy policy() {
+        return policy;
+    }
+
+    public static String recentEntry(String id, LocalDate sentOn) {
+        return sentOn + String.valueOf(RECENT_SEPARATOR) + id;
+    }
+
+    /**
+     * Records {@code ids} as sent on {@code today} and writes the resulting state into the query bean.
+     */
+    public void record(SamQuery userQuery, Collection<String> ids, LocalDate today) {
+        if (!policy.compact()) {
+            legacy.addAll(ids);
+            userQuery.setProcessedOpportunities(new HashSet<>(legacy));
+            return;
+        }
+        ids.forEach(id -> recent.putIfAbsent(id, today));
+        compact(today);
+        writeTo(userQuery);
+    }
+
+    private void compact(LocalDate today) {
+        LocalDate oldestKept = today.minusDays(policy.recentWindowDays());
+        var iterator = recent.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getValue().isBefore(oldestKept)) {
+                history().put(entry.getKey());
+                iterator.remove();
+            }
+        }
+        legacy.forEach(history()::put);
+        legacy.clear();
+    }
+
+    private OpportunityBloomFilter history() {
+        if (history == null) {
+            history = new OpportunityBloomFilter(policy.historyInitialCapacity(), policy.historyFalsePositiveRate(),
+                policy.historyMaxBlocks());
+        }
+        return history;
+    }
+
+    private void writeTo(SamQuery userQuery) {
+        Set<String> entries = new HashSet<>();
+        recent.forEach((id, date) -> entries.add(recentEntry(id, date)));
+
+        // Empty sets can't be stored in DynamoDB, null removes the attribute
+        userQuery.setRecentOpportunities(entries.isEmpty() ? null : entries);
+        userQuery.setOpportunityHistory(history == null || history.isEmpty() ? null : SdkBytes.fromByteArray(history.toBytes()));
+        userQuery.setProcessedOpportunities(null);
+    }
+}
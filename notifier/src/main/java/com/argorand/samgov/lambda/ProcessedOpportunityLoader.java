@@ -0,0 +1,179 @@
+package com.argorand.samgov.lambda;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+/**
+ * Reads the dedup state (processed opportunities, version and watermark) of saved queries that were scanned
+ * without it. Used by the projected scan, which leaves the large sets behind until a search
+ * actually returns candidates.
+ */
+public class ProcessedOpportunityLoader {
+
+    static final String KEY = "notificationId";
+    static final String SENT = "email_sent";
+    static final String RECENT = "email_recent";
+    static final String HISTORY = "email_history";
+    static final String VERSION = "version";
+    static final String LAST_PROCESSED_AT = "lastProcessedAt";
+
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final String PROJECTION = "#key, #sent, #recent, #history, #version, #lastProcessedAt";
+    private static final Map<String, String> NAMES = Map.of("#key", KEY, "#sent", SENT, "#recent", RECENT, "#history", HISTORY,
+        "#version", VERSION, "#lastProcessedAt", LAST_PROCESSED_AT);
+
+    private final Logger log = LoggerFactory.getLogger(ProcessedOpportunityLoader.class);
+
+    private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbAsyncClient asyncClient;
+    private final String tableName;
+
+    public ProcessedOpportunityLoader(DynamoDbClient dynamoDbClient, String tableName) {
+        this(dynamoDbClient, null, tableName);
+    }
+
+    /**
+     * @param asyncClient client of the {@code Async} methods, null when they are not used
+     */
+    public ProcessedOpportunityLoader(DynamoDbClient dynamoDbClient, DynamoDbAsyncClient asyncClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.asyncClient = asyncClient;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Loads the dedup state of every query into its bean; with {@code consistentRead} the state
+     * reflects all writes that finished before the call.
+     *
+     * @param parent span every read is a child of
+     */
+    public void load(List<SamQuery> userQueries, boolean consistentRead, Span parent) throws InterruptedException {
+        if (userQueries.size() == 1) {
+            loadOne(userQueries.get(0), consistentRead, parent);
+            return;
+        }
+        for (int from = 0; from < userQueries.size(); from += BATCH_SIZE) {
+            loadBatch(userQueries.subList(from, Math.min(from + BATCH_SIZE, userQueries.size())), consistentRead, parent);
+        }
+    }
+
+    /**
+     * Returns false when the query no longer exists.
+     */
+    public boolean loadOne(SamQuery userQuery, boolean consistentRead, Span parent) {
+        Span span = parent.child("DynamoDB", Span.AWS).aws("GetItem", tableName);
+        try {
+            boolean exists = apply(dynamoDbClient.getItem(getRequest(userQuery, consistentRead)), userQuery);
+            span.end();
+            return exists;
+        } catch (RuntimeException e) {
+            span.end(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #loadOne(SamQuery, boolean, Span)}, on the async client.
+     */
+    public CompletableFuture<Boolean> loadOneAsync(SamQuery userQuery, boolean consistentRead, Span parent) {
+        Span span = parent.child("DynamoDB", Span.AWS).aws("GetItem", tableName);
+        return span.endOn(asyncClient.getItem(getRequest(userQuery, consistentRead)))
+            .thenApply(response -> apply(response, userQuery));
+    }
+
+    private GetItemRequest getRequest(SamQuery userQuery, boolean consistentRead) {
+        return GetItemRequest.builder()
+            .tableName(tableName)
+            .key(key(userQuery.getNotificationId()))
+            .consistentRead(consistentRead)
+            .projectionExpression(PROJECTION)
+            .expressionAttributeNames(NAMES)
+            .build();
+    }
+
+    private static boolean apply(GetItemResponse response, SamQuery userQuery) {
+        if (!response.hasItem() || response.item().isEmpty()) {
+            return false;
+        }
+        apply(response.item(), userQuery);
+        return true;
+    }
+
+    private void loadBatch(List<SamQuery> batch, boolean consistentRead, Span parent) throws InterruptedException {
+        Map<String, SamQuery> byId = new HashMap<>();
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (SamQuery userQuery : batch) {
+            if (byId.putIfAbsent(userQuery.getNotificationId(), userQuery) == null) {
+                keys.add(key(userQuery.getNotificationId()));
+            }
+        }
+
+        Map<String, KeysAndAttributes> request = Map.of(tableName, KeysAndAttributes.builder()
+            .keys(keys)
+            .consistentRead(consistentRead)
+            .projectionExpression(PROJECTION)
+            .expressionAttributeNames(NAMES)
+            .build());
+        for (int attempt = 1; !request.isEmpty(); attempt++) {
+            Span span = parent.child("DynamoDB", Span.AWS).aws("BatchGetItem", tableName);
+            BatchGetItemResponse response;
+            try {
+                response = dynamoDbClient.batchGetItem(BatchGetItemRequest.builder().requestItems(request).build());
+                span.end();
+            } catch (RuntimeException e) {
+                span.end(e);
+                throw e;
+            }
+            for (Map<String, AttributeValue> item : response.responses().getOrDefault(tableName, List.of())) {
+                SamQuery userQuery = byId.get(item.get(KEY).s());
+                if (userQuery != null) {
+                    apply(item, userQuery);
+                }
+            }
+            request = response.hasUnprocessedKeys() ? response.unprocessedKeys() : Map.of();
+            if (!request.isEmpty()) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw new IllegalStateException("Could not load the processed opportunities of "
+                        + request.get(tableName).keys().size() + " queries, giving up after " + attempt + " attempts");
+                }
+                log.info("{} keys were not processed, retrying", request.get(tableName).keys().size());
+                Thread.sleep(ThreadLocalRandom.current().nextLong(25, 50L << Math.min(attempt, 6)));
+            }
+        }
+    }
+
+    private static Map<String, AttributeValue> key(String notificationId) {
+        return Map.of(KEY, AttributeValue.fromS(notificationId));
+    }
+
+    /**
+     * Copies the dedup attributes of a raw item into the bean, clearing the ones the item lacks.
+     */
+    static void apply(Map<String, AttributeValue> item, SamQuery userQuery) {
+        userQuery.setProcessedOpportunities(item.containsKey(SENT) ? new HashSet<>(item.get(SENT).ss()) : null);
+        userQuery.setRecentOpportunities(item.containsKey(RECENT) ? new HashSet<>(item.get(RECENT).ss()) : null);
+        userQuery.setOpportunityHistory(item.containsKey(HISTORY) ? item.get(HISTORY).b() : null);
+        userQuery.setVersion(item.containsKey(VERSION) ? Integer.valueOf(item.get(VERSION).n()) : null);
+        userQuery.setLastProcessedAt(item.containsKey(LAST_PROCESSED_AT) ? item.get(LAST_PROCESSED_AT).s() : null);
+    }
+}
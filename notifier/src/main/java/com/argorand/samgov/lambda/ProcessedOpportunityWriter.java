@@ -0,0 +1,396 @@
+package com.argorand.samgov.lambda;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.model.UpdateItemEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+/**
+ * Persists newly processed opportunities of a saved query.
+ *
+ * <p>Without delta writes the whole bean is written back, as before. With delta writes only the new
+ * ids are {@code ADD}ed together with {@code lastProcessedAt}. Either write is conditioned on the
+ * {@code version} read with the query and bumps it. When another run changed the item in the meantime,
+ * the dedup state is read again and only the ids still unknown are retried, so overlapping runs never
+ * notify twice.
+ *
+ * <p>{@code lastProcessedAt} only moves forward. It is stored to the second, so the stored values have
+ * a fixed width and DynamoDB's string comparison orders them in time.
+ *
+ * <p>The {@code Async} methods issue the same updates on the async client and always write deltas.
+ */
+public class ProcessedOpportunityWriter {
+
+    private static final String KEY = ProcessedOpportunityLoader.KEY;
+    private static final String SENT = ProcessedOpportunityLoader.SENT;
+    private static final String RECENT = ProcessedOpportunityLoader.RECENT;
+    private static final String HISTORY = ProcessedOpportunityLoader.HISTORY;
+    private static final String VERSION = ProcessedOpportunityLoader.VERSION;
+    private static final String LAST_PROCESSED_AT = ProcessedOpportunityLoader.LAST_PROCESSED_AT;
+
+    private final Logger log = LoggerFactory.getLogger(ProcessedOpportunityWriter.class);
+
+    private final DynamoDbTable<SamQuery> table;
+    private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbAsyncClient asyncClient;
+    private final ProcessedOpportunityLoader loader;
+    private final boolean deltaWrites;
+    private final int maxAttempts;
+    private final RunMetrics metrics;
+
+    public ProcessedOpportunityWriter(DynamoDbTable<SamQuery> table, DynamoDbClient dynamoDbClient,
+            ProcessedOpportunityLoader loader, boolean deltaWrites, int maxAttempts, RunMetrics metrics) {
+        this(table, dynamoDbClient, null, loader, deltaWrites, maxAttempts, metrics);
+    }
+
+    /**
+     * @param asyncClient client of the {@code Async} methods, null when they are not used
+     * @param metrics receives the latency of every update
+     */
+    public ProcessedOpportunityWriter(DynamoDbTable<SamQuery> table, DynamoDbClient dynamoDbClient,
+            DynamoDbAsyncClient asyncClient, ProcessedOpportunityLoader loader, boolean deltaWrites, int maxAttempts,
+            RunMetrics metrics) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive, got " + maxAttempts);
+        }
+        this.table = table;
+        this.dynamoDbClient = dynamoDbClient;
+        this.asyncClient = asyncClient;
+        this.loader = loader;
+        this.deltaWrites = deltaWrites;
+        this.maxAttempts = maxAttempts;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Records {@code ids} for the query and returns the ids this run is responsible for notifying
+     * about. That is all of them, unless a concurrent run recorded some first; an empty list
+     * also means the query was deleted while the run was going on.
+     *
+     * @param searchedAt when the search that found {@code ids} started, written as {@code lastProcessedAt};
+     *                   never the time of the write, which may be later than results that were not read.
+     *                   Null leaves {@code lastProcessedAt} as it is, for searches not read to their end
+     * @param parent span of the query, every DynamoDB call is a child of it
+     */
+    public List<String> record(SamQuery userQuery, ProcessedOpportunities processed, List<String> ids, LocalDate today,
+            Instant searchedAt, Span parent) throws InterruptedException {
+        List<String> pending = ids;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (deltaWrites) {
+                    Update update = prepareUpdate(userQuery, processed, pending, today, searchedAt);
+                    update(update.request(), parent);
+                    update.onSuccess().run();
+                } else {
+                    writeBean(userQuery, processed, pending, today, searchedAt, parent);
+                }
+                return pending;
+            } catch (ConditionalCheckFailedException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.info("Query {} was changed concurrently, re-reading it (attempt {}/{})",
+                    userQuery.getNotificationId(), attempt, maxAttempts);
+                Thread.sleep(ThreadLocalRandom.current().nextLong(25, 50L << attempt));
+
+                if (!loader.loadOne(userQuery, true, parent)) {
+                    log.info("Query {} was deleted, skipping it", userQuery.getNotificationId());
+                    return List.of();
+                }
+                ProcessedOpportunities current = ProcessedOpportunities.of(userQuery, processed.policy());
+                processed = current;
+                pending = pending.stream().filter(id -> !current.contains(id)).collect(Collectors.toList());
+                if (pending.isEmpty() && !processed.needsMigration()) {
+                    return pending;
+                }
+            }
+        }
+    }
+
+    /**
+     * Like {@link #record(SamQuery, ProcessedOpportunities, List, LocalDate, Instant, Span)}, without blocking;
+     * the backoff before re-reading a concurrently changed query is a delay, not a sleep.
+     */
+    public CompletableFuture<List<String>> recordAsync(SamQuery userQuery, ProcessedOpportunities processed,
+            List<String> ids, LocalDate today, Instant searchedAt, Span parent) {
+        return recordAsync(userQuery, processed, ids, today, searchedAt, parent, 1);
+    }
+
+    private CompletableFuture<List<String>> recordAsync(SamQuery userQuery, ProcessedOpportunities processed,
+            List<String> pending, LocalDate today, Instant searchedAt, Span parent, int attempt) {
+        Update update = prepareUpdate(userQuery, processed, pending, today, searchedAt);
+        return updateAsync(update.request(), parent).handle((response, failure) -> {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause == null) {
+                update.onSuccess().run();
+                return CompletableFuture.completedFuture(pending);
+            }
+            if (!(cause instanceof ConditionalCheckFailedException) || attempt >= maxAttempts) {
+                return CompletableFuture.<List<String>>failedFuture(cause);
+            }
+            log.info("Query {} was changed concurrently, re-reading it (attempt {}/{})",
+                userQuery.getNotificationId(), attempt, maxAttempts);
+            long delay = ThreadLocalRandom.current().nextLong(25, 50L << attempt);
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                .thenCompose(ignored -> loader.loadOneAsync(userQuery, true, parent))
+                .thenCompose(exists -> {
+                    if (!exists) {
+                        log.info("Query {} was deleted, skipping it", userQuery.getNotificationId());
+                        return CompletableFuture.completedFuture(List.<String>of());
+                    }
+                    ProcessedOpportunities current = ProcessedOpportunities.of(userQuery, processed.policy());
+                    List<String> remaining = pending.stream().filter(id -> !current.contains(id)).collect(Collectors.toList());
+                    if (remaining.isEmpty() && !current.needsMigration()) {
+                        return CompletableFuture.completedFuture(remaining);
+                    }
+                    return recordAsync(userQuery, current, remaining, today, searchedAt, parent, attempt + 1);
+                });
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Moves the query's {@code lastProcessedAt} to {@code searchedAt} without touching its dedup
+     * state or version. A query deleted in the meantime is skipped, and so is one whose watermark a
+     * concurrent run already moved to {@code searchedAt} or later.
+     */
+    public void advanceWatermark(SamQuery userQuery, Instant searchedAt, Span parent) {
+        try {
+            update(watermarkRequest(userQuery, searchedAt), parent);
+            userQuery.setLastProcessedAt(timestamp(searchedAt));
+        } catch (ConditionalCheckFailedException e) {
+            log.info("Query {} was deleted or its watermark is already later, not advancing it", userQuery.getNotificationId());
+        }
+    }
+
+    /**
+     * Like {@link #advanceWatermark(SamQuery, Instant, Span)}, on the async client.
+     */
+    public CompletableFuture<Void> advanceWatermarkAsync(SamQuery userQuery, Instant searchedAt, Span parent) {
+        return updateAsync(watermarkRequest(userQuery, searchedAt), parent).handle((response, failure) -> {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause == null) {
+                userQuery.setLastProcessedAt(timestamp(searchedAt));
+            } else if (cause instanceof ConditionalCheckFailedException) {
+                log.info("Query {} was deleted or its watermark is already later, not advancing it", userQuery.getNotificationId());
+            } else {
+                throw failure instanceof CompletionException completion ? completion : new CompletionException(cause);
+            }
+            return null;
+        });
+    }
+
+    private void update(UpdateItemRequest request, Span parent) {
+        Span span = parent.child("DynamoDB", Span.AWS).aws("UpdateItem", request.tableName());
+        long started = System.nanoTime();
+        try {
+            dynamoDbClient.updateItem(request);
+            span.end();
+        } catch (RuntimeException e) {
+            // A failed condition is an expected outcome, not a fault of the call
+            span.end(e instanceof ConditionalCheckFailedException ? null : e);
+            throw e;
+        } finally {
+            metrics.time(RunMetrics.Metric.DYNAMODB_UPDATE_LATENCY, started);
+        }
+    }
+
+    private CompletableFuture<UpdateItemResponse> updateAsync(UpdateItemRequest request, Span parent) {
+        Span span = parent.child("DynamoDB", Span.AWS).aws("UpdateItem", request.tableName());
+        long started = System.nanoTime();
+        return asyncClient.updateItem(request)
+            .whenComplete((response, failure) -> {
+                metrics.time(RunMetrics.Metric.DYNAMODB_UPDATE_LATENCY, started);
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                span.end(cause instanceof ConditionalCheckFailedException ? null : cause);
+            });
+    }
+
+    private UpdateItemRequest watermarkRequest(SamQuery userQuery, Instant searchedAt) {
+        return UpdateItemRequest.builder()
+            .tableName(table.tableName())
+            .key(Map.of(KEY, AttributeValue.fromS(userQuery.getNotificationId())))
+            .updateExpression("SET #lastProcessedAt = :at")
+            .conditionExpression("attribute_exists(#key) AND (attribute_not_exists(#lastProcessedAt) OR #lastProcessedAt < :at)")
+            .expressionAttributeNames(Map.of("#key", KEY, "#lastProcessedAt", LAST_PROCESSED_AT))
+            .expressionAttributeValues(Map.of(":at", AttributeValue.fromS(timestamp(searchedAt))))
+            .build();
+    }
+
+    /**
+     * Writes the whole bean with {@code ids} recorded. A failed condition leaves the bean changed, the
+     * caller reads it again before retrying.
+     */
+    private void writeBean(SamQuery userQuery, ProcessedOpportunities processed, List<String> ids, LocalDate today,
+            Instant searchedAt, Span parent) {
+        Integer expectedVersion = userQuery.getVersion();
+        String watermark = watermark(userQuery, searchedAt);
+        processed.record(userQuery, ids, today);
+        userQuery.setVersion(expectedVersion == null ? 1 : expectedVersion + 1);
+        if (watermark != null) {
+            userQuery.setLastProcessedAt(watermark);
+        }
+
+        Span span = parent.child("DynamoDB", Span.AWS).aws("UpdateItem", table.tableName());
+        long started = System.nanoTime();
+        try {
+            table.updateItem(UpdateItemEnhancedRequest.builder(SamQuery.class)
+                .item(userQuery)
+                .conditionExpression(versionCondition(expectedVersion))
+                .build());
+            span.end();
+        } catch (RuntimeException e) {
+            span.end(e instanceof ConditionalCheckFailedException ? null : e);
+            throw e;
+        } finally {
+            metrics.time(RunMetrics.Metric.DYNAMODB_UPDATE_LATENCY, started);
+        }
+    }
+
+    private static Expression versionCondition(Integer expectedVersion) {
+        Expression.Builder condition = Expression.builder().putExpressionName("#key", KEY).putExpressionName("#version", VERSION);
+        if (expectedVersion == null) {
+            return condition.expression("attribute_exists(#key) AND attribute_not_exists(#version)").build();
+        }
+        return condition.expression("attribute_exists(#key) AND #version = :expected")
+            .putExpressionValue(":expected", AttributeValue.fromN(expectedVersion.toString()))
+            .build();
+    }
+
+    /**
+     * The {@code lastProcessedAt} to write, null when {@code searchedAt} is null or would not move the
+     * stored watermark forward. Moving it back is never needed, it only widens the next window.
+     */
+    private static String watermark(SamQuery userQuery, Instant searchedAt) {
+        if (searchedAt == null) {
+            return null;
+        }
+        Instant stored = SearchWindow.watermark(userQuery);
+        String watermark = timestamp(searchedAt);
+        return stored == null || stored.isBefore(Instant.parse(watermark)) ? watermark : null;
+    }
+
+    private static String timestamp(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+
+    /**
+     * A conditional update and what to apply to the bean once it succeeded.
+     */
+    private record Update(UpdateItemRequest request, Runnable onSuccess) {}
+
+    private Update prepareUpdate(SamQuery userQuery, ProcessedOpportunities processed, List<String> ids, LocalDate today,
+            Instant searchedAt) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        List<String> set = new ArrayList<>();
+        List<String> add = new ArrayList<>();
+        List<String> remove = new ArrayList<>();
+
+        String watermark = watermark(userQuery, searchedAt);
+        Integer expectedVersion = userQuery.getVersion();
+        int nextVersion = expectedVersion == null ? 1 : expectedVersion + 1;
+
+        names.put("#key", KEY);
+        names.put("#version", VERSION);
+        values.put(":next", AttributeValue.fromN(Integer.toString(nextVersion)));
+        if (watermark != null) {
+            names.put("#lastProcessedAt", LAST_PROCESSED_AT);
+            values.put(":watermark", AttributeValue.fromS(watermark));
+            set.add("#lastProcessedAt = :watermark");
+        }
+        set.add("#version = :next");
+
+        boolean compact = processed.policy().compact();
+        boolean rewrite = compact && processed.needsCompaction(today);
+        if (rewrite) {
+            // Entries leave the recent set, so the (bounded) dedup state is rewritten as a whole
+            processed.record(userQuery, ids, today);
+            names.put("#recent", RECENT);
+            names.put("#history", HISTORY);
+            names.put("#sent", SENT);
+            if (userQuery.getRecentOpportunities() == null) {
+                remove.add("#recent");
+            } else {
+                values.put(":recent", AttributeValue.fromSs(new ArrayList<>(userQuery.getRecentOpportunities())));
+                set.add("#recent = :recent");
+            }
+            if (userQuery.getOpportunityHistory() == null) {
+                remove.add("#history");
+            } else {
+                values.put(":history", AttributeValue.fromB(userQuery.getOpportunityHistory()));
+                set.add("#history = :history");
+            }
+            remove.add("#sent");
+        } else if (!ids.isEmpty()) {
+            if (compact) {
+                names.put("#recent", RECENT);
+                values.put(":ids", AttributeValue.fromSs(
+                    ids.stream().map(id -> ProcessedOpportunities.recentEntry(id, today)).collect(Collectors.toList())));
+                add.add("#recent :ids");
+            } else {
+                names.put("#sent", SENT);
+                values.put(":ids", AttributeValue.fromSs(ids));
+                add.add("#sent :ids");
+            }
+        }
+
+        StringBuilder expression = new StringBuilder("SET ").append(String.join(", ", set));
+        if (!add.isEmpty()) {
+            expression.append(" ADD ").append(String.join(", ", add));
+        }
+        if (!remove.isEmpty()) {
+            expression.append(" REMOVE ").append(String.join(", ", remove));
+        }
+
+        String condition = "attribute_exists(#key) AND ";
+        if (expectedVersion == null) {
+            condition += "attribute_not_exists(#version)";
+        } else {
+            values.put(":expected", AttributeValue.fromN(expectedVersion.toString()));
+            condition += "#version = :expected";
+        }
+
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(table.tableName())
+            .key(Map.of(KEY, AttributeValue.fromS(userQuery.getNotificationId())))
+            .updateExpression(expression.toString())
+            .conditionExpression(condition)
+            .expressionAttributeNames(names)
+            .expressionAttributeValues(values)
+            .build();
+
+        return new Update(request, () -> {
+            if (!rewrite) {
+                processed.record(userQuery, ids, today);
+            }
+            userQuery.setVersion(nextVersion);
+            if (watermark != null) {
+                userQuery.setLastProcessedAt(watermark);
+            }
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package com.argorand.samgov.lambda;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class QueryCanonicalizer {
+
+    /**
+     * Builds a key that is equal for search URLs that sam.gov answers identically: parameters are
+     * sorted, percent-encoding is normalized and parameters without a value are dropped.
+     * The key is only used for grouping and is never sent to sam.gov.
+     */
+    public static String canonicalize(String url) {
+        try {
+            URI uri = new URI(url);
+            String query = uri.getRawQuery();
+
+            String canonicalQuery = query == null ? "" : Arrays.stream(query.split("&"))
+                .map(param -> param.split("=", 2))
+                .filter(pair -> pair.length == 2 && !decode(pair[1]).isBlank())
+                .map(pair -> Map.entry(encode(decode(pair[0])), encode(decode(pair[1]))))
+                .sorted(Map.Entry.<String, String>comparingByKey().thenComparing(Map.Entry.comparingByValue()))
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining("&"));
+
+            String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase();
+            String authority = uri.getRawAuthority() == null ? "" : uri.getRawAuthority().toLowerCase();
+            return scheme + "://" + authority + uri.getRawPath() + "?" + canonicalQuery;
+        } catch (Exception e) {
+            throw new RuntimeException("Error canonicalizing URL", e);
+        }
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,84 @@
+package com.argorand.samgov.lambda;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands saved queries to a worker. In sequential mode the work runs inline on the caller thread,
+ * in concurrent mode every query gets its own virtual thread and at most {@code maxConcurrency}
+ * of them run at once. A failing query is logged and never affects the others.
+ */
+public class QueryDispatcher implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface QueryTask {
+        void run() throws Exception;
+    }
+
+    private final Logger log = LoggerFactory.getLogger(QueryDispatcher.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    private QueryDispatcher(ExecutorService executor, Semaphore permits) {
+        this.executor = executor;
+        this.permits = permits;
+    }
+
+    public static QueryDispatcher sequential() {
+        return new QueryDispatcher(null, null);
+    }
+
+    public static QueryDispatcher concurrent(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive, got " + maxConcurrency);
+        }
+        return new QueryDispatcher(Executors.newVirtualThreadPerTaskExecutor(), new Semaphore(maxConcurrency));
+    }
+
+    /**
+     * Runs the task, or schedules it when concurrent. Blocks the caller while the concurrency cap is
+     * reached, so the producer (the table scan) never runs far ahead of the workers.
+     */
+    public void dispatch(String queryId, QueryTask task) throws InterruptedException {
+        if (executor == null) {
+            runIsolated(queryId, task);
+            return;
+        }
+        permits.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    runIsolated(queryId, task);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void runIsolated(String queryId, QueryTask task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("Query {} failed", queryId, e);
+        }
+    }
+
+    /**
+     * Waits for all scheduled queries to finish.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.argorand.samgov.lambda;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.argorand.samgov.beans.SearchHit;
+
+/**
+ * A saved search URL compiled into a predicate over search results, so the search can be answered
+ * from opportunities fetched for other searches. Only filters on fields a search result carries can
+ * be compiled: NAICS and PSC codes (matching codes they prefix, like sam.gov's code hierarchy), notice
+ * types, set-asides, organization ids, the active flag and, when enabled, keywords. A URL with any
+ * other filter does not compile and has to be searched on sam.gov.
+ *
+ * <p>Keywords are only matched against titles, since search results carry no description text; sam.gov
+ * searches descriptions too, so keyword queries may match fewer results locally than on sam.gov.
+ */
+public class QueryMatcher {
+
+    public enum KeywordMode { ALL, ANY, EXACT }
+
+    /**
+     * Parameters that shape the response or the modification range, which the caller takes care of.
+     */
+    private static final Set<String> RESPONSE_PARAMETERS = Set.of("index", "page", "size", "sort", "mode",
+        "responseType", "random", "qMode", "modified_date.from", "modified_date.to");
+
+    // Search syntax beyond plain terms
+    private static final Pattern KEYWORD_SYNTAX = Pattern.compile("[\"*?()~:]|(^|\\s)[-+]|\\b(AND|OR|NOT)\\b");
+    private static final Pattern TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    final Set<String> naics = new LinkedHashSet<>();
+    final Set<String> psc = new LinkedHashSet<>();
+    final Set<String> noticeTypes = new LinkedHashSet<>();
+    final Set<String> setAsides = new LinkedHashSet<>();
+    final Set<String> organizationIds = new LinkedHashSet<>();
+    final List<String> keywords = new ArrayList<>();
+    KeywordMode keywordMode = KeywordMode.ALL;
+    boolean activeOnly;
+
+    private QueryMatcher() {
+    }
+
+    /**
+     * Compiles a saved or prepared search URL.
+     *
+     * @param keywords whether {@code q} is matched against titles; otherwise a URL with keywords does not compile
+     * @return the matcher, null when the URL has filters that cannot be matched locally
+     */
+    public static QueryMatcher compile(String url, boolean keywords) {
+        String query;
+        try {
+            query = new URI(url).getRawQuery();
+        } catch (Exception e) {
+            return null;
+        }
+        QueryMatcher matcher = new QueryMatcher();
+        String q = null;
+        for (String parameter : query == null ? new String[0] : query.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            String name = decode(pair[0]);
+            String value = pair.length > 1 ? decode(pair[1]).trim() : "";
+            if (value.isEmpty()) {
+                // sam.gov ignores parameters without a value too
+                continue;
+            }
+            switch (name) {
+                case "index" -> {
+                    if (!"opp".equals(value)) {
+                        return null;
+                    }
+                }
+                case "qMode" -> {
+                    try {
+                        matcher.keywordMode = KeywordMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
+                }
+                case "is_active" -> {
+                    if (!"true".equals(value) && !"false".equals(value)) {
+                        return null;
+                    }
+                    matcher.activeOnly = "true".equals(value);
+                }
+                case "naics" -> addCodes(value.toUpperCase(Locale.ROOT), matcher.naics);
+                case "psc" -> addCodes(value.toUpperCase(Locale.ROOT), matcher.psc);
+                case "notice_type" -> addCodes(value.toLowerCase(Locale.ROOT), matcher.noticeTypes);
+                case "set_aside" -> addCodes(value.toLowerCase(Locale.ROOT), matcher.setAsides);
+                case "organization_id" -> addCodes(value, matcher.organizationIds);
+                case "q" -> q = value;
+                default -> {
+                    if (!RESPONSE_PARAMETERS.contains(name)) {
+                        return null;
+                    }
+                }
+            }
+        }
+        if (q != null) {
+            if (!keywords || KEYWORD_SYNTAX.matcher(q).find()) {
+                return null;
+            }
+            matcher.keywords.addAll(terms(q));
+        }
+        return matcher;
+    }
+
+    public boolean matches(SearchHit hit) {
+        if (activeOnly && !hit.active()) {
+            return false;
+        }
+        if (!naics.isEmpty() && !anyPrefixed(hit.naics(), naics)) {
+            return false;
+        }
+        if (!psc.isEmpty() && !anyPrefixed(hit.psc(), psc)) {
+            return false;
+        }
+        if (!noticeTypes.isEmpty() && (hit.noticeType() == null || !noticeTypes.contains(hit.noticeType().toLowerCase(Locale.ROOT)))) {
+            return false;
+        }
+        if (!setAsides.isEmpty() && (hit.setAside() == null || !setAsides.contains(hit.setAside().toLowerCase(Locale.ROOT)))) {
+            return false;
+        }
+        if (!organizationIds.isEmpty() && Collections.disjoint(hit.organizationIds(), organizationIds)) {
+            return false;
+        }
+        return keywords.isEmpty() || matchesKeywords(terms(hit.title()));
+    }
+
+    private boolean matchesKeywords(List<String> titleTerms) {
+        return switch (keywordMode) {
+            case ALL -> titleTerms.containsAll(keywords);
+            case ANY -> keywords.stream().anyMatch(titleTerms::contains);
+            case EXACT -> Collections.indexOfSubList(titleTerms, keywords) >= 0;
+        };
+    }
+
+    /**
+     * The lower case words of a text, as keywords and titles are compared.
+     */
+    static List<String> terms(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        return Arrays.stream(TERM_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+            .filter(term -> !term.isEmpty())
+            .toList();
+    }
+
+    private static boolean anyPrefixed(List<String> codes, Set<String> prefixes) {
+        for (String code : codes) {
+            for (String prefix : prefixes) {
+                if (code.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void addCodes(String value, Set<String> codes) {
+        for (String code : value.split(",")) {
+            if (!code.isBlank()) {
+                codes.add(code.trim());
+            }
+        }
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,464 @@
+package com.argorand.samgov.lambda;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+/**
+ * Runs saved searches against sam.gov and notifies their owners about new results.
+ * Holds no per-query state, so one instance can be shared by concurrent workers.
+ */
+public class QueryProcessor {
+
+    private final Logger log = LoggerFactory.getLogger(QueryProcessor.class);
+
+    private final SearchPager pager;
+    private final LocalSearch localSearch;
+    private final SearchWindow window;
+    private final OpportunityEnricher enricher;
+    private final ProcessedOpportunities.Policy storagePolicy;
+    private final ProcessedOpportunityWriter writer;
+    private final ProcessedOpportunityLoader lazyLoader;
+    private final EmailSender emailSender;
+    private final RunMetrics metrics;
+    private final Span run;
+
+    /**
+     * @param localSearch answers the searches it can match from the run's opportunity feed, null to
+     *                    send every search to sam.gov
+     * @param lazyLoader loads the dedup state of queries that were scanned without it, null when the
+     *                   scan already read it
+     * @param metrics counts the queries processed, skipped for lack of new results, and failed
+     * @param run span of the run, the span of every query is a child of it
+     */
+    public QueryProcessor(SearchPager pager, LocalSearch localSearch, SearchWindow window, OpportunityEnricher enricher, ProcessedOpportunities.Policy storagePolicy,
+            ProcessedOpportunityWriter writer, ProcessedOpportunityLoader lazyLoader,
+            EmailSender emailSender, RunMetrics metrics, Span run) {
+        this.pager = pager;
+        this.localSearch = localSearch;
+        this.window = window;
+        this.enricher = enricher;
+        this.storagePolicy = storagePolicy;
+        this.writer = writer;
+        this.lazyLoader = lazyLoader;
+        this.emailSender = emailSender;
+        this.metrics = metrics;
+        this.run = run;
+    }
+
+    public void process(SamQuery userQuery) throws Exception {
+        processGroup(List.of(userQuery));
+    }
+
+    /**
+     * Runs the search shared by all {@code subscribers} once and notifies every subscriber about
+     * the results it has not seen yet. A failure for one subscriber does not affect the others.
+     */
+    public void processGroup(List<SamQuery> subscribers) throws Exception {
+        Map<SamQuery, Span> spans = new LinkedHashMap<>();
+        subscribers.forEach(userQuery -> spans.put(userQuery, startSpan(userQuery)));
+        // The shared search and the dedup reads are traced under the first subscriber
+        Span searchSpan = spans.get(subscribers.get(0));
+        if (subscribers.size() > 1) {
+            searchSpan.annotate("subscribers", subscribers.size());
+        }
+        SubscriberStates processed = new SubscriberStates(subscribers, searchSpan);
+        LocalSearch.Feed feed = feed();
+        Instant searchedAt = feed == null ? Instant.now() : feed.searchedAt();
+        Instant from = window.from(subscribers, searchedAt);
+
+        String preparedUrl;
+        SearchPager.Results search;
+        try {
+            preparedUrl = window.prepare(subscribers.get(0).getQueryUrl(), from);
+            log.info("Final URL: {}", preparedUrl);
+            search = fetch(preparedUrl, from, processed, feed, searchSpan);
+        } catch (Exception e) {
+            metrics.add(RunMetrics.Metric.QUERIES_FAILED, subscribers.size());
+            spans.values().forEach(span -> span.end(e));
+            throw e;
+        }
+
+        List<SearchHit> sharedResults = search.hits();
+        Instant watermark = watermark(search, searchedAt);
+        if(sharedResults.isEmpty()) {
+            log.info("No search results");
+        }
+        for (SamQuery userQuery : subscribers) {
+            Span span = spans.get(userQuery);
+            try {
+                if (sharedResults.isEmpty() && lazyLoader != null) {
+                    // Nothing to diff, so the dedup state is not even read
+                    advanceWatermark(userQuery, watermark, span);
+                    metrics.increment(RunMetrics.Metric.QUERIES_SKIPPED);
+                } else {
+                    notifySubscriber(userQuery, processed.get().get(userQuery), preparedUrl, sharedResults, watermark, span);
+                }
+                span.end();
+            } catch (Exception e) {
+                span.end(e);
+                metrics.increment(RunMetrics.Metric.QUERIES_FAILED);
+                if (subscribers.size() == 1) {
+                    throw e;
+                }
+                log.error("Query {} failed", userQuery.getNotificationId(), e);
+            }
+        }
+    }
+
+    /**
+     * Fetches the results modified within the window, from the feed when it covers the search.
+     * Paging stops at the first page that reaches past the window start or that all {@code processed}
+     * queries have already seen.
+     */
+    private SearchPager.Results fetch(String preparedUrl, Instant from, SubscriberStates processed, LocalSearch.Feed feed,
+            Span span) throws Exception {
+        List<SearchHit> local = feed == null ? null : feed.search(preparedUrl, from);
+        if (local != null) {
+            metrics.increment(RunMetrics.Metric.LOCAL_MATCHES);
+            local.removeIf(r -> window.isBefore(r, from));
+            return SearchPager.Results.complete(local);
+        }
+        return withinWindow(pager.fetch(preparedUrl,
+            page -> (!page.isEmpty() && window.isBefore(page.get(page.size() - 1), from))
+                || page.stream().allMatch(r -> processed.get().values().stream().allMatch(p -> p.contains(r.id()))),
+            span), from);
+    }
+
+    /**
+     * Drops the results before the window. A search that stopped at the window start read all it had
+     * to: with watermarks results are sorted newest first, so the unread pages only hold older results.
+     */
+    private SearchPager.Results withinWindow(SearchPager.Results results, Instant from) {
+        List<SearchHit> hits = results.hits();
+        boolean reachedWindowStart = !hits.isEmpty() && window.isBefore(hits.get(hits.size() - 1), from);
+        hits.removeIf(r -> window.isBefore(r, from));
+        return new SearchPager.Results(hits, results.truncated() && !reachedWindowStart, results.limited() && !reachedWindowStart);
+    }
+
+    /**
+     * What a search moves the watermark to: the time it started when it was read to its end. A search
+     * cut by the page limit only moves it to its oldest result read, which is as far as the next run
+     * can skip; one with a failed page leaves it as it is (null), as the unread pages may be read next time.
+     */
+    private Instant watermark(SearchPager.Results search, Instant searchedAt) {
+        if (search.truncated()) {
+            log.warn("Search was not read to its end, leaving the watermark as it is");
+            return null;
+        }
+        if (!search.limited()) {
+            return searchedAt;
+        }
+        Instant oldestRead = search.hits().isEmpty() ? null : window.modifiedAt(search.hits().get(search.hits().size() - 1));
+        if (oldestRead == null) {
+            log.warn("Search has more pages than are read, leaving the watermark as it is");
+            return null;
+        }
+        log.info("Search has more pages than are read, moving the watermark only to {}", oldestRead);
+        return oldestRead.isBefore(searchedAt) ? oldestRead : searchedAt;
+    }
+
+    /**
+     * Non-blocking variant of {@link #process(SamQuery)} for the async pipeline: every step
+     * continues on the thread that completed the previous one's I/O. The loader and writer must
+     * have been created with the async client.
+     */
+    public CompletableFuture<Void> processAsync(SamQuery userQuery) {
+        Span span = startSpan(userQuery);
+        CompletableFuture<Void> result;
+        try {
+            result = runAsync(userQuery, span);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return span.endOn(result).whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                metrics.increment(RunMetrics.Metric.QUERIES_FAILED);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> runAsync(SamQuery userQuery, Span span) {
+        if (localSearch != null) {
+            return localSearch.feed().thenCompose(feed -> runAsync(userQuery, feed, span));
+        }
+        return runAsync(userQuery, null, span);
+    }
+
+    private CompletableFuture<Void> runAsync(SamQuery userQuery, LocalSearch.Feed feed, Span span) {
+        Instant searchedAt = feed == null ? Instant.now() : feed.searchedAt();
+        Instant from = window.from(List.of(userQuery), searchedAt);
+        var preparedUrl = window.prepare(userQuery.getQueryUrl(), from);
+        log.info("Final URL: {}", preparedUrl);
+
+        // The dedup state of a projected scan is only read once there are results, so until then
+        // paging can only stop at the window start
+        ProcessedOpportunities scanned = lazyLoader == null ? ProcessedOpportunities.of(userQuery, storagePolicy) : null;
+        Predicate<List<SearchHit>> fullyProcessed = page -> (!page.isEmpty() && window.isBefore(page.get(page.size() - 1), from))
+            || (scanned != null && page.stream().allMatch(r -> scanned.contains(r.id())));
+        List<SearchHit> local = feed == null ? null : feed.search(preparedUrl, from);
+        if (local != null) {
+            metrics.increment(RunMetrics.Metric.LOCAL_MATCHES);
+        }
+        CompletableFuture<SearchPager.Results> search = local != null
+            ? CompletableFuture.completedFuture(SearchPager.Results.complete(local))
+            : pager.fetchAsync(preparedUrl, fullyProcessed, span);
+        return search.thenCompose(fetched -> {
+            SearchPager.Results inWindow = withinWindow(fetched, from);
+            List<SearchHit> results = inWindow.hits();
+            Instant watermark = watermark(inWindow, searchedAt);
+            if (results.isEmpty()) {
+                log.info("No search results");
+            }
+            if (scanned != null) {
+                return notifySubscriberAsync(userQuery, scanned, preparedUrl, results, watermark, span);
+            }
+            if (results.isEmpty()) {
+                // Nothing to diff, so the dedup state is not even read
+                return advanceWatermarkAsync(userQuery, watermark, span)
+                    .thenRun(() -> metrics.increment(RunMetrics.Metric.QUERIES_SKIPPED));
+            }
+            return lazyLoader.loadOneAsync(userQuery, false, span).thenCompose(ignored -> notifySubscriberAsync(userQuery,
+                ProcessedOpportunities.of(userQuery, storagePolicy), preparedUrl, results, watermark, span));
+        });
+    }
+
+    private CompletableFuture<Void> notifySubscriberAsync(SamQuery userQuery, ProcessedOpportunities processed,
+            String preparedUrl, List<SearchHit> results, Instant watermark, Span span) {
+        LocalDate today = LocalDate.now(ZoneId.of("US/Eastern"));
+        List<String> newIds = results.stream()
+            .map(SearchHit::id)
+            .filter(id -> !processed.contains(id))
+            .collect(Collectors.toList());
+        CompletableFuture<List<String>> recorded;
+        if (!newIds.isEmpty()) {
+            // Persist first to prevent duplicates if send fails/retries
+            recorded = writer.recordAsync(userQuery, processed, newIds, today, watermark, span);
+        } else if (processed.needsMigration()) {
+            log.info("Migrating processed opportunities of query {} to compact storage", userQuery.getNotificationId());
+            recorded = writer.recordAsync(userQuery, processed, List.of(), today, watermark, span);
+        } else {
+            recorded = CompletableFuture.completedFuture(List.of());
+        }
+        return recorded.thenCompose(recordedIds -> {
+            Set<String> notify = new HashSet<>(recordedIds);
+            List<SearchHit> newResults = results.stream().filter(r -> notify.contains(r.id())).collect(Collectors.toList());
+            if (newResults.isEmpty()) {
+                if (!newIds.isEmpty()) {
+                    log.info("New results of query {} were already recorded by another run", userQuery.getNotificationId());
+                }
+                return advanceWatermarkAsync(userQuery, watermark, span)
+                    .thenRun(() -> metrics.increment(RunMetrics.Metric.QUERIES_SKIPPED));
+            }
+            var subjectLine = String.format("Your SAM.gov query %s has new results", describe(userQuery, preparedUrl));
+            return enricher.fetchDetailsAsync(newResults, span)
+                .thenCompose(details ->
+                    emailSender.sendAsync(userQuery.getEmail(), subjectLine, SamUtils.generateSummary(newResults, details), span))
+                .thenRun(() -> metrics.increment(RunMetrics.Metric.QUERIES_PROCESSED));
+        });
+    }
+
+    /**
+     * @param watermark null when the search was not read to its end, which leaves the watermark as it is,
+     *                  see {@link #watermark(SearchPager.Results, Instant)}
+     */
+    private CompletableFuture<Void> advanceWatermarkAsync(SamQuery userQuery, Instant watermark, Span span) {
+        return watermark != null && window.shouldAdvance(userQuery, watermark)
+            ? writer.advanceWatermarkAsync(userQuery, watermark, span)
+            : CompletableFuture.completedFuture(null);
+    }
+
+    private void advanceWatermark(SamQuery userQuery, Instant watermark, Span span) {
+        if (watermark != null && window.shouldAdvance(userQuery, watermark)) {
+            writer.advanceWatermark(userQuery, watermark, span);
+        }
+    }
+
+    /**
+     * The run's opportunity feed, waiting for it to be fetched; null without local search or when
+     * it could not be fetched.
+     */
+    private LocalSearch.Feed feed() {
+        return localSearch == null ? null : localSearch.feed().join();
+    }
+
+    private Span startSpan(SamQuery userQuery) {
+        return run.child("query", null).annotate("notificationId", userQuery.getNotificationId());
+    }
+
+    /**
+     * The dedup state of a group's subscribers, read on first use.
+     */
+    private final class SubscriberStates {
+
+        private final List<SamQuery> subscribers;
+        private final Span span;
+        private Map<SamQuery, ProcessedOpportunities> states;
+
+        SubscriberStates(List<SamQuery> subscribers, Span span) {
+            this.subscribers = subscribers;
+            this.span = span;
+        }
+
+        Map<SamQuery, ProcessedOpportunities> get() {
+            if (states == null) {
+                if (lazyLoader != null) {
+                    try {
+                        lazyLoader.load(subscribers, false, span);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while loading processed opportunities", e);
+                    }
+                }
+                states = new LinkedHashMap<>();
+                subscribers.forEach(q -> states.put(q, ProcessedOpportunities.of(q, storagePolicy)));
+            }
+            return states;
+        }
+    }
+
+    /**
+     * Digest mode: runs all saved queries of one recipient and sends them a single email. Every query
+     * records all of its new results, but an opportunity found by several queries is listed, and its
+     * details fetched, only once, under the first query that found it. Identical searches are run once.
+     */
+    public void processDigest(List<SamQuery> userQueries) throws Exception {
+        // Every query has its span, the reads of the dedup state and the email are the digest's
+        Span digestSpan = run.child("digest", null).annotate("queries", userQueries.size());
+        SubscriberStates processed = new SubscriberStates(userQueries, digestSpan);
+        LocalDate today = LocalDate.now(ZoneId.of("US/Eastern"));
+        LocalSearch.Feed feed = feed();
+        Instant searchedAt = feed == null ? Instant.now() : feed.searchedAt();
+        // One window for all queries of the user, so a search shared by several of them covers all
+        Instant from = window.from(userQueries, searchedAt);
+        Map<String, SearchPager.Results> resultsBySearch = new HashMap<>();
+        Map<String, List<SearchHit>> sections = new LinkedHashMap<>();
+        Set<String> listed = new HashSet<>();
+        int notified = 0;
+
+        for (SamQuery userQuery : userQueries) {
+            Span span = startSpan(userQuery);
+            try {
+                var preparedUrl = window.prepare(userQuery.getQueryUrl(), from);
+                String search = QueryCanonicalizer.canonicalize(preparedUrl);
+                SearchPager.Results shared = resultsBySearch.get(search);
+                if (shared == null) {
+                    log.info("Final URL: {}", preparedUrl);
+                    // Other queries of the user may run the same search, so paging stops only when all know the page
+                    shared = fetch(preparedUrl, from, processed, feed, span);
+                    resultsBySearch.put(search, shared);
+                }
+                List<SearchHit> sharedResults = shared.hits();
+                Instant watermark = watermark(shared, searchedAt);
+                if (sharedResults.isEmpty() && lazyLoader != null) {
+                    advanceWatermark(userQuery, watermark, span);
+                    metrics.increment(RunMetrics.Metric.QUERIES_SKIPPED);
+                    span.end();
+                    continue;
+                }
+
+                List<SearchHit> newResults = recordNewResults(userQuery, processed.get().get(userQuery), sharedResults, today,
+                    watermark, span);
+                if (newResults.isEmpty()) {
+                    advanceWatermark(userQuery, watermark, span);
+                    metrics.increment(RunMetrics.Metric.QUERIES_SKIPPED);
+                } else {
+                    notified++;
+                }
+                newResults.removeIf(r -> !listed.add(r.id()));
+                if (!newResults.isEmpty()) {
+                    sections.computeIfAbsent(describe(userQuery, preparedUrl), k -> new ArrayList<>()).addAll(newResults);
+                }
+                span.end();
+            } catch (Exception e) {
+                span.end(e);
+                metrics.increment(RunMetrics.Metric.QUERIES_FAILED);
+                if (userQueries.size() == 1) {
+                    digestSpan.end(e);
+                    throw e;
+                }
+                log.error("Query {} failed, it is left out of the digest", userQuery.getNotificationId(), e);
+            }
+        }
+        if (sections.isEmpty()) {
+            log.info("No new results for the {} queries of {}", userQueries.size(), userQueries.get(0).getUserId());
+            digestSpan.end();
+            return;
+        }
+
+        List<SearchHit> allResults = sections.values().stream().flatMap(List::stream).collect(Collectors.toList());
+        var subjectLine = sections.size() == 1
+            ? String.format("Your SAM.gov query %s has new results", sections.keySet().iterator().next())
+            : String.format("%d of your SAM.gov queries have new results", sections.size());
+        try {
+            emailSender.send(userQueries.get(0).getEmail(), subjectLine,
+                SamUtils.generateDigest(sections, enricher.fetchDetails(allResults, digestSpan)), digestSpan);
+        } catch (Exception e) {
+            metrics.add(RunMetrics.Metric.QUERIES_FAILED, notified);
+            digestSpan.end(e);
+            throw e;
+        }
+        metrics.add(RunMetrics.Metric.QUERIES_PROCESSED, notified);
+        digestSpan.end();
+    }
+
+    private void notifySubscriber(SamQuery userQuery, ProcessedOpportunities processed,
+            String preparedUrl, List<SearchHit> sharedResults, Instant watermark, Span span) throws Exception {
+        LocalDate today = LocalDate.now(ZoneId.of("US/Eastern"));
+        List<SearchHit> newResults = recordNewResults(userQuery, processed, sharedResults, today, watermark, span);
+        if (newResults.isEmpty()) {
+            advanceWatermark(userQuery, watermark, span);
+            metrics.increment(RunMetrics.Metric.QUERIES_SKIPPED);
+            return;
+        }
+        var subjectLine = String.format("Your SAM.gov query %s has new results", describe(userQuery, preparedUrl));
+        emailSender.send(userQuery.getEmail(), subjectLine,
+            SamUtils.generateSummary(newResults, enricher.fetchDetails(newResults, span)), span);
+        metrics.increment(RunMetrics.Metric.QUERIES_PROCESSED);
+    }
+
+    private static String describe(SamQuery userQuery, String preparedUrl) {
+        return Optional.ofNullable(userQuery.getQueryDescription()).orElse(SamUtils.describeUrl(preparedUrl));
+    }
+
+    /**
+     * Records the results the query has not seen yet and returns those this run has to notify about.
+     */
+    private List<SearchHit> recordNewResults(SamQuery userQuery, ProcessedOpportunities processed,
+            List<SearchHit> sharedResults, LocalDate today, Instant watermark, Span span) throws InterruptedException {
+        // Results may be shared with other subscribers of the same search, so never filter them in place
+        List<SearchHit> newResults = sharedResults.stream()
+            .filter(r -> !processed.contains(r.id()))
+            .collect(Collectors.toCollection(ArrayList::new));
+        if(!newResults.isEmpty()) {
+            var opportunityIds = newResults.stream().map(SearchHit::id).collect(Collectors.toList());
+            // Persist first to prevent duplicates if send fails/retries
+            var recordedIds = new HashSet<>(writer.record(userQuery, processed, opportunityIds, today, watermark, span));
+            newResults.removeIf(r -> !recordedIds.contains(r.id()));
+            if (newResults.isEmpty()) {
+                log.info("New results of query {} were already recorded by another run", userQuery.getNotificationId());
+            }
+        } else if (processed.needsMigration()) {
+            log.info("Migrating processed opportunities of query {} to compact storage", userQuery.getNotificationId());
+            writer.record(userQuery, processed, List.of(), today, watermark, span);
+        }
+        return newResults;
+    }
+}
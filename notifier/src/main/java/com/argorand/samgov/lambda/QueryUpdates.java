@@ -0,0 +1,367 @@
+package com.argorand.samgov.lambda;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.ScanPartition;
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.ses.SesAsyncClient;
+import software.amazon.awssdk.services.ses.SesClient;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * The runs of the notifier: the whole table, one partition of a fanned out run, or the
+ * coordination of one. Holds only clients that live as long as the container, so one instance
+ * serves every warm invocation, whichever entry point created it.
+ */
+public class QueryUpdates {
+
+    /**
+     * Attributes read by the projected scan; the dedup state is loaded only for queries with candidates.
+     */
+    private static final List<String> PROJECTED_ATTRIBUTES =
+        List.of("notificationId", "userId", "query", "email", "user_description", "lastProcessedAt", "version");
+
+    private final Logger log = LoggerFactory.getLogger(QueryUpdates.class);
+
+    private final NotifierSettings settings;
+    private final DynamoDbEnhancedClient dynamoDbClient;
+    private final DynamoDbClient regularDynamoDbClient;
+    private final SesClient sesClient;
+    private final JsonMapper objectMapper;
+    private final OpportunityCache opportunityCache;
+    private final HttpClient httpClient;
+    // Describes the same connection to sam.gov as the client, so it outlasts the run too
+    private final AdaptiveRequestController.Limit requestLimit;
+    private final TableSchema<SamQuery> tableSchema;
+    private final MetricsSink metricsSink;
+    private final Tracer tracer;
+    private AsyncClients asyncClients;
+
+    /**
+     * The clients of the async pipeline, built by its first run.
+     */
+    private record AsyncClients(DynamoDbAsyncClient dynamoDbClient, DynamoDbEnhancedAsyncClient enhancedClient,
+            SesAsyncClient sesClient) {}
+
+    /**
+     * @param metricsSink receives the metrics of every run, null to not record them
+     * @param tracer traces every run, with a span per query and per outbound call
+     */
+    public QueryUpdates(NotifierSettings settings, DynamoDbEnhancedClient dynamoDbClient, DynamoDbClient regularDynamoDbClient,
+            SesClient sesClient, JsonMapper objectMapper, OpportunityCache opportunityCache, HttpClient httpClient,
+            TableSchema<SamQuery> tableSchema, MetricsSink metricsSink, Tracer tracer) {
+        this.settings = settings;
+        this.dynamoDbClient = dynamoDbClient;
+        this.regularDynamoDbClient = regularDynamoDbClient;
+        this.sesClient = sesClient;
+        this.objectMapper = objectMapper;
+        this.opportunityCache = opportunityCache;
+        this.httpClient = httpClient;
+        this.requestLimit = new AdaptiveRequestController.Limit(requestPolicy());
+        this.tableSchema = tableSchema;
+        this.metricsSink = metricsSink;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Processes the whole table in one invocation.
+     */
+    public void processAll() {
+        processSegments(IntStream.range(0, settings.scanSegments).boxed().toList(), settings.scanSegments);
+    }
+
+    /**
+     * Worker of a fanned out run: processes the one partition of its payload.
+     */
+    public void processPartition(ScanPartition partition) {
+        log.info("Processing segment {}/{}", partition.segment(), partition.totalSegments());
+        processSegments(List.of(partition.segment()), partition.totalSegments());
+    }
+
+    /**
+     * Coordinator of a fanned out run: splits the table into scan segments and hands one to each
+     * worker, either as asynchronous invocations of the worker function or in this process.
+     *
+     * @param inProcessWorker processes a partition when the run fans out in process
+     */
+    public void coordinate(Consumer<ScanPartition> inProcessWorker) {
+        List<ScanPartition> partitions = IntStream.range(0, settings.fanoutPartitions)
+            .mapToObj(segment -> new ScanPartition(segment, settings.fanoutPartitions))
+            .toList();
+        try {
+            if (settings.fanoutInProcess) {
+                new InProcessPartitionDispatcher(inProcessWorker).dispatch(partitions);
+            } else {
+                // Only the coordinator needs it, so it is not kept for the container
+                try (LambdaClient lambdaClient = NotifierComponents.lambdaClient(settings)) {
+                    new LambdaPartitionDispatcher(lambdaClient, settings.fanoutWorkerFunction, objectMapper).dispatch(partitions);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while dispatching partitions");
+        }
+    }
+
+    private void processSegments(List<Integer> segments, int totalSegments) {
+        Instant stopAt = settings.timeBudget.isZero() ? null : Instant.now().plus(settings.timeBudget);
+        opportunityCache.evictExpired();
+        long cacheHits = opportunityCache.hits();
+        long cacheMisses = opportunityCache.misses();
+        RunMetrics metrics = metricsSink == null ? RunMetrics.disabled() : new RunMetrics();
+        Span run = tracer.startRun(settings.functionDefinition)
+            .annotate("segments", segments.size())
+            .annotate("totalSegments", totalSegments);
+        DynamoDbTable<SamQuery> table = dynamoDbClient.table(settings.savedQueriesTable, tableSchema);
+        AdaptiveRequestController controller = new AdaptiveRequestController(httpClient, requestLimit,
+            settings.runTimeout.isZero() ? null : Instant.now().plus(settings.runTimeout), settings.httpCompression);
+        OpportunityEnricher enricher = new OpportunityEnricher(controller, objectMapper, opportunityCache,
+            settings.detailsMaxInFlight, settings.detailsRequestTimeout, settings.apiBaseUrl, metrics);
+        SearchResponseParser parser = new SearchResponseParser(objectMapper);
+        SearchPager pager = new SearchPager(controller, parser, settings.streamingParse,
+            settings.searchPageSize, settings.searchMaxPages, settings.apiBaseUrl, metrics);
+        SearchWindow window = new SearchWindow(settings.watermarks, settings.watermarkOverlap, settings.watermarkMaxLookbackDays);
+        LocalSearch localSearch = settings.localMatching
+            ? new LocalSearch(new SearchPager(controller, parser, settings.streamingParse, settings.localMatchingPageSize,
+                settings.localMatchingMaxPages, settings.apiBaseUrl, metrics),
+                window, settings.localMatchingFeedUrl, settings.localMatchingKeywords, run)
+            : null;
+        ProcessedOpportunities.Policy storagePolicy = new ProcessedOpportunities.Policy(settings.compactStorage,
+            settings.recentWindowDays, settings.historyInitialCapacity, settings.historyFalsePositiveRate, settings.historyMaxBlocks);
+        // Grouping reads the whole scan before it dispatches anything, so only per query runs go through the pipeline
+        if (settings.asyncPipeline && !settings.digest && !settings.deduplicateSearches) {
+            processSegmentsAsync(segments, totalSegments, stopAt, table, enricher, pager, localSearch, window,
+                storagePolicy, metrics, run);
+            log.info("Run finished, {}, {}", opportunityCache, controller);
+            recordCacheLookups(metrics, cacheHits, cacheMisses);
+            publish(metrics);
+            run.end();
+            return;
+        }
+        ProcessedOpportunityLoader loader = new ProcessedOpportunityLoader(regularDynamoDbClient, table.tableName());
+        // A projected bean lacks attributes, writing it back whole would delete them
+        ProcessedOpportunityWriter writer = new ProcessedOpportunityWriter(table, regularDynamoDbClient, loader,
+            settings.deltaWrites || settings.projectedScan, settings.writeAttempts, metrics);
+        EmailSender directSender = new SesEmailSender(sesClient, settings.senderEmailAddress, metrics);
+        // Workers of a fanned out run share the account's send rate
+        double sendRate = settings.deliveryQueue ? workerSendRate(sesSendRate(), segments.size(), totalSegments) : 0;
+        // Grouping reads the whole scan before it dispatches anything, so only per query runs can resume
+        ScanCheckpoints checkpoints = settings.checkpointTable.isBlank() || settings.digest || settings.deduplicateSearches
+            ? null
+            : new ScanCheckpoints(regularDynamoDbClient, settings.checkpointTable);
+        Map<Integer, Map<String, AttributeValue>> startKeys =
+            checkpoints == null ? Map.of() : checkpoints.load(segments, totalSegments);
+        Map<Integer, Map<String, AttributeValue>> positions = Map.of();
+
+        try (EmailSender emailSender = settings.deliveryQueue
+                ? new EmailDeliveryQueue(directSender, new TokenBucket(sendRate, 1),
+                    settings.deliveryQueueCapacity, settings.deliverySenders, settings.deliveryAttempts)
+                : directSender;
+             SegmentedScan savedQueries = new SegmentedScan(table, segments, totalSegments,
+                settings.projectedScan ? PROJECTED_ATTRIBUTES : List.of(), startKeys, metrics, run);
+             QueryDispatcher dispatcher = settings.concurrentExecution
+                ? QueryDispatcher.concurrent(settings.maxConcurrency)
+                : QueryDispatcher.sequential()) {
+            QueryProcessor processor = new QueryProcessor(pager, localSearch, window,
+                enricher, storagePolicy, writer, settings.projectedScan ? loader : null, emailSender, metrics, run);
+            if (settings.digest) {
+                for (List<SamQuery> userQueries : groupByRecipient(savedQueries).values()) {
+                    if (outOfTime(stopAt)) {
+                        break;
+                    }
+                    dispatcher.dispatch(userQueries.get(0).getNotificationId(), () -> processor.processDigest(userQueries));
+                }
+            } else if (settings.deduplicateSearches) {
+                for (List<SamQuery> subscribers : groupBySearch(savedQueries).values()) {
+                    if (outOfTime(stopAt)) {
+                        break;
+                    }
+                    dispatcher.dispatch(subscribers.get(0).getNotificationId(), () -> processor.processGroup(subscribers));
+                }
+            } else {
+                Iterator<SamQuery> pending = savedQueries.iterator();
+                while (!outOfTime(stopAt) && pending.hasNext()) {
+                    SamQuery userQuery = pending.next();
+                    dispatcher.dispatch(userQuery.getNotificationId(), () -> processor.process(userQuery));
+                }
+                positions = Map.copyOf(savedQueries.positions());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while dispatching queries");
+        }
+        // Closing the dispatcher above waited for every dispatched query, so only pages that were
+        // processed are saved; an interrupted run saves nothing
+        if (checkpoints != null) {
+            checkpoints.save(positions, totalSegments);
+        }
+        log.info("Run finished, {}, {}", opportunityCache, controller);
+        recordCacheLookups(metrics, cacheHits, cacheMisses);
+        publish(metrics);
+        run.end();
+    }
+
+    private void processSegmentsAsync(List<Integer> segments, int totalSegments, Instant stopAt,
+            DynamoDbTable<SamQuery> table, OpportunityEnricher enricher, SearchPager pager, LocalSearch localSearch,
+            SearchWindow window, ProcessedOpportunities.Policy storagePolicy, RunMetrics metrics, Span run) {
+        AsyncClients clients = asyncClients();
+        ProcessedOpportunityLoader loader =
+            new ProcessedOpportunityLoader(regularDynamoDbClient, clients.dynamoDbClient(), table.tableName());
+        ProcessedOpportunityWriter writer = new ProcessedOpportunityWriter(table, regularDynamoDbClient,
+            clients.dynamoDbClient(), loader, true, settings.writeAttempts, metrics);
+        EmailSender directSender = new SesAsyncEmailSender(clients.sesClient(), settings.senderEmailAddress, metrics);
+        double sendRate = settings.deliveryQueue ? workerSendRate(sesSendRate(), segments.size(), totalSegments) : 0;
+
+        try (EmailSender emailSender = settings.deliveryQueue
+                ? new EmailDeliveryQueue(directSender, new TokenBucket(sendRate, 1),
+                    settings.deliveryQueueCapacity, settings.deliverySenders, settings.deliveryAttempts)
+                : directSender) {
+            QueryProcessor processor = new QueryProcessor(pager, localSearch, window,
+                enricher, storagePolicy, writer, settings.projectedScan ? loader : null, emailSender, metrics, run);
+            new AsyncQueryPipeline(clients.enhancedClient().table(settings.savedQueriesTable, tableSchema),
+                settings.projectedScan ? PROJECTED_ATTRIBUTES : List.of(), processor, settings.asyncMaxInFlight)
+                .run(segments, totalSegments, stopAt)
+                .join();
+        } catch (CompletionException e) {
+            log.error("Async run failed", e.getCause());
+        }
+    }
+
+    private AdaptiveRequestController.Policy requestPolicy() {
+        Duration readTimeout = settings.httpReadTimeout.isZero() ? null : settings.httpReadTimeout;
+        if (!settings.requestControl) {
+            return AdaptiveRequestController.Policy.passThrough(readTimeout);
+        }
+        // The controller's own timeout, unless the client-wide one is shorter
+        Duration requestTimeout = readTimeout != null && readTimeout.compareTo(settings.controlRequestTimeout) < 0
+            ? readTimeout
+            : settings.controlRequestTimeout;
+        return new AdaptiveRequestController.Policy(true, settings.controlInitialLimit, settings.controlMaxLimit,
+            settings.controlLatencyTarget, settings.controlMaxAttempts, settings.controlBaseBackoff,
+            settings.controlMaxBackoff, requestTimeout);
+    }
+
+    /**
+     * Logs the end-of-run summary and hands the metrics to the sink; a failing sink never fails the run.
+     */
+    /**
+     * Adds the cache lookups since the counts taken at the start of the run. Workers fanned out in
+     * process share the cache, so each of them reports the lookups of all during its run.
+     */
+    private void recordCacheLookups(RunMetrics metrics, long hitsBefore, long missesBefore) {
+        metrics.add(RunMetrics.Metric.DETAILS_CACHE_HITS, opportunityCache.hits() - hitsBefore);
+        metrics.add(RunMetrics.Metric.DETAILS_CACHE_MISSES, opportunityCache.misses() - missesBefore);
+    }
+
+    private void publish(RunMetrics metrics) {
+        if (metricsSink == null) {
+            return;
+        }
+        log.info("Run metrics: {}", metrics);
+        try {
+            metricsSink.publish(metrics);
+        } catch (RuntimeException e) {
+            log.warn("Could not publish the run metrics", e);
+        }
+    }
+
+    private synchronized AsyncClients asyncClients() {
+        if (asyncClients == null) {
+            DynamoDbAsyncClient dynamoDbAsyncClient = NotifierComponents.dynamoDbAsyncClient(settings);
+            asyncClients = new AsyncClients(dynamoDbAsyncClient,
+                DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(dynamoDbAsyncClient).build(),
+                NotifierComponents.sesAsyncClient(settings));
+        }
+        return asyncClients;
+    }
+
+    private boolean outOfTime(Instant stopAt) {
+        if (stopAt != null && Instant.now().isAfter(stopAt)) {
+            log.warn("Time budget used up, the remaining queries are left to the next run");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The configured SES send rate, or the account's maximum send rate when none is configured.
+     */
+    private double sesSendRate() {
+        if (settings.sesMaxSendRate > 0) {
+            return settings.sesMaxSendRate;
+        }
+        try {
+            double maxSendRate = sesClient.getSendQuota().maxSendRate();
+            log.info("Using the SES account maximum send rate of {}/s", maxSendRate);
+            return maxSendRate;
+        } catch (Exception e) {
+            log.warn("Could not read the SES send quota, sending one email per second", e);
+            return 1;
+        }
+    }
+
+    /**
+     * The share of the account's send rate of a run scanning {@code segments} of {@code totalSegments},
+     * as the workers of a fanned out run send at the same time.
+     */
+    static double workerSendRate(double accountRate, int segments, int totalSegments) {
+        return accountRate * segments / totalSegments;
+    }
+
+    /**
+     * Groups saved queries that resolve to the same sam.gov search, so each search runs once per run.
+     */
+    private Map<String, List<SamQuery>> groupBySearch(Iterable<SamQuery> savedQueries) {
+        Map<String, List<SamQuery>> groups = new LinkedHashMap<>();
+        int total = 0;
+        for (SamQuery userQuery : savedQueries) {
+            String key;
+            try {
+                key = QueryCanonicalizer.canonicalize(DateSubstitutor.updateUrl(userQuery.getQueryUrl()));
+            } catch (Exception e) {
+                // Keep the broken query on its own, it will fail and be reported when processed
+                key = "invalid:" + userQuery.getNotificationId();
+            }
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(userQuery);
+            total++;
+        }
+        log.info("{} saved queries resolve to {} distinct searches", total, groups.size());
+        return groups;
+    }
+
+    /**
+     * Groups saved queries by owner and recipient address, so every recipient gets one digest.
+     */
+    private Map<String, List<SamQuery>> groupByRecipient(Iterable<SamQuery> savedQueries) {
+        Map<String, List<SamQuery>> groups = new LinkedHashMap<>();
+        int total = 0;
+        for (SamQuery userQuery : savedQueries) {
+            groups.computeIfAbsent(userQuery.getUserId() + " " + userQuery.getEmail(), k -> new ArrayList<>()).add(userQuery);
+            total++;
+        }
+        log.info("{} saved queries belong to {} recipients", total, groups.size());
+        return groups;
+    }
+}
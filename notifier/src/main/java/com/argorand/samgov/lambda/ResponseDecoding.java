@@ -0,0 +1,114 @@
+package com.argorand.samgov.lambda;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Body handlers that undo the {@code Content-Encoding} of a response. {@link java.net.http.HttpClient}
+ * does not decompress bodies, so requests may only ask for {@code gzip} or {@code deflate} when
+ * their responses are read with these handlers. Uncompressed responses are passed through. Strings
+ * are decoded with the charset of the {@code Content-Type}, UTF-8 when it names none or an unknown one.
+ */
+public class ResponseDecoding {
+
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    public static HttpResponse.BodyHandler<String> ofString() {
+        return info -> {
+            String encoding = encoding(info.headers());
+            Charset charset = charset(info.headers());
+            if (encoding == null) {
+                return HttpResponse.BodySubscribers.ofString(charset);
+            }
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+                try (InputStream decoded = decode(new ByteArrayInputStream(bytes), encoding)) {
+                    return new String(decoded.readAllBytes(), charset);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
+    }
+
+    public static HttpResponse.BodyHandler<InputStream> ofInputStream() {
+        return info -> {
+            String encoding = encoding(info.headers());
+            if (encoding == null) {
+                return HttpResponse.BodySubscribers.ofInputStream();
+            }
+            // Decoding streams read the header on construction, which must not happen on the client's threads
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+                body -> new LazyDecodingStream(body, encoding));
+        };
+    }
+
+    private static String encoding(HttpHeaders headers) {
+        String encoding = headers.firstValue("Content-Encoding").map(String::trim).map(String::toLowerCase).orElse("");
+        return encoding.equals("gzip") || encoding.equals("x-gzip") || encoding.equals("deflate") ? encoding : null;
+    }
+
+    private static Charset charset(HttpHeaders headers) {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String[] nameAndValue = parameter.split("=", 2);
+            if (nameAndValue.length == 2 && nameAndValue[0].trim().equalsIgnoreCase("charset")) {
+                try {
+                    return Charset.forName(nameAndValue[1].trim().replace("\"", ""));
+                } catch (IllegalArgumentException e) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static InputStream decode(InputStream body, String encoding) throws IOException {
+        return encoding.equals("deflate") ? new InflaterInputStream(body) : new GZIPInputStream(body);
+    }
+
+    private static final class LazyDecodingStream extends InputStream {
+
+        private final InputStream body;
+        private final String encoding;
+        private InputStream decoded;
+
+        LazyDecodingStream(InputStream body, String encoding) {
+            this.body = body;
+            this.encoding = encoding;
+        }
+
+        private InputStream decoded() throws IOException {
+            if (decoded == null) {
+                decoded = decode(body, encoding);
+            }
+            return decoded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return decoded().read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decoded != null) {
+                decoded.close();
+            } else {
+                body.close();
+            }
+        }
+    }
+}
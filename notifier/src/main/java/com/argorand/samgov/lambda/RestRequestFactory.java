@@ -2,24 +2,48 @@ package com.argorand.samgov.lambda;
 
 import java.net.URI;
 import java.net.http.HttpRequest;
+import java.time.Duration;
 
 public class RestRequestFactory {
 
     private static final String SAMGOV_API_CONTENT_TYPE = "application/hal+json";
 
+    public static final URI SAMGOV_API = URI.create("https://sam.gov");
+
     public static HttpRequest buildMainRestQuery(String url) {
+        return buildMainRestQuery(url, SAMGOV_API);
+    }
+
+    /**
+     * @param apiBase scheme and authority the saved search URL is sent to instead of its own, e.g.
+     *                a local stand-in of sam.gov
+     */
+    public static HttpRequest buildMainRestQuery(String url, URI apiBase) {
         return HttpRequest.newBuilder()
-            .uri(URI.create(url))
+            .uri(rebase(URI.create(url), apiBase))
             .header("Accept", SAMGOV_API_CONTENT_TYPE)
             .GET()
             .build();
     }
     
-    public static HttpRequest buildGetOpportunityQuery(String id) {
+    public static HttpRequest buildGetOpportunityQuery(String id, Duration timeout) {
+        return buildGetOpportunityQuery(id, timeout, SAMGOV_API);
+    }
+
+    public static HttpRequest buildGetOpportunityQuery(String id, Duration timeout, URI apiBase) {
         return HttpRequest.newBuilder()
-            .uri(URI.create(String.format("https://sam.gov/api/prod/opps/v2/opportunities/%s", id)))
+            .uri(rebase(URI.create(String.format("https://sam.gov/api/prod/opps/v2/opportunities/%s", id)), apiBase))
             .header("Accept", SAMGOV_API_CONTENT_TYPE)
+            .timeout(timeout)
             .GET()
             .build();
     }
+
+    private static URI rebase(URI uri, URI apiBase) {
+        if (apiBase.getScheme().equals(uri.getScheme()) && apiBase.getRawAuthority().equals(uri.getRawAuthority())) {
+            return uri;
+        }
+        return URI.create(apiBase.getScheme() + "://" + apiBase.getRawAuthority() + uri.getRawPath()
+            + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery()));
+    }
 }
@@ -0,0 +1,210 @@
+package com.argorand.samgov.lambda;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers and counters of the stages of one run, recorded by the components of the run and handed
+ * to a {@link MetricsSink} when it ends. Every sample is kept, so sinks can report exact
+ * percentiles. Safe for concurrent workers; a {@link #disabled()} instance records nothing.
+ */
+public class RunMetrics {
+
+    public enum Unit {
+        MILLISECONDS("Milliseconds"), BYTES("Bytes"), COUNT("Count");
+
+        private final String cloudWatchName;
+
+        Unit(String cloudWatchName) {
+            this.cloudWatchName = cloudWatchName;
+        }
+
+        public String cloudWatchName() {
+            return cloudWatchName;
+        }
+    }
+
+    /**
+     * Metrics in {@link Unit#COUNT} are counters, all others distributions of samples.
+     */
+    public enum Metric {
+        /** One page of the saved queries scan. */
+        SCAN_PAGE_LATENCY("ScanPageLatency", Unit.MILLISECONDS),
+        /** One search page request, up to the complete body unless it is parsed while streaming. */
+        SEARCH_LATENCY("SearchLatency", Unit.MILLISECONDS),
+        /** Size of one search page, as announced by {@code Content-Length} or else as decoded. */
+        SEARCH_BYTES("SearchBytes", Unit.BYTES),
+        /** Parsing one search page; includes reading the body when it is parsed while streaming. */
+        PARSE_TIME("ParseTime", Unit.MILLISECONDS),
+        /** One opportunity details request, without the wait for an in-flight permit. */
+        DETAILS_LATENCY("DetailsLatency", Unit.MILLISECONDS),
+        /** Lookups of the run in the {@link OpportunityCache}, which counts them. */
+        DETAILS_CACHE_HITS("DetailsCacheHits", Unit.COUNT),
+        DETAILS_CACHE_MISSES("DetailsCacheMisses", Unit.COUNT),
+        /** One update of a saved query, every attempt of a conditional update counts. */
+        DYNAMODB_UPDATE_LATENCY("DynamoDbUpdateLatency", Unit.MILLISECONDS),
+        SES_SEND_LATENCY("SesSendLatency", Unit.MILLISECONDS),
+        /** Queries that recorded new results and had them sent. */
+        QUERIES_PROCESSED("QueriesProcessed", Unit.COUNT),
+        /** Queries without new results. */
+        QUERIES_SKIPPED("QueriesSkipped", Unit.COUNT),
+        /** Searches answered from the run's opportunity feed instead of sam.gov. */
+        LOCAL_MATCHES("LocalMatches", Unit.COUNT),
+        QUERIES_FAILED("QueriesFailed", Unit.COUNT);
+
+        private final String metricName;
+        private final Unit unit;
+
+        Metric(String metricName, Unit unit) {
+            this.metricName = metricName;
+            this.unit = unit;
+        }
+
+        public String metricName() {
+            return metricName;
+        }
+
+        public Unit unit() {
+            return unit;
+        }
+
+        public boolean isCounter() {
+            return unit == Unit.COUNT;
+        }
+    }
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final Map<Metric, Samples> samples = new EnumMap<>(Metric.class);
+    private final Map<Metric, LongAdder> counters = new EnumMap<>(Metric.class);
+
+    public RunMetrics() {
+        this(true);
+    }
+
+    private RunMetrics(boolean enabled) {
+        this.enabled = enabled;
+        // Filled up front, so the maps are only read while the run records
+        for (Metric metric : Metric.values()) {
+            if (metric.isCounter()) {
+                counters.put(metric, new LongAdder());
+            } else {
+                samples.put(metric, new Samples());
+            }
+        }
+    }
+
+    public static RunMetrics disabled() {
+        return new RunMetrics(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the time since {@code startedNanos}, a {@link System#nanoTime()} reading.
+     */
+    public void time(Metric metric, long startedNanos) {
+        if (enabled) {
+            record(metric, (System.nanoTime() - startedNanos) / NANOS_PER_MILLI);
+        }
+    }
+
+    public void record(Metric metric, double value) {
+        if (enabled) {
+            samples.get(metric).add(value);
+        }
+    }
+
+    public void increment(Metric metric) {
+        add(metric, 1);
+    }
+
+    public void add(Metric metric, long count) {
+        if (enabled) {
+            counters.get(metric).add(count);
+        }
+    }
+
+    /**
+     * The samples of a distribution in ascending order.
+     */
+    public double[] values(Metric metric) {
+        return samples.get(metric).sorted();
+    }
+
+    public long count(Metric metric) {
+        return counters.get(metric).sum();
+    }
+
+    /**
+     * Adds everything recorded by {@code other}.
+     */
+    public void addAll(RunMetrics other) {
+        for (Metric metric : Metric.values()) {
+            if (metric.isCounter()) {
+                add(metric, other.count(metric));
+            } else if (enabled) {
+                samples.get(metric).addAll(other.values(metric));
+            }
+        }
+    }
+
+    /**
+     * One line with the counters, and count, p50, p99 and maximum of every distribution with samples.
+     */
+    @Override
+    public String toString() {
+        StringJoiner summary = new StringJoiner(", ");
+        for (Metric metric : Metric.values()) {
+            if (metric.isCounter()) {
+                summary.add(metric.metricName() + " " + count(metric));
+                continue;
+            }
+            double[] values = values(metric);
+            if (values.length > 0) {
+                String unit = metric.unit() == Unit.MILLISECONDS ? " ms" : "";
+                summary.add(String.format("%s n=%d p50=%.1f%s p99=%.1f%s max=%.1f%s", metric.metricName(), values.length,
+                    percentile(values, 0.50), unit, percentile(values, 0.99), unit, values[values.length - 1], unit));
+            }
+        }
+        return summary.toString();
+    }
+
+    private static double percentile(double[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1))];
+    }
+
+    private static final class Samples {
+
+        private double[] values = new double[16];
+        private int size;
+
+        synchronized void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        synchronized void addAll(double[] more) {
+            if (size + more.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(size * 2, size + more.length));
+            }
+            System.arraycopy(more, 0, values, size, more.length);
+            size += more.length;
+        }
+
+        synchronized double[] sorted() {
+            double[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
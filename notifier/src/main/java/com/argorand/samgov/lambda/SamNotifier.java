@@ -1,61 +1,34 @@
 package com.argorand.samgov.lambda;
 
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
 import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
 
-import com.argorand.samgov.beans.ApiResponse;
-import com.argorand.samgov.beans.Result;
+import com.argorand.samgov.beans.ScanPartition;
 import com.argorand.samgov.beans.dynamodb.SamQuery;
 
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
-import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
-import software.amazon.awssdk.enhanced.dynamodb.model.Page;
-import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.ses.SesClient;
-import software.amazon.awssdk.services.ses.SesClientBuilder;
-import software.amazon.awssdk.services.ses.model.Body;
-import software.amazon.awssdk.services.ses.model.Content;
-import software.amazon.awssdk.services.ses.model.Destination;
-import software.amazon.awssdk.services.ses.model.Message;
-import software.amazon.awssdk.services.ses.model.SendEmailRequest;
 
 import org.springframework.boot.jackson.autoconfigure.JsonMapperBuilderCustomizer;
 
-import tools.jackson.databind.DeserializationFeature;
 import tools.jackson.databind.SerializationFeature;
 import tools.jackson.databind.json.JsonMapper;
 
 @SpringBootApplication
 public class SamNotifier {
 
-    @Value("${aws.region}")
-    private String region;
-
-    @Value("${aws.endpoint:}")
-    private String awsEndpoint;
-
-    @Value("${SAVED_QUERIES_TABLE:__FIXME__MISSING_TABLE_NAME}")
-    private String savedQueriesTable;
-
-    @Value("${SES_SENDER:api@argorand.io}")
-    private String senderEmailAddress;
-
     @Bean
     JsonMapperBuilderCustomizer jacksonCustomizer() {
         return builder -> builder.enable(SerializationFeature.INDENT_OUTPUT);
@@ -63,112 +36,121 @@ public class SamNotifier {
 
     @Bean
     JsonMapper objectMapper() {
-        return JsonMapper.builder()
-                .disable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
-                .build();
+        return NotifierComponents.objectMapper();
     }
-    
-    private HttpClient client = HttpClient.newHttpClient();
 
     private final Logger log = LoggerFactory.getLogger(SamNotifier.class);
 
+    /**
+     * The settings resolved by the environment, with the defaults shared with {@link NotifierHandler}.
+     */
     @Bean
-    public DynamoDbEnhancedClient dynamoDbClient() {
-        DynamoDbClientBuilder builder = DynamoDbClient.builder()
-                .region(Region.of(region))
-                .credentialsProvider(DefaultCredentialsProvider.builder().build());
+    public NotifierSettings notifierSettings(Environment environment) {
+        return NotifierSettings.from(environment::getProperty);
+    }
 
-        if (awsEndpoint != null && !awsEndpoint.isEmpty()) {
-            builder.endpointOverride(java.net.URI.create(awsEndpoint));
-        }
-        DynamoDbClient regularClient = builder.build();
-        return DynamoDbEnhancedClient.builder().dynamoDbClient(regularClient).build();
+    @Bean
+    public DynamoDbClient regularDynamoDbClient(NotifierSettings notifierSettings) {
+        return NotifierComponents.dynamoDbClient(notifierSettings);
     }
 
     @Bean
-    public SesClient sesClient() {
-        SesClientBuilder builder = SesClient.builder()
-                .region(Region.of(region))
-                .credentialsProvider(DefaultCredentialsProvider.builder().build());
+    public DynamoDbEnhancedClient dynamoDbClient(DynamoDbClient regularDynamoDbClient) {
+        return DynamoDbEnhancedClient.builder().dynamoDbClient(regularDynamoDbClient).build();
+    }
 
-        if (awsEndpoint != null && !awsEndpoint.isEmpty()) {
-            builder.endpointOverride(java.net.URI.create(awsEndpoint));
-        }
-        return builder.build();
+    @Bean
+    public SesClient sesClient(NotifierSettings notifierSettings) {
+        return NotifierComponents.sesClient(notifierSettings);
+    }
+
+    @Bean
+    public ExecutorService samGovHttpExecutor(NotifierSettings notifierSettings) {
+        return NotifierComponents.httpExecutor(notifierSettings);
+    }
+
+    @Bean
+    public HttpClient samGovHttpClient(NotifierSettings notifierSettings, ExecutorService samGovHttpExecutor) {
+        return NotifierComponents.httpClient(notifierSettings, samGovHttpExecutor);
+    }
+
+    @Bean
+    public TableSchema<SamQuery> samQueryTableSchema() {
+        return NotifierComponents.samQueryTableSchema();
     }
 
+    /**
+     * Primes the run's code paths once all beans exist, i.e. during the Lambda init phase.
+     */
     @Bean
-    public Supplier<Void> checkQueryUpdates(DynamoDbEnhancedClient dynamoDbClient, SesClient sesClient, JsonMapper objectMapper) {
+    public SmartInitializingSingleton startupPrimer(NotifierSettings notifierSettings, JsonMapper objectMapper,
+            TableSchema<SamQuery> samQueryTableSchema, HttpClient samGovHttpClient) {
         return () -> {
-            DynamoDbTable<SamQuery> table = dynamoDbClient.table(savedQueriesTable, TableSchema.fromBean(SamQuery.class));
-
-            for(Page<SamQuery> page: table.scan(ScanEnhancedRequest.builder().build())) {
-                for (SamQuery userQuery : page.items()) {
-                    try {
-                        var preparedUrl = DateSubstitutor.updateUrl(userQuery.getQueryUrl());
-                        
-                        log.info("Final URL: {}", preparedUrl);
-                        HttpRequest request = RestRequestFactory.buildMainRestQuery(preparedUrl);
-            
-                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-                        ApiResponse apiResponse = objectMapper.readValue(response.body(), ApiResponse.class);
-
-                        if(apiResponse.getEmbedded().getResults().isEmpty()) {
-                            log.info("No search results");
-                        } else {
-                            var alreadyProcessedIds = 
-                                Optional.ofNullable(userQuery.getProcessedOpportunities()).orElse(new HashSet<String>());
-                            log.info(alreadyProcessedIds.toString());
-                            // log.info("alreadyProcessedIds {}", alreadyProcessedIds.toString());
-                            // log.info("Results before cleanup {}", apiResponse.getEmbedded().getResults().size());
-                            apiResponse.getEmbedded().getResults().removeIf(r -> alreadyProcessedIds.contains(r.getId()));
-                            // log.info("Results after cleanup {}", apiResponse.getEmbedded().getResults().size());
-                            if(!apiResponse.getEmbedded().getResults().isEmpty()) {
-                                var opportunityIds = apiResponse.getEmbedded().getResults().stream().map(Result::getId).collect(Collectors.toList());
-                                userQuery.addProcessedOpportunities(opportunityIds);
-                                table.updateItem(userQuery);  // Persist first to prevent duplicates if send fails/retries
-
-                                var subjectLine =
-                                    String.format("Your SAM.gov query %s has new results",
-                                        Optional.ofNullable(userQuery.getQueryDescription()).orElse(SamUtils.describeUrl(preparedUrl))
-                                );
-                                sendEmail(sesClient, senderEmailAddress, userQuery.getEmail(), subjectLine,
-                                    null, SamUtils.generateSummary(apiResponse, client, objectMapper));
-                            }
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+            if (notifierSettings.priming) {
+                try {
+                    new StartupPrimer(objectMapper, samQueryTableSchema, samGovHttpClient).prime(notifierSettings.primingConnect);
+                } catch (Exception e) {
+                    log.warn("Priming failed, the first run pays for its own warm-up", e);
                 }
             }
-            return null;
         };
     }
 
-    private void sendEmail(SesClient sesClient, String sender, String recipient, String subject, String bodyText, String bodyHtml) {
-        
-        Content subjectContent = Content.builder().data(subject).build();
-        Body body = Body.builder()
-                //.text(Content.builder().data(bodyText).build())
-                .html(Content.builder().data(bodyHtml).build())
-                .build();
+    /**
+     * Lives as long as the Spring context, so cached details survive warm Lambda invocations.
+     */
+    @Bean
+    public OpportunityCache opportunityCache(NotifierSettings notifierSettings) {
+        return NotifierComponents.opportunityCache(notifierSettings);
+    }
 
-        Message message = Message.builder()
-                .subject(subjectContent)
-                .body(body)
-                .build();
+    @Bean
+    public QueryUpdates queryUpdates(NotifierSettings notifierSettings, DynamoDbEnhancedClient dynamoDbClient,
+            DynamoDbClient regularDynamoDbClient, SesClient sesClient, JsonMapper objectMapper,
+            OpportunityCache opportunityCache, HttpClient samGovHttpClient, TableSchema<SamQuery> samQueryTableSchema) {
+        return new QueryUpdates(notifierSettings, dynamoDbClient, regularDynamoDbClient, sesClient, objectMapper,
+            opportunityCache, samGovHttpClient, samQueryTableSchema, NotifierComponents.metricsSink(notifierSettings, objectMapper),
+            NotifierComponents.tracer(notifierSettings, objectMapper));
+    }
 
-        SendEmailRequest request = SendEmailRequest.builder()
-                .destination(Destination.builder().toAddresses(recipient).build())
-                .message(message)
-                .source(sender)
-                .build();
+    /**
+     * Processes the whole table in one invocation.
+     */
+    @Bean
+    public Supplier<Void> checkQueryUpdates(QueryUpdates queryUpdates) {
+        return () -> {
+            queryUpdates.processAll();
+            return null;
+        };
+    }
 
-        sesClient.sendEmail(request);
+    /**
+     * Worker of a fanned out run: processes the one partition of its payload.
+     */
+    @Bean
+    public Function<ScanPartition, Void> processQueryPartition(QueryUpdates queryUpdates) {
+        return partition -> {
+            queryUpdates.processPartition(partition);
+            return null;
+        };
     }
 
+    /**
+     * Coordinator of a fanned out run.
+     */
+    @Bean
+    public Supplier<Void> coordinateQueryUpdates(QueryUpdates queryUpdates, Function<ScanPartition, Void> processQueryPartition) {
+        return () -> {
+            queryUpdates.coordinate(processQueryPartition::apply);
+            return null;
+        };
+    }
 
+    /**
+     * Starts the context outside Lambda, e.g. for the CDS training run and the startup measurement
+     * in the build, which exit once the context is refreshed.
+     */
     public static void main(String[] args) {
-
+        SpringApplication.run(SamNotifier.class, args);
     }
 }
@@ -1,21 +1,14 @@
 package com.argorand.samgov.lambda;
 
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import com.argorand.samgov.beans.ApiResponse;
 import com.argorand.samgov.beans.Description;
-import com.argorand.samgov.beans.Organization;
-import com.argorand.samgov.beans.Result;
+import com.argorand.samgov.beans.SearchHit;
 import com.argorand.samgov.beans.Solicitation;
 
-import tools.jackson.databind.json.JsonMapper;
-
 public class SamUtils {
     
     public static String describeUrl(String url) {
@@ -70,39 +63,51 @@ public class SamUtils {
         }
     }
 
-    public static String generateSummary(ApiResponse apiResponse, HttpClient restCient, JsonMapper objectMapper) throws Exception {
+    /**
+     * Renders the results in their original order. {@code details} holds the fetched opportunity
+     * details by id; a result with descriptions but without details gets a link-only entry.
+     */
+    public static String generateSummary(List<SearchHit> results, Map<String, Solicitation> details) {
         StringBuilder summary = new StringBuilder();
 
-        List<Result> results = apiResponse.getEmbedded().getResults();
-
-        for (Result solicitation : results) {
+        for (SearchHit solicitation : results) {
 
-            summary.append("<h2>").append(solicitation.getTitle()).append("</h2>");
+            summary.append("<h2>").append(solicitation.title()).append("</h2>");
 
             summary.append("<p>");
             summary.append("View on SAM: ").append(
-                String.format("https://sam.gov/opp/%s/view", solicitation.getId())).append("\n");
-
-            if (solicitation.getDescriptions() != null) {
-                HttpRequest getOpportunityRequest = RestRequestFactory.buildGetOpportunityQuery(solicitation.getId());
-                HttpResponse<String> response =  restCient.send(getOpportunityRequest, HttpResponse.BodyHandlers.ofString());
-                Solicitation opportunity = objectMapper.readValue(response.body(), Solicitation.class);
-                for (Description description : opportunity.getDescriptions()) {
-                    summary.append(description.getBody()).append("<br/>");
+                String.format("https://sam.gov/opp/%s/view", solicitation.id())).append("\n");
+
+            if (solicitation.hasDescriptions()) {
+                Solicitation opportunity = details.get(solicitation.id());
+                if (opportunity == null || opportunity.getDescriptions() == null) {
+                    summary.append("Description is not available, please see the notice on SAM.gov.<br/>");
+                } else {
+                    for (Description description : opportunity.getDescriptions()) {
+                        summary.append(description.getBody()).append("<br/>");
+                    }
                 }
             }
 
-            // Add Organization.name for level = 1
-            if (solicitation.getOrganizationHierarchy() != null) {
-                for (Organization organization : solicitation.getOrganizationHierarchy()) {
-                    if (organization.getLevel() == 1) {
-                        summary.append("Organization: ").append(organization.getName()).append("<br/>");
-                    }
-                }
+            // Organization.name for level = 1
+            if (solicitation.organizationName() != null) {
+                summary.append("Organization: ").append(solicitation.organizationName()).append("<br/>");
             }
             summary.append("</p>");
         }
 
         return summary.toString();
-    }        
+    }
+
+    /**
+     * Renders one section per saved query, headed by the query description.
+     */
+    public static String generateDigest(Map<String, List<SearchHit>> sections, Map<String, Solicitation> details) {
+        StringBuilder digest = new StringBuilder();
+        sections.forEach((query, results) -> {
+            digest.append("<h1>").append(query).append("</h1>");
+            digest.append(generateSummary(results, details));
+        });
+        return digest.toString();
+    }
 }
@@ -0,0 +1,84 @@
+package com.argorand.samgov.lambda;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+/**
+ * Where the scan of each segment stopped when a run ran out of time, so the next run continues
+ * there instead of serving the start of the table again. One item per segment, keyed by segment
+ * and segment count, so changing the number of segments starts over.
+ */
+public class ScanCheckpoints {
+
+    static final String KEY = "checkpointId";
+    static final String LAST_EVALUATED_KEY = "lastEvaluatedKey";
+    static final String UPDATED_AT = "updatedAt";
+
+    private final Logger log = LoggerFactory.getLogger(ScanCheckpoints.class);
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    public ScanCheckpoints(DynamoDbClient dynamoDbClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+    }
+
+    /**
+     * The start keys of the segments that stopped early in a previous run.
+     */
+    public Map<Integer, Map<String, AttributeValue>> load(List<Integer> segments, int totalSegments) {
+        Map<Integer, Map<String, AttributeValue>> startKeys = new HashMap<>();
+        for (int segment : segments) {
+            GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(key(segment, totalSegments))
+                .consistentRead(true)
+                .build());
+            if (response.hasItem() && response.item().containsKey(LAST_EVALUATED_KEY)) {
+                startKeys.put(segment, response.item().get(LAST_EVALUATED_KEY).m());
+                log.info("Resuming segment {}/{} from the checkpoint of {}", segment, totalSegments,
+                    response.item().containsKey(UPDATED_AT) ? response.item().get(UPDATED_AT).s() : "an earlier run");
+            }
+        }
+        return startKeys;
+    }
+
+    /**
+     * Stores the positions reported by {@link SegmentedScan#positions()}: a key is saved as the
+     * segment's checkpoint, an empty key (segment read to its end) removes it.
+     */
+    public void save(Map<Integer, Map<String, AttributeValue>> positions, int totalSegments) {
+        String now = Instant.now().toString();
+        positions.forEach((segment, lastEvaluatedKey) -> {
+            if (lastEvaluatedKey.isEmpty()) {
+                dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(tableName)
+                    .key(key(segment, totalSegments))
+                    .build());
+            } else {
+                Map<String, AttributeValue> item = new HashMap<>(key(segment, totalSegments));
+                item.put(LAST_EVALUATED_KEY, AttributeValue.fromM(lastEvaluatedKey));
+                item.put(UPDATED_AT, AttributeValue.fromS(now));
+                dynamoDbClient.putItem(PutItemRequest.builder().tableName(tableName).item(item).build());
+                log.info("Saved checkpoint of segment {}/{}", segment, totalSegments);
+            }
+        });
+    }
+
+    private static Map<String, AttributeValue> key(int segment, int totalSegments) {
+        return Map.of(KEY, AttributeValue.fromS("scan/" + totalSegments + "/" + segment));
+    }
+}
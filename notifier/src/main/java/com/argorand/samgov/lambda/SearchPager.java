@@ -0,0 +1,301 @@
+package com.argorand.samgov.lambda;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.Page;
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.SearchPage;
+
+/**
+ * Walks the pages of a sam.gov search. Page N+1 is requested before page N is handed to the
+ * caller's check, so the next page downloads while the current one is diffed.
+ */
+public class SearchPager {
+
+    /**
+     * The results of a search in sam.gov order.
+     *
+     * @param truncated true when a page failed, so pages the caller did not rule out were left unread
+     * @param limited true when {@code maxPages} or sam.gov's record limit stopped the search before its last page
+     */
+    public record Results(List<SearchHit> hits, boolean truncated, boolean limited) {
+
+        /**
+         * Results of a search that was read to its end.
+         */
+        public static Results complete(List<SearchHit> hits) {
+            return new Results(hits, false, false);
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(SearchPager.class);
+
+    private final AdaptiveRequestController controller;
+    private final SearchResponseParser parser;
+    private final boolean streamingParse;
+    private final int pageSize;
+    private final int maxPages;
+    private final URI apiBase;
+    private final RunMetrics metrics;
+
+    /**
+     * @param streamingParse read responses with the streaming parser instead of databind
+     * @param pageSize page size requested from sam.gov, 0 keeps the size of the saved URL
+     * @param maxPages upper bound of pages fetched per search
+     * @param apiBase where searches are sent, see {@link RestRequestFactory#buildMainRestQuery(String, URI)}
+     * @param metrics receives the latency, size and parse time of every page
+     */
+    public SearchPager(AdaptiveRequestController controller, SearchResponseParser parser, boolean streamingParse, int pageSize, int maxPages,
+            URI apiBase, RunMetrics metrics) {
+        if (maxPages < 1) {
+            throw new IllegalArgumentException("maxPages must be positive, got " + maxPages);
+        }
+        this.controller = controller;
+        this.parser = parser;
+        this.streamingParse = streamingParse;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.apiBase = apiBase;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the results of all fetched pages in sam.gov order. Stops after the last page, after
+     * {@code maxPages}, or after the first page for which {@code fullyProcessed} returns true. A
+     * failed page after the first ends the search as truncated, a page limit as limited. A failed
+     * first page fails the search, and so does an {@link Error} on any page.
+     *
+     * @param parent span of the query, every page request is a child of it
+     */
+    public Results fetch(String preparedUrl, Predicate<List<SearchHit>> fullyProcessed, Span parent) throws Exception {
+        List<SearchHit> results = new ArrayList<>();
+        Set<String> seenIds = new HashSet<>();
+        boolean truncated = false;
+        boolean limited = false;
+
+        CompletableFuture<SearchPage> current = fetchPage(preparedUrl, 0, parent);
+        for (int number = 0; ; number++) {
+            SearchPage response;
+            try {
+                response = current.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                if (number == 0) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+                log.warn("Could not fetch page {} of {}, using the {} results fetched so far", number, preparedUrl, results.size(), e.getCause());
+                truncated = true;
+                break;
+            }
+
+            List<SearchHit> page = response.hits();
+            CompletableFuture<SearchPage> next = !page.isEmpty() && number + 1 < lastPage(response.page())
+                ? fetchPage(preparedUrl, number + 1, parent)
+                : null;
+
+            // Pages may overlap when opportunities are modified while we read them
+            page.stream().filter(r -> seenIds.add(r.id())).forEach(results::add);
+
+            if (next == null) {
+                limited = hasMorePages(page, response.page(), number);
+                break;
+            }
+            if (fullyProcessed.test(page)) {
+                // The prefetched page is already in flight, it still completes (and releases its
+                // connection) but its result is dropped
+                log.info("Page {} contains only processed opportunities, not reading further", number);
+                break;
+            }
+            current = next;
+        }
+        return new Results(results, truncated, limited);
+    }
+
+    /**
+     * Fetches every page of a search that has to be read in full. Unlike {@link #fetch} a failed page
+     * fails the search, and so does a search with more results than sam.gov serves or than
+     * {@code maxPages} allows, as partial results could not be told apart from complete ones.
+     */
+    public List<SearchHit> fetchAll(String preparedUrl, Span parent) throws Exception {
+        List<SearchHit> results = new ArrayList<>();
+        Set<String> seenIds = new HashSet<>();
+
+        CompletableFuture<SearchPage> current = fetchPage(preparedUrl, 0, parent);
+        for (int number = 0; ; number++) {
+            SearchPage response;
+            try {
+                response = current.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+
+            Page page = response.page();
+            if (page != null && page.getTotalPages() > lastPage(page)) {
+                throw new IllegalStateException(String.format("Search has %d pages, only %d can be fetched",
+                    page.getTotalPages(), lastPage(page)));
+            }
+            List<SearchHit> hits = response.hits();
+            CompletableFuture<SearchPage> next = !hits.isEmpty() && number + 1 < lastPage(page)
+                ? fetchPage(preparedUrl, number + 1, parent)
+                : null;
+            hits.stream().filter(r -> seenIds.add(r.id())).forEach(results::add);
+
+            if (next == null) {
+                return results;
+            }
+            current = next;
+        }
+    }
+
+    /**
+     * Like {@link #fetch(String, Predicate, Span)}, without blocking: every page is handled on the
+     * thread completing its response, so {@code fullyProcessed} must not block either.
+     */
+    public CompletableFuture<Results> fetchAsync(String preparedUrl, Predicate<List<SearchHit>> fullyProcessed,
+            Span parent) {
+        return walk(preparedUrl, fullyProcessed, parent, fetchPage(preparedUrl, 0, parent), 0, new ArrayList<>(), new HashSet<>());
+    }
+
+    private CompletableFuture<Results> walk(String preparedUrl, Predicate<List<SearchHit>> fullyProcessed, Span parent,
+            CompletableFuture<SearchPage> current, int number, List<SearchHit> results, Set<String> seenIds) {
+        return current.handle((response, failure) -> {
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                if (number == 0 || cause instanceof Error) {
+                    return CompletableFuture.<Results>failedFuture(cause);
+                }
+                log.warn("Could not fetch page {} of {}, using the {} results fetched so far", number, preparedUrl, results.size(), cause);
+                return CompletableFuture.completedFuture(new Results(results, true, false));
+            }
+
+            List<SearchHit> page = response.hits();
+            CompletableFuture<SearchPage> next = !page.isEmpty() && number + 1 < lastPage(response.page())
+                ? fetchPage(preparedUrl, number + 1, parent)
+                : null;
+            page.stream().filter(r -> seenIds.add(r.id())).forEach(results::add);
+
+            if (next == null) {
+                return CompletableFuture.completedFuture(new Results(results, false, hasMorePages(page, response.page(), number)));
+            }
+            if (fullyProcessed.test(page)) {
+                log.info("Page {} contains only processed opportunities, not reading further", number);
+                return CompletableFuture.completedFuture(Results.complete(results));
+            }
+            return walk(preparedUrl, fullyProcessed, parent, next, number + 1, results, seenIds);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * True when page {@code number} is the last one read although the search has more.
+     */
+    private static boolean hasMorePages(List<SearchHit> hits, Page page, int number) {
+        return !hits.isEmpty() && page != null && number + 1 < page.getTotalPages();
+    }
+
+    private int lastPage(Page page) {
+        if (page == null) {
+            return 1;
+        }
+        int pages = page.getTotalPages();
+        if (page.getMaxAllowedRecords() > 0 && page.getSize() > 0) {
+            pages = Math.min(pages, (page.getMaxAllowedRecords() + page.getSize() - 1) / page.getSize());
+        }
+        return Math.min(pages, maxPages);
+    }
+
+    private CompletableFuture<SearchPage> fetchPage(String preparedUrl, int number, Span parent) {
+        String url = maxPages == 1 && pageSize <= 0 ? preparedUrl : withPage(preparedUrl, number);
+        if (number > 0) {
+            log.info("Fetching page {}: {}", number, url);
+        }
+        HttpRequest request = RestRequestFactory.buildMainRestQuery(url, apiBase);
+        Span span = parent.child("sam.gov", Span.REMOTE).http("GET", request.uri()).annotate("page", number);
+        long started = System.nanoTime();
+        if (streamingParse) {
+            return span.endOn(controller.send(request, ResponseDecoding.ofInputStream())
+                .thenApply(response -> {
+                    measure(response, started, -1);
+                    span.status(response.statusCode());
+                    return timedParse(() -> parser.parse(requireOk(response).body()));
+                }));
+        }
+        return span.endOn(controller.send(request, ResponseDecoding.ofString())
+            .thenApply(response -> {
+                measure(response, started, response.body() == null ? -1 : response.body().length());
+                span.status(response.statusCode());
+                return timedParse(() -> parser.parse(requireOk(response).body()));
+            }));
+    }
+
+    /**
+     * @param decodedLength size of the body as read, -1 when it has not been read yet
+     */
+    private void measure(HttpResponse<?> response, long started, long decodedLength) {
+        metrics.time(RunMetrics.Metric.SEARCH_LATENCY, started);
+        long bytes = response.headers().firstValueAsLong("Content-Length").orElse(decodedLength);
+        if (bytes >= 0) {
+            metrics.record(RunMetrics.Metric.SEARCH_BYTES, bytes);
+        }
+    }
+
+    private SearchPage timedParse(Supplier<SearchPage> parse) {
+        long started = System.nanoTime();
+        try {
+            return parse.get();
+        } finally {
+            metrics.time(RunMetrics.Metric.PARSE_TIME, started);
+        }
+    }
+
+    private static <T> HttpResponse<T> requireOk(HttpResponse<T> response) {
+        if (response.statusCode() != 200) {
+            if (response.body() instanceof AutoCloseable body) {
+                try {
+                    body.close();
+                } catch (Exception ignored) {
+                    // The connection is released either way
+                }
+            }
+            throw new IllegalStateException("Unexpected HTTP status " + response.statusCode());
+        }
+        return response;
+    }
+
+    private String withPage(String url, int number) {
+        int queryStart = url.indexOf('?');
+        String base = queryStart < 0 ? url : url.substring(0, queryStart);
+        String query = queryStart < 0 ? "" : url.substring(queryStart + 1);
+
+        List<String> params = Arrays.stream(query.split("&"))
+            .filter(param -> !param.isEmpty())
+            .filter(param -> !param.startsWith("page="))
+            .filter(param -> pageSize <= 0 || !param.startsWith("size="))
+            .collect(Collectors.toCollection(ArrayList::new));
+        params.add("page=" + number);
+        if (pageSize > 0) {
+            params.add("size=" + pageSize);
+        }
+        return base + "?" + String.join("&", params);
+    }
+}
@@ -0,0 +1,233 @@
+package com.argorand.samgov.lambda;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.argorand.samgov.beans.ApiResponse;
+import com.argorand.samgov.beans.Page;
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.SearchPage;
+
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Reads sam.gov search responses. {@link #parse(InputStream)} walks the response with the Jackson
+ * streaming API and skips every subtree the notifier does not use, so neither the response body
+ * string nor the full {@link ApiResponse} object graph is ever built.
+ * {@link #parse(String)} is the original databind path, kept as the default and as benchmark baseline.
+ */
+public class SearchResponseParser {
+
+    private final JsonMapper objectMapper;
+
+    public SearchResponseParser(JsonMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public SearchPage parse(String body) {
+        return SearchPage.from(objectMapper.readValue(body, ApiResponse.class));
+    }
+
+    public SearchPage parse(InputStream body) {
+        List<SearchHit> hits = new ArrayList<>();
+        Page page = null;
+
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("Search response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("_embedded".equals(name) && value == JsonToken.START_OBJECT) {
+                    readEmbedded(parser, hits);
+                } else if ("page".equals(name) && value == JsonToken.START_OBJECT) {
+                    page = readPage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new SearchPage(hits, page);
+    }
+
+    private void readEmbedded(JsonParser parser, List<SearchHit> hits) {
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("results".equals(name) && value == JsonToken.START_ARRAY) {
+                for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                    if (token == JsonToken.START_OBJECT) {
+                        hits.add(readResult(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private SearchHit readResult(JsonParser parser) {
+        String id = null;
+        String title = null;
+        boolean hasDescriptions = false;
+        String organizationName = null;
+        String modifiedDate = null;
+        String noticeType = null;
+        List<String> naics = new ArrayList<>();
+        List<String> psc = new ArrayList<>();
+        String setAside = null;
+        List<String> organizationIds = new ArrayList<>();
+        boolean active = false;
+
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "_id" -> id = parser.getValueAsString();
+                case "title" -> title = parser.getValueAsString();
+                case "modifiedDate" -> modifiedDate = parser.getValueAsString();
+                case "isActive" -> active = parser.getValueAsBoolean();
+                case "type" -> noticeType = readCode(parser, value);
+                case "setAside" -> setAside = readCode(parser, value);
+                case "naics" -> readCodes(parser, value, naics);
+                case "psc" -> readCodes(parser, value, psc);
+                case "descriptions" -> {
+                    // Same rule as the databind path: any non-null descriptions value counts
+                    hasDescriptions = value != JsonToken.VALUE_NULL;
+                    parser.skipChildren();
+                }
+                case "organizationHierarchy" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        String levelOneName = readOrganizations(parser, organizationIds);
+                        if (organizationName == null) {
+                            organizationName = levelOneName;
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new SearchHit(id, title, hasDescriptions, organizationName, modifiedDate,
+            noticeType, naics, psc, setAside, organizationIds, active);
+    }
+
+    /**
+     * Reads a plain code or the {@code code} of a code and value object.
+     */
+    private String readCode(JsonParser parser, JsonToken value) {
+        if (value != JsonToken.START_OBJECT) {
+            String code = value.isScalarValue() && value != JsonToken.VALUE_NULL ? parser.getValueAsString() : null;
+            parser.skipChildren();
+            return code;
+        }
+        String code = null;
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            if ("code".equals(field) && fieldValue.isScalarValue() && fieldValue != JsonToken.VALUE_NULL) {
+                code = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Adds the codes of an array of code objects, whose {@code code} may itself be an array as for NAICS.
+     */
+    private void readCodes(JsonParser parser, JsonToken value, List<String> codes) {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String field = parser.currentName();
+                JsonToken fieldValue = parser.nextToken();
+                if (!"code".equals(field)) {
+                    parser.skipChildren();
+                } else if (fieldValue == JsonToken.START_ARRAY) {
+                    for (JsonToken code = parser.nextToken(); code != JsonToken.END_ARRAY; code = parser.nextToken()) {
+                        if (code.isScalarValue() && code != JsonToken.VALUE_NULL) {
+                            codes.add(parser.getValueAsString());
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else if (fieldValue.isScalarValue() && fieldValue != JsonToken.VALUE_NULL) {
+                    codes.add(parser.getValueAsString());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the ids of all organizations of the hierarchy and returns the name of the first level one
+     * organization, null when it has none, as {@link SearchHit#from} does.
+     */
+    private String readOrganizations(JsonParser parser, List<String> organizationIds) {
+        String levelOneName = null;
+        boolean levelOneSeen = false;
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            int level = 0;
+            String name = null;
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String field = parser.currentName();
+                if (!parser.nextToken().isScalarValue()) {
+                    // An object or array where a scalar belongs is read as missing
+                    parser.skipChildren();
+                } else if ("level".equals(field)) {
+                    level = parser.getValueAsInt();
+                } else if ("organizationId".equals(field)) {
+                    String organizationId = parser.getValueAsString();
+                    if (organizationId != null) {
+                        organizationIds.add(organizationId);
+                    }
+                } else if ("name".equals(field)) {
+                    name = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (level == 1 && !levelOneSeen) {
+                levelOneName = name;
+                levelOneSeen = true;
+            }
+        }
+        return levelOneName;
+    }
+
+    private Page readPage(JsonParser parser) {
+        Page page = new Page();
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "size" -> page.setSize(parser.getValueAsInt());
+                case "totalElements" -> page.setTotalElements(parser.getValueAsInt());
+                case "totalPages" -> page.setTotalPages(parser.getValueAsInt());
+                case "number" -> page.setNumber(parser.getValueAsInt());
+                case "maxAllowedRecords" -> page.setMaxAllowedRecords(parser.getValueAsInt());
+                default -> parser.skipChildren();
+            }
+        }
+        return page;
+    }
+}
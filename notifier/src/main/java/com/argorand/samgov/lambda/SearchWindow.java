@@ -0,0 +1,129 @@
+package com.argorand.samgov.lambda;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+/**
+ * The modification time range a saved query is searched for.
+ *
+ * <p>By default every run searches the whole current day (US/Eastern), as before. With watermarks a
+ * query is searched from its {@code lastProcessedAt} minus an overlap, which covers opportunities
+ * modified while the previous run was going on. sam.gov only filters by day, so within the first
+ * day results are sorted newest first, cut at the watermark, and paging stops at the first page
+ * that reaches past it.
+ */
+public class SearchWindow {
+
+    private static final ZoneId EASTERN = ZoneId.of("US/Eastern");
+
+    private final boolean watermarks;
+    private final Duration overlap;
+    private final int maxLookbackDays;
+
+    /**
+     * @param maxLookbackDays how many days before today a stale or broken watermark may reach back
+     */
+    public SearchWindow(boolean watermarks, Duration overlap, int maxLookbackDays) {
+        if (maxLookbackDays < 0) {
+            throw new IllegalArgumentException("maxLookbackDays must not be negative, got " + maxLookbackDays);
+        }
+        this.watermarks = watermarks;
+        this.overlap = overlap;
+        this.maxLookbackDays = maxLookbackDays;
+    }
+
+    /**
+     * The start of the window shared by all {@code userQueries}, i.e. the earliest of their watermarks.
+     */
+    public Instant from(List<SamQuery> userQueries, Instant now) {
+        Instant today = startOfDay(now);
+        if (!watermarks) {
+            return today;
+        }
+        Instant oldest = LocalDate.ofInstant(now, EASTERN).minusDays(maxLookbackDays).atStartOfDay(EASTERN).toInstant();
+        Instant from = now;
+        for (SamQuery userQuery : userQueries) {
+            Instant watermark = watermark(userQuery);
+            if (watermark == null) {
+                // Never processed with watermarks, search the whole day as before
+                watermark = today;
+            } else {
+                watermark = watermark.minus(overlap);
+            }
+            if (watermark.isBefore(from)) {
+                from = watermark;
+            }
+        }
+        return from.isBefore(oldest) ? oldest : from;
+    }
+
+    /**
+     * The start of the day of {@code now} in US/Eastern, the day sam.gov's modification dates refer to.
+     */
+    public Instant startOfDay(Instant now) {
+        return LocalDate.ofInstant(now, EASTERN).atStartOfDay(EASTERN).toInstant();
+    }
+
+    public String prepare(String queryUrl, Instant from) {
+        return DateSubstitutor.updateUrl(queryUrl, LocalDate.ofInstant(from, EASTERN), watermarks);
+    }
+
+    /**
+     * True when the result was last modified before the window; results without a readable
+     * modification date are kept.
+     */
+    public boolean isBefore(SearchHit hit, Instant from) {
+        if (!watermarks) {
+            return false;
+        }
+        Instant modified = modifiedAt(hit);
+        return modified != null && modified.isBefore(from);
+    }
+
+    /**
+     * When the result was last modified, null when its modification date is missing or unreadable.
+     */
+    public Instant modifiedAt(SearchHit hit) {
+        return parse(hit.modifiedDate());
+    }
+
+    /**
+     * True when the stored watermark of a query without new results should be moved forward, so
+     * its next window does not start on an earlier day than necessary. Writes happen at most
+     * once per day and query.
+     */
+    public boolean shouldAdvance(SamQuery userQuery, Instant now) {
+        if (!watermarks) {
+            return false;
+        }
+        Instant watermark = watermark(userQuery);
+        return watermark == null
+            || LocalDate.ofInstant(watermark.minus(overlap), EASTERN).isBefore(LocalDate.ofInstant(now.minus(overlap), EASTERN));
+    }
+
+    /**
+     * The stored watermark of the query, null when it has none or it is unreadable.
+     */
+    static Instant watermark(SamQuery userQuery) {
+        return parse(userQuery.getLastProcessedAt());
+    }
+
+    private static Instant parse(String timestamp) {
+        if (timestamp == null || timestamp.isBlank()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.argorand.samgov.lambda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Parallel scan of the saved queries table. Every DynamoDB scan segment is walked by its own
+ * virtual thread, and the items of all segments are handed to the single consumer through a
+ * bounded queue, so a slow consumer holds the segment workers back instead of buffering the table.
+ *
+ * <p>A segment can start after a {@code LastEvaluatedKey} of an earlier run. It then continues to
+ * its end and wraps around once, from its start up to the item of that key, so every item is
+ * offered once per run whichever position it starts at. While items are consumed the scan tracks,
+ * per segment, the key after which nothing has been handed out yet; see {@link #positions()}.
+ */
+public class SegmentedScan implements Iterable<SamQuery>, AutoCloseable {
+
+    private static final int BUFFER_SIZE = 500;
+
+    private final Logger log = LoggerFactory.getLogger(SegmentedScan.class);
+
+    private enum Kind { ITEM, PAGE_END, SEGMENT_DONE, SEGMENT_FAILED }
+
+    /**
+     * @param pageEnd the page's {@code LastEvaluatedKey} on the last item of a page or on a
+     *                {@code PAGE_END} of an empty page, null otherwise
+     */
+    private record Signal(Kind kind, int segment, SamQuery item, Map<String, AttributeValue> pageEnd) {}
+
+    private final BlockingQueue<Signal> queue = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private final List<Thread> workers = new ArrayList<>();
+    private final int totalSegments;
+    private final int scannedSegments;
+    private final List<String> attributesToProject;
+    private final Map<Integer, Map<String, AttributeValue>> startKeys;
+    private final RunMetrics metrics;
+    private final Span run;
+    private final Map<Integer, Map<String, AttributeValue>> positions = new HashMap<>();
+    private boolean started;
+
+    /**
+     * @param attributesToProject attributes read from every item, empty reads all of them
+     */
+    public SegmentedScan(DynamoDbTable<SamQuery> table, int totalSegments, List<String> attributesToProject) {
+        this(table, IntStream.range(0, Math.max(totalSegments, 1)).boxed().toList(), totalSegments, attributesToProject, Map.of(),
+            RunMetrics.disabled(), Span.NONE);
+    }
+
+    /**
+     * Scans only the given {@code segments} of a table split into {@code totalSegments}, e.g. the
+     * partition of one worker invocation.
+     *
+     * @param startKeys per segment, the {@code LastEvaluatedKey} to continue after; segments
+     *                  without one are scanned from the start
+     * @param metrics receives the latency of every page
+     * @param run span of the run, every page request is a child of it
+     */
+    public SegmentedScan(DynamoDbTable<SamQuery> table, List<Integer> segments, int totalSegments,
+            List<String> attributesToProject, Map<Integer, Map<String, AttributeValue>> startKeys, RunMetrics metrics,
+            Span run) {
+        if (totalSegments < 1) {
+            throw new IllegalArgumentException("totalSegments must be positive, got " + totalSegments);
+        }
+        if (segments.isEmpty() || segments.stream().anyMatch(segment -> segment < 0 || segment >= totalSegments)) {
+            throw new IllegalArgumentException("Segments must be in [0, " + totalSegments + "), got " + segments);
+        }
+        this.totalSegments = totalSegments;
+        this.scannedSegments = segments.size();
+        this.attributesToProject = attributesToProject;
+        this.startKeys = startKeys;
+        this.metrics = metrics;
+        this.run = run;
+        for (int segment : segments) {
+            workers.add(Thread.ofVirtual().name("scan-segment-" + segment).unstarted(() -> scanSegment(table, segment)));
+        }
+    }
+
+    private void scanSegment(DynamoDbTable<SamQuery> table, int segment) {
+        Map<String, AttributeValue> startKey = startKeys.get(segment);
+        Kind end = Kind.SEGMENT_DONE;
+        try {
+            scanPages(table, segment, startKey, null);
+            if (startKey != null) {
+                log.info("Segment {}/{} read to its end, continuing from its start", segment, totalSegments);
+                scanPages(table, segment, null, startKey);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            log.error("Scan of segment {}/{} failed, its remaining queries are skipped in this run", segment, totalSegments, e);
+            end = Kind.SEGMENT_FAILED;
+        }
+        try {
+            queue.put(new Signal(end, segment, null, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands out the items of the segment after {@code exclusiveStartKey}, up to its end or up to the
+     * item of key {@code stopAt}. When a wrap around follows, the last item of the first pass moves the
+     * position to the segment's end, as the next run would then start over anyway.
+     *
+     * @param exclusiveStartKey where to continue, null for the start of the segment
+     * @param stopAt key of the first item not to hand out, null to read to the end
+     */
+    private void scanPages(DynamoDbTable<SamQuery> table, int segment, Map<String, AttributeValue> exclusiveStartKey,
+            Map<String, AttributeValue> stopAt) throws InterruptedException {
+        ScanEnhancedRequest.Builder request = ScanEnhancedRequest.builder()
+                .segment(segment)
+                .totalSegments(totalSegments);
+        if (!attributesToProject.isEmpty()) {
+            request.attributesToProject(attributesToProject);
+        }
+        if (exclusiveStartKey != null) {
+            request.exclusiveStartKey(exclusiveStartKey);
+        }
+        boolean wrapsAround = exclusiveStartKey != null;
+        Iterator<Page<SamQuery>> pages = table.scan(request.build()).iterator();
+        while (true) {
+            // The iterator requests the next page when asked whether there is one
+            Span span = run.child("DynamoDB", Span.AWS).aws("Scan", table.tableName()).annotate("segment", segment);
+            long started = System.nanoTime();
+            Page<SamQuery> page;
+            try {
+                if (!pages.hasNext()) {
+                    // No request was made, so the span is dropped
+                    return;
+                }
+                page = pages.next();
+            } catch (RuntimeException e) {
+                span.end(e);
+                throw e;
+            }
+            metrics.time(RunMetrics.Metric.SCAN_PAGE_LATENCY, started);
+            span.end();
+            List<SamQuery> items = page.items();
+            Map<String, AttributeValue> pageEnd = page.lastEvaluatedKey();
+            if (pageEnd == null && wrapsAround) {
+                pageEnd = Map.of();
+            }
+            for (int i = 0; i < items.size(); i++) {
+                SamQuery item = items.get(i);
+                if (stopAt != null && stopAt.equals(table.keyFrom(item).primaryKeyMap(table.tableSchema()))) {
+                    // Handed out by the run that saved the checkpoint, as was everything after it
+                    return;
+                }
+                queue.put(new Signal(Kind.ITEM, segment, item, i == items.size() - 1 ? pageEnd : null));
+            }
+            if (items.isEmpty() && pageEnd != null) {
+                queue.put(new Signal(Kind.PAGE_END, segment, null, pageEnd));
+            }
+        }
+    }
+
+    /**
+     * Per segment that advanced: the {@code LastEvaluatedKey} after which no item has been handed
+     * out yet, or an empty map when the segment was read to its end (or, when it wrapped around, to
+     * the end before wrapping). Items of a page that was only partly handed out are not covered, so a
+     * scan resumed from here may return them again. A checkpoint whose item was deleted since makes
+     * the wrap around read the whole segment again.
+     *
+     * <p>A segment whose scan failed has no position, so its checkpoint stays where this run started
+     * it and the next run scans the same items again instead of skipping past a failure.
+     */
+    public Map<Integer, Map<String, AttributeValue>> positions() {
+        return Collections.unmodifiableMap(positions);
+    }
+
+    /**
+     * Starts the segment workers. Can be iterated only once.
+     */
+    @Override
+    public Iterator<SamQuery> iterator() {
+        if (started) {
+            throw new IllegalStateException("Segmented scan can only be iterated once");
+        }
+        started = true;
+        workers.forEach(Thread::start);
+
+        return new Iterator<>() {
+            private int runningSegments = scannedSegments;
+            private Signal next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && runningSegments > 0) {
+                    Signal signal;
+                    try {
+                        signal = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    switch (signal.kind()) {
+                        case ITEM -> next = signal;
+                        case PAGE_END -> positions.put(signal.segment(), signal.pageEnd());
+                        case SEGMENT_DONE -> {
+                            positions.put(signal.segment(), Map.of());
+                            runningSegments--;
+                        }
+                        case SEGMENT_FAILED -> {
+                            // Its items were all handed out before this signal, none moves it any more
+                            positions.remove(signal.segment());
+                            runningSegments--;
+                        }
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public SamQuery next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Signal current = next;
+                next = null;
+                if (current.pageEnd() != null) {
+                    positions.put(current.segment(), current.pageEnd());
+                }
+                return current.item();
+            }
+        };
+    }
+
+    /**
+     * Stops segment workers that are still running, e.g. when the consumer gave up early.
+     */
+    @Override
+    public void close() {
+        workers.forEach(Thread::interrupt);
+    }
+}
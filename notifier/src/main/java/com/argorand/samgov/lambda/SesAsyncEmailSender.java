@@ -0,0 +1,44 @@
+package com.argorand.samgov.lambda;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import software.amazon.awssdk.services.ses.SesAsyncClient;
+
+/**
+ * Sends every email with one SES call on the async client; {@link #send} waits for the call.
+ */
+public class SesAsyncEmailSender implements EmailSender {
+
+    private final SesAsyncClient sesClient;
+    private final String senderEmailAddress;
+    private final RunMetrics metrics;
+
+    public SesAsyncEmailSender(SesAsyncClient sesClient, String senderEmailAddress, RunMetrics metrics) {
+        this.sesClient = sesClient;
+        this.senderEmailAddress = senderEmailAddress;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void send(String recipient, String subject, String bodyHtml, Span parent) throws Exception {
+        try {
+            sendAsync(recipient, subject, bodyHtml, parent).join();
+        } catch (CompletionException e) {
+            // Callers such as the delivery queue decide on retries by the SES exception
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(String recipient, String subject, String bodyHtml, Span parent) {
+        Span span = parent.child("SES", Span.AWS).aws("SendEmail", null);
+        long started = System.nanoTime();
+        return span.endOn(sesClient.sendEmail(SesEmailSender.request(senderEmailAddress, recipient, subject, bodyHtml)))
+            .whenComplete((response, failure) -> metrics.time(RunMetrics.Metric.SES_SEND_LATENCY, started))
+            .thenApply(response -> null);
+    }
+}
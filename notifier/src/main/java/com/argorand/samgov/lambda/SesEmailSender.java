@@ -0,0 +1,57 @@
+package com.argorand.samgov.lambda;
+
+import software.amazon.awssdk.services.ses.SesClient;
+import software.amazon.awssdk.services.ses.model.Body;
+import software.amazon.awssdk.services.ses.model.Content;
+import software.amazon.awssdk.services.ses.model.Destination;
+import software.amazon.awssdk.services.ses.model.Message;
+import software.amazon.awssdk.services.ses.model.SendEmailRequest;
+
+/**
+ * Sends every email synchronously with one SES call on the caller thread.
+ */
+public class SesEmailSender implements EmailSender {
+
+    private final SesClient sesClient;
+    private final String senderEmailAddress;
+    private final RunMetrics metrics;
+
+    public SesEmailSender(SesClient sesClient, String senderEmailAddress, RunMetrics metrics) {
+        this.sesClient = sesClient;
+        this.senderEmailAddress = senderEmailAddress;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void send(String recipient, String subject, String bodyHtml, Span parent) {
+        Span span = parent.child("SES", Span.AWS).aws("SendEmail", null);
+        long started = System.nanoTime();
+        try {
+            sesClient.sendEmail(request(senderEmailAddress, recipient, subject, bodyHtml));
+            span.end();
+        } catch (RuntimeException e) {
+            span.end(e);
+            throw e;
+        } finally {
+            metrics.time(RunMetrics.Metric.SES_SEND_LATENCY, started);
+        }
+    }
+
+    static SendEmailRequest request(String senderEmailAddress, String recipient, String subject, String bodyHtml) {
+        Content subjectContent = Content.builder().data(subject).build();
+        Body body = Body.builder()
+                .html(Content.builder().data(bodyHtml).build())
+                .build();
+
+        Message message = Message.builder()
+                .subject(subjectContent)
+                .body(body)
+                .build();
+
+        return SendEmailRequest.builder()
+                .destination(Destination.builder().toAddresses(recipient).build())
+                .message(message)
+                .source(senderEmailAddress)
+                .build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.argorand.samgov.lambda;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One timed operation of a trace, exported as an X-Ray segment document when it ends: the root
+ * span of a trace becomes a segment, every other span a subsegment of its parent. Spans of
+ * outbound calls carry the {@code http} or {@code aws} fields X-Ray draws its service map from.
+ *
+ * <p>{@link #NONE} stands in when tracing is off or the invocation is not sampled; its children
+ * are {@code NONE} too, so callers never check.
+ */
+public class Span {
+
+    public static final Span NONE = new Span(null, null, null, null, null);
+
+    public static final String REMOTE = "remote";
+    public static final String AWS = "aws";
+
+    private final SpanExporter exporter;
+    private final String traceId;
+    private final String parentId;
+    private final String id;
+    private final String name;
+    private final String namespace;
+    private final Instant start = Instant.now();
+
+    private final Map<String, Object> annotations = new LinkedHashMap<>();
+    private Map<String, Object> http;
+    private Map<String, Object> aws;
+    private Integer status;
+    private Throwable failure;
+    private boolean ended;
+
+    Span(SpanExporter exporter, String traceId, String parentId, String name, String namespace) {
+        this.exporter = exporter;
+        this.traceId = traceId;
+        this.parentId = parentId;
+        this.id = exporter == null ? null : String.format("%016x", ThreadLocalRandom.current().nextLong());
+        this.name = name;
+        this.namespace = namespace;
+    }
+
+    public boolean isRecording() {
+        return exporter != null;
+    }
+
+    /**
+     * @param namespace {@link #REMOTE} or {@link #AWS} for outbound calls, null for work of the notifier
+     */
+    public Span child(String name, String namespace) {
+        return exporter == null ? NONE : new Span(exporter, traceId, id, name, namespace);
+    }
+
+    /**
+     * Adds an indexed annotation, which X-Ray can filter traces by.
+     */
+    public synchronized Span annotate(String key, Object value) {
+        if (exporter != null) {
+            annotations.put(key, value);
+        }
+        return this;
+    }
+
+    public synchronized Span http(String method, URI url) {
+        if (exporter != null) {
+            http = new LinkedHashMap<>(Map.of("request", Map.of("method", method, "url", url.toString())));
+        }
+        return this;
+    }
+
+    /**
+     * @param resource table the operation works on, null for none
+     */
+    public synchronized Span aws(String operation, String resource) {
+        if (exporter != null) {
+            aws = new LinkedHashMap<>(Map.of("operation", operation));
+            if (resource != null) {
+                aws.put("table_name", resource);
+            }
+        }
+        return this;
+    }
+
+    public synchronized Span status(int statusCode) {
+        status = statusCode;
+        return this;
+    }
+
+    public void end() {
+        end(null);
+    }
+
+    /**
+     * Ends the span and exports it; only the first call counts.
+     *
+     * @param failure what made the operation fail, null when it succeeded
+     */
+    public void end(Throwable failure) {
+        Map<String, Object> document;
+        synchronized (this) {
+            if (exporter == null || ended) {
+                return;
+            }
+            ended = true;
+            this.failure = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            document = document(Instant.now());
+        }
+        exporter.export(document);
+    }
+
+    /**
+     * Ends the span when {@code future} completes, failed or not.
+     */
+    public <T> CompletableFuture<T> endOn(CompletableFuture<T> future) {
+        return future.whenComplete((result, failure) -> end(failure));
+    }
+
+    private Map<String, Object> document(Instant end) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("name", name);
+        document.put("id", id);
+        document.put("trace_id", traceId);
+        if (parentId != null) {
+            document.put("parent_id", parentId);
+            document.put("type", "subsegment");
+        }
+        document.put("start_time", seconds(start));
+        document.put("end_time", seconds(end));
+        if (namespace != null) {
+            document.put("namespace", namespace);
+        }
+        if (!annotations.isEmpty()) {
+            document.put("annotations", annotations);
+        }
+        if (http != null) {
+            if (status != null) {
+                http.put("response", Map.of("status", status));
+            }
+            document.put("http", http);
+        }
+        if (aws != null) {
+            document.put("aws", aws);
+        }
+        if (status != null && status == 429) {
+            document.put("throttle", true);
+        }
+        if (status != null && status >= 400 && status < 500) {
+            document.put("error", true);
+        } else if ((status != null && status >= 500) || failure != null) {
+            document.put("fault", true);
+        }
+        if (failure != null) {
+            document.put("cause", Map.of("exceptions", List.of(Map.of(
+                "id", String.format("%016x", ThreadLocalRandom.current().nextLong()),
+                "type", failure.getClass().getName(),
+                "message", String.valueOf(failure.getMessage())))));
+        }
+        return document;
+    }
+
+    private static double seconds(Instant instant) {
+        return instant.getEpochSecond() + instant.getNano() / 1e9;
+    }
+}
@@ -0,0 +1,11 @@
+package com.argorand.samgov.lambda;
+
+import java.util.Map;
+
+/**
+ * Receives every span as an X-Ray segment document once it ended. Implementations must not throw.
+ */
+public interface SpanExporter {
+
+    void export(Map<String, Object> document);
+}
@@ -0,0 +1,81 @@
+package com.argorand.samgov.lambda;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.argorand.samgov.beans.Solicitation;
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Runs the code paths of a run once with canned data while the function initializes, so class
+ * loading, Jackson deserializer construction, the bean table schema's converters and the TLS
+ * handshake with sam.gov are paid for before the first real request instead of during it.
+ */
+public class StartupPrimer {
+
+    private static final String SEARCH_RESPONSE = """
+        {"_embedded":{"results":[{"_id":"priming","title":"Priming","descriptions":[{"body":"x"}],
+        "modifiedDate":"2026-01-01T00:00:00.000+00:00","organizationHierarchy":[{"level":1,"name":"Priming"}]}]},
+        "page":{"size":1,"totalElements":1,"totalPages":1,"number":0,"maxAllowedRecords":10000}}
+        """;
+
+    private final Logger log = LoggerFactory.getLogger(StartupPrimer.class);
+
+    private final JsonMapper objectMapper;
+    private final TableSchema<SamQuery> tableSchema;
+    private final HttpClient client;
+
+    public StartupPrimer(JsonMapper objectMapper, TableSchema<SamQuery> tableSchema, HttpClient client) {
+        this.objectMapper = objectMapper;
+        this.tableSchema = tableSchema;
+        this.client = client;
+    }
+
+    /**
+     * @param connect also open a connection to sam.gov, which the HTTP client keeps for the run
+     */
+    public void prime(boolean connect) {
+        long started = System.nanoTime();
+
+        SearchResponseParser parser = new SearchResponseParser(objectMapper);
+        parser.parse(SEARCH_RESPONSE);
+        parser.parse(new ByteArrayInputStream(SEARCH_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+        objectMapper.readValue("{\"id\":\"priming\",\"description\":[{\"body\":\"x\"}]}", Solicitation.class);
+
+        SamQuery sample = new SamQuery();
+        sample.setNotificationId("priming");
+        sample.setProcessedOpportunities(Set.of("priming"));
+        sample.setVersion(1);
+        Map<String, AttributeValue> item = tableSchema.itemToMap(sample, true);
+        tableSchema.mapToItem(item);
+
+        if (connect) {
+            try {
+                client.send(HttpRequest.newBuilder(URI.create("https://sam.gov/"))
+                        .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                        .timeout(Duration.ofSeconds(3))
+                        .build(),
+                    HttpResponse.BodyHandlers.discarding());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.info("Could not connect to sam.gov while priming: {}", e.toString());
+            }
+        }
+        log.info("Primed in {} ms", Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+}
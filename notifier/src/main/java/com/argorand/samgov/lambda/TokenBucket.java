@@ -0,0 +1,54 @@
+package com.argorand.samgov.lambda;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter. Callers that find the bucket empty take a token on credit and sleep
+ * until it has been refilled, so waiting callers are served in arrival order at the configured rate.
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private final LongSupplier nanoTime;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double tokensPerSecond, double capacity) {
+        this(tokensPerSecond, capacity, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime the clock the bucket is refilled by, {@link System#nanoTime()} outside of tests
+     */
+    TokenBucket(double tokensPerSecond, double capacity, LongSupplier nanoTime) {
+        if (tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("tokensPerSecond must be positive, got " + tokensPerSecond);
+        }
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, capacity);
+        this.nanoTime = nanoTime;
+        this.tokens = this.capacity;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes a token, on credit when the bucket is empty, and returns how long the caller has to
+     * wait until it is covered.
+     */
+    synchronized long reserve() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+    }
+}
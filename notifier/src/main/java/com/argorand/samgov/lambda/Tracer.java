@@ -0,0 +1,69 @@
+package com.argorand.samgov.lambda;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts the span of a run. In Lambda the run continues the trace of the invocation: its span is a
+ * subsegment of the function's segment named by the trace header, and nothing is recorded when the
+ * invocation is not sampled. Elsewhere every run starts a new trace.
+ */
+public class Tracer {
+
+    /**
+     * Set by the Lambda Java runtime for every invocation; the environment variable only holds the
+     * header of the first one.
+     */
+    static final String TRACE_HEADER_PROPERTY = "com.amazonaws.xray.traceHeader";
+    static final String TRACE_HEADER_VARIABLE = "_X_AMZN_TRACE_ID";
+
+    private final SpanExporter exporter;
+
+    /**
+     * @param exporter receives the finished spans, null to not trace
+     */
+    public Tracer(SpanExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    public static Tracer disabled() {
+        return new Tracer(null);
+    }
+
+    public Span startRun(String name) {
+        if (exporter == null) {
+            return Span.NONE;
+        }
+        String header = System.getProperty(TRACE_HEADER_PROPERTY, System.getenv(TRACE_HEADER_VARIABLE));
+        String root = field(header, "Root");
+        String parent = field(header, "Parent");
+        if (root == null || parent == null) {
+            return new Span(exporter, newTraceId(), null, name, null);
+        }
+        if ("0".equals(field(header, "Sampled"))) {
+            return Span.NONE;
+        }
+        return new Span(exporter, root, parent, name, null);
+    }
+
+    /**
+     * A field of a header such as {@code Root=1-5759e988-bd862e3fe1be46a994272793;Parent=53995c3f42cd8ad8;Sampled=1}.
+     */
+    private static String field(String header, String key) {
+        if (header == null) {
+            return null;
+        }
+        for (String field : header.split(";")) {
+            int separator = field.indexOf('=');
+            if (separator > 0 && field.substring(0, separator).trim().equals(key)) {
+                return field.substring(separator + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static String newTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format("1-%08x-%08x%016x", Instant.now().getEpochSecond(), random.nextInt(), random.nextLong());
+    }
+}
@@ -0,0 +1,69 @@
+package com.argorand.samgov.lambda;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Sends spans to the X-Ray daemon, one UDP datagram per document. In Lambda the daemon runs next
+ * to the function when active tracing is on, and forwards the documents in batches, so sending
+ * costs neither a request nor a wait.
+ */
+public class XRayUdpExporter implements SpanExporter {
+
+    private static final String HEADER = "{\"format\": \"json\", \"version\": 1}\n";
+    private static final String DEFAULT_ADDRESS = "127.0.0.1:2000";
+
+    private final Logger log = LoggerFactory.getLogger(XRayUdpExporter.class);
+
+    private final JsonMapper objectMapper;
+    private final InetSocketAddress daemon;
+    private final DatagramChannel channel;
+
+    /**
+     * @param daemonAddress {@code host:port}, or the {@code tcp:host:port udp:host:port} form of
+     *                      {@code AWS_XRAY_DAEMON_ADDRESS}; null for the default {@code 127.0.0.1:2000}
+     */
+    public XRayUdpExporter(JsonMapper objectMapper, String daemonAddress) {
+        this.objectMapper = objectMapper;
+        this.daemon = address(daemonAddress == null || daemonAddress.isBlank() ? DEFAULT_ADDRESS : daemonAddress);
+        try {
+            this.channel = DatagramChannel.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void export(Map<String, Object> document) {
+        try {
+            byte[] datagram = (HEADER + objectMapper.writeValueAsString(document)).getBytes(StandardCharsets.UTF_8);
+            channel.send(ByteBuffer.wrap(datagram), daemon);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not send span {} to the X-Ray daemon", document.get("name"), e);
+        }
+    }
+
+    private static InetSocketAddress address(String value) {
+        String udp = value.trim();
+        for (String part : value.trim().split("\\s+")) {
+            if (part.startsWith("udp:")) {
+                udp = part.substring("udp:".length());
+            }
+        }
+        int separator = udp.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("X-Ray daemon address must be host:port, got " + value);
+        }
+        return new InetSocketAddress(udp.substring(0, separator), Integer.parseInt(udp.substring(separator + 1)));
+    }
+}
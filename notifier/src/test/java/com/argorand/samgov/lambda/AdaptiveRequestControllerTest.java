@@ -0,0 +1,221 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveRequestControllerTest {
+
+    private static final HttpRequest REQUEST = HttpRequest.newBuilder(URI.create("https://sam.gov/api/prod/sgs/v1/search/")).build();
+
+    private final HttpClient client = mock(HttpClient.class);
+    private final Deque<HttpResponse<InputStream>> responses = new ArrayDeque<>();
+    private int sent;
+
+    @Test
+    void fastResponsesRaiseTheLimitByItsInverse() {
+        AdaptiveRequestController.Limit limit = new AdaptiveRequestController.Limit(policy(2, 4, Duration.ofSeconds(10), 1));
+        respond(response(200, Map.of()), response(200, Map.of()));
+
+        send(controller(limit, null));
+        send(controller(limit, null));
+
+        assertThat(limit.current()).isCloseTo(2 + 1 / 2.0 + 1 / 2.5, within(1e-9));
+    }
+
+    @Test
+    void limitNeverExceedsTheMaximum() {
+        AdaptiveRequestController.Limit limit = new AdaptiveRequestController.Limit(policy(4, 4, Duration.ofSeconds(10), 1));
+        respond(response(200, Map.of()));
+
+        send(controller(limit, null));
+
+        assertThat(limit.current()).isEqualTo(4);
+    }
+
+    @Test
+    void overloadHalvesTheLimitOncePerLatencyTarget() {
+        AdaptiveRequestController.Limit limit = new AdaptiveRequestController.Limit(policy(8, 8, Duration.ofSeconds(10), 1));
+        respond(response(429, Map.of()), response(503, Map.of()));
+
+        send(controller(limit, null));
+        send(controller(limit, null));
+
+        // Both responses report the same congestion
+        assertThat(limit.current()).isEqualTo(4);
+    }
+
+    @Test
+    void slowResponsesHalveTheLimit() {
+        AdaptiveRequestController.Limit limit = new AdaptiveRequestController.Limit(policy(8, 8, Duration.ZERO, 1));
+        respond(response(200, Map.of()), response(200, Map.of()));
+
+        send(controller(limit, null));
+        send(controller(limit, null));
+
+        assertThat(limit.current()).isEqualTo(2);
+    }
+
+    @Test
+    void passThroughKeepsTheLimit() {
+        AdaptiveRequestController.Limit limit = new AdaptiveRequestController.Limit(
+            AdaptiveRequestController.Policy.passThrough(null));
+        respond(response(429, Map.of()));
+
+        assertThat(send(controller(limit, null)).statusCode()).isEqualTo(429);
+        assertThat(limit.current()).isEqualTo(Integer.MAX_VALUE);
+        assertThat(sent).isEqualTo(1);
+    }
+
+    @Test
+    void readsRetryAfterInSeconds() {
+        assertThat(AdaptiveRequestController.retryAfter(headers("Retry-After", "120"), Instant.now()))
+            .isEqualTo(Duration.ofSeconds(120));
+        assertThat(AdaptiveRequestController.retryAfter(headers("Retry-After", "-5"), Instant.now())).isZero();
+    }
+
+    @Test
+    void readsRetryAfterAsADate() {
+        Instant now = Instant.parse("2026-10-18T12:00:00Z");
+        String later = DateTimeFormatter.RFC_1123_DATE_TIME.format(now.plusSeconds(30).atOffset(ZoneOffset.UTC));
+        String earlier = DateTimeFormatter.RFC_1123_DATE_TIME.format(now.minusSeconds(30).atOffset(ZoneOffset.UTC));
+
+        assertThat(AdaptiveRequestController.retryAfter(headers("Retry-After", later), now)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(AdaptiveRequestController.retryAfter(headers("Retry-After", earlier), now)).isZero();
+    }
+
+    @Test
+    void ignoresMissingOrUnreadableRetryAfter() {
+        assertThat(AdaptiveRequestController.retryAfter(headers("Retry-After", "soon"), Instant.now())).isNull();
+        assertThat(AdaptiveRequestController.retryAfter(HttpHeaders.of(Map.of(), (name, value) -> true), Instant.now())).isNull();
+    }
+
+    @Test
+    void retriesAfterTheRequestedDelay() {
+        respond(response(503, Map.of("Retry-After", "0")), response(200, Map.of()));
+
+        assertThat(send(controller(policy(1, 1, Duration.ofSeconds(10), 3), null)).statusCode()).isEqualTo(200);
+        assertThat(sent).isEqualTo(2);
+    }
+
+    @Test
+    void givesUpWhenRetryAfterExceedsTheMaximumBackoff() {
+        respond(response(429, Map.of("Retry-After", "60")), response(200, Map.of()));
+
+        assertThat(send(controller(policy(1, 1, Duration.ofSeconds(10), 3), null)).statusCode()).isEqualTo(429);
+        assertThat(sent).isEqualTo(1);
+    }
+
+    @Test
+    void givesUpWhenTheRetryWouldStartPastTheDeadline() {
+        respond(response(503, Map.of("Retry-After", "3")), response(200, Map.of()));
+
+        HttpResponse<InputStream> response = send(controller(policy(1, 1, Duration.ofSeconds(10), 3),
+            Instant.now().plusSeconds(2)));
+
+        assertThat(response.statusCode()).isEqualTo(503);
+        assertThat(sent).isEqualTo(1);
+    }
+
+    @Test
+    void sendsNothingPastTheDeadline() {
+        AdaptiveRequestController controller = controller(policy(1, 1, Duration.ofSeconds(10), 3), Instant.now().minusSeconds(1));
+
+        assertThatThrownBy(() -> send(controller)).isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(HttpTimeoutException.class);
+        verify(client, never()).sendAsync(any(), any());
+    }
+
+    @Test
+    void discardsTheStreamedBodyOfARetriedResponse() {
+        ClosingStream body = new ClosingStream();
+        HttpResponse<InputStream> unavailable = response(503, Map.of("Retry-After", "0"));
+        when(unavailable.body()).thenReturn(body);
+        respond(unavailable, response(200, Map.of()));
+
+        send(controller(policy(1, 1, Duration.ofSeconds(10), 3), null));
+
+        assertThat(body.closed).isTrue();
+    }
+
+    private static AdaptiveRequestController.Policy policy(int initialLimit, int maxLimit, Duration latencyTarget, int maxAttempts) {
+        return new AdaptiveRequestController.Policy(true, initialLimit, maxLimit, latencyTarget, maxAttempts,
+            Duration.ofMillis(10), Duration.ofSeconds(5), null);
+    }
+
+    private AdaptiveRequestController controller(AdaptiveRequestController.Policy policy, Instant deadline) {
+        return controller(new AdaptiveRequestController.Limit(policy), deadline);
+    }
+
+    private AdaptiveRequestController controller(AdaptiveRequestController.Limit limit, Instant deadline) {
+        return new AdaptiveRequestController(client, limit, deadline, false);
+    }
+
+    private HttpResponse<InputStream> send(AdaptiveRequestController controller) {
+        return controller.send(REQUEST, HttpResponse.BodyHandlers.ofInputStream()).join();
+    }
+
+    @SafeVarargs
+    private void respond(HttpResponse<InputStream>... sequence) {
+        responses.addAll(List.of(sequence));
+        when(client.sendAsync(any(), any())).thenAnswer(invocation -> {
+            sent++;
+            return CompletableFuture.completedFuture(responses.poll());
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<InputStream> response(int status, Map<String, String> headers) {
+        HttpResponse<InputStream> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.headers()).thenReturn(HttpHeaders.of(
+            headers.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> List.of(e.getValue()))),
+            (name, value) -> true));
+        return response;
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        return HttpHeaders.of(Map.of(name, List.of(value)), (n, v) -> true);
+    }
+
+    private static final class ClosingStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        ClosingStream() {
+            super(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
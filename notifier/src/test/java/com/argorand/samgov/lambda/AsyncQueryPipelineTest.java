@@ -0,0 +1,211 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PagePublisher;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+
+class AsyncQueryPipelineTest {
+
+    @SuppressWarnings("unchecked")
+    private final DynamoDbAsyncTable<SamQuery> table = mock(DynamoDbAsyncTable.class);
+    private final QueryProcessor processor = mock(QueryProcessor.class);
+
+    // Segment to its publisher, and the queries processed with their results
+    private final Map<Integer, SegmentPublisher> segments = new HashMap<>();
+    private final List<ScanEnhancedRequest> requests = new ArrayList<>();
+    private final List<String> processed = new ArrayList<>();
+    private final List<CompletableFuture<Void>> results = new ArrayList<>();
+    private boolean completeAtOnce = true;
+
+    @BeforeEach
+    void setUp() {
+        when(table.scan(any(ScanEnhancedRequest.class))).thenAnswer(invocation -> {
+            ScanEnhancedRequest request = invocation.getArgument(0);
+            requests.add(request);
+            SegmentPublisher items = segments.get(request.segment());
+            return new PagePublisher<SamQuery>() {
+                @Override
+                public void subscribe(Subscriber<? super Page<SamQuery>> subscriber) {
+                    throw new UnsupportedOperationException("The pipeline reads items");
+                }
+
+                @Override
+                public SdkPublisher<SamQuery> items() {
+                    return items;
+                }
+            };
+        });
+        when(processor.processAsync(any())).thenAnswer(invocation -> {
+            String id = invocation.<SamQuery>getArgument(0).getNotificationId();
+            processed.add(id);
+            if (id.startsWith("fail")) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Query failed"));
+            }
+            if (id.startsWith("throw")) {
+                throw new IllegalStateException("Query failed");
+            }
+            CompletableFuture<Void> result = completeAtOnce ? CompletableFuture.completedFuture(null) : new CompletableFuture<>();
+            results.add(result);
+            return result;
+        });
+    }
+
+    @Test
+    void processesEveryQueryOfEverySegment() {
+        segments.put(0, new SegmentPublisher("a", "b"));
+        segments.put(2, new SegmentPublisher("c"));
+
+        pipeline(List.of("notificationId"), 8).run(List.of(0, 2), 4, null).join();
+
+        assertThat(processed).containsExactlyInAnyOrder("a", "b", "c");
+        assertThat(requests).extracting(ScanEnhancedRequest::segment).containsExactlyInAnyOrder(0, 2);
+        assertThat(requests).allSatisfy(request -> {
+            assertThat(request.totalSegments()).isEqualTo(4);
+            assertThat(request.attributesToProject()).containsExactly("notificationId");
+        });
+    }
+
+    @Test
+    void requestsOneQueryPerFinishedOne() {
+        completeAtOnce = false;
+        SegmentPublisher publisher = new SegmentPublisher("a", "b", "c", "d");
+        segments.put(0, publisher);
+
+        CompletableFuture<Void> run = pipeline(List.of(), 2).run(List.of(0), 1, null);
+
+        assertThat(processed).containsExactly("a", "b");
+        results.get(0).complete(null);
+        assertThat(processed).containsExactly("a", "b", "c");
+        assertThat(publisher.maxOutstanding).isEqualTo(2);
+        results.get(1).complete(null);
+        results.get(2).complete(null);
+        assertThat(run).isNotDone();
+        results.get(3).complete(null);
+        assertThat(run).isCompleted();
+    }
+
+    @Test
+    void sharesTheQueriesInFlightAmongTheSegments() {
+        completeAtOnce = false;
+        segments.put(0, new SegmentPublisher("a", "b", "c"));
+        segments.put(1, new SegmentPublisher("d", "e", "f"));
+
+        pipeline(List.of(), 4).run(List.of(0, 1), 2, null);
+
+        assertThat(processed).containsExactlyInAnyOrder("a", "b", "d", "e");
+    }
+
+    @Test
+    void failingQueryDoesNotAffectTheOthers() {
+        segments.put(0, new SegmentPublisher("a", "fail-b", "throw-c", "d"));
+
+        CompletableFuture<Void> run = pipeline(List.of(), 1).run(List.of(0), 1, null);
+
+        assertThat(run).isCompleted();
+        assertThat(processed).containsExactly("a", "fail-b", "throw-c", "d");
+    }
+
+    @Test
+    void startsNothingOnceTheTimeIsUp() {
+        SegmentPublisher publisher = new SegmentPublisher("a", "b");
+        segments.put(0, publisher);
+
+        CompletableFuture<Void> run = pipeline(List.of(), 4).run(List.of(0), 1, Instant.now().minusSeconds(1));
+
+        assertThat(run).isCompleted();
+        assertThat(processed).isEmpty();
+        assertThat(publisher.cancelled).isTrue();
+    }
+
+    @Test
+    void failedScanEndsOnlyItsSegment() {
+        SegmentPublisher failing = new SegmentPublisher("a");
+        failing.failAtEnd = true;
+        segments.put(0, failing);
+        segments.put(1, new SegmentPublisher("b"));
+
+        CompletableFuture<Void> run = pipeline(List.of(), 4).run(List.of(0, 1), 2, null);
+
+        assertThat(run).isCompleted();
+        assertThat(processed).containsExactlyInAnyOrder("a", "b");
+    }
+
+    private AsyncQueryPipeline pipeline(List<String> attributesToProject, int maxInFlight) {
+        return new AsyncQueryPipeline(table, attributesToProject, processor, maxInFlight);
+    }
+
+    /**
+     * Emits the queries of one segment as they are asked for, on the thread that asks.
+     */
+    private static final class SegmentPublisher implements SdkPublisher<SamQuery> {
+
+        private final List<String> ids;
+        private int next;
+        private long demand;
+        private long maxOutstanding;
+        private boolean emitting;
+        private boolean cancelled;
+        private boolean failAtEnd;
+
+        SegmentPublisher(String... ids) {
+            this.ids = List.of(ids);
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super SamQuery> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    demand += n;
+                    maxOutstanding = Math.max(maxOutstanding, demand);
+                    // A request made from onNext is served by the loop already running
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (demand > 0 && next < ids.size() && !cancelled) {
+                        demand--;
+                        SamQuery query = new SamQuery();
+                        query.setNotificationId(ids.get(next++));
+                        subscriber.onNext(query);
+                    }
+                    emitting = false;
+                    if (next == ids.size() && !cancelled) {
+                        next++;
+                        if (failAtEnd) {
+                            subscriber.onError(new IllegalStateException("Scan failed"));
+                        } else {
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+}
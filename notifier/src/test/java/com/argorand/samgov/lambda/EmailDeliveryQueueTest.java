@@ -0,0 +1,116 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+
+class EmailDeliveryQueueTest {
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void closeDeliversEverythingStillQueued() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        EmailSender slow = (recipient, subject, bodyHtml, parent) -> {
+            release.await();
+            sent.add(recipient);
+        };
+        EmailDeliveryQueue queue = new EmailDeliveryQueue(slow, new TokenBucket(1_000_000, 1_000), 10, 2, 1);
+        for (int i = 0; i < 8; i++) {
+            queue.send("user" + i + "@example.com", "Subject", "<p/>", Span.NONE);
+        }
+
+        release.countDown();
+        queue.close();
+
+        assertThat(sent).hasSize(8);
+        assertThat(queue.depth()).isZero();
+    }
+
+    @Test
+    void asyncSendCompletesOnceDelivered() {
+        EmailDeliveryQueue queue = new EmailDeliveryQueue(recorder(), new TokenBucket(1_000_000, 1_000), 10, 1, 1);
+
+        CompletableFuture<Void> delivery = queue.sendAsync("user@example.com", "Subject", "<p/>", Span.NONE);
+
+        delivery.join();
+        assertThat(sent).containsExactly("user@example.com");
+        queue.close();
+    }
+
+    @Test
+    void asyncSendWaitsForRoomWithoutBlocking() {
+        CountDownLatch release = new CountDownLatch(1);
+        EmailSender slow = (recipient, subject, bodyHtml, parent) -> {
+            release.await();
+            sent.add(recipient);
+        };
+        EmailDeliveryQueue queue = new EmailDeliveryQueue(slow, new TokenBucket(1_000_000, 1_000), 1, 1, 1);
+
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            deliveries.add(queue.sendAsync("user" + i + "@example.com", "Subject", "<p/>", Span.NONE));
+        }
+        release.countDown();
+
+        CompletableFuture.allOf(deliveries.toArray(CompletableFuture[]::new)).join();
+        assertThat(sent).hasSize(4);
+        queue.close();
+    }
+
+    @Test
+    void retriesThrottledSends() {
+        AtomicInteger attempts = new AtomicInteger();
+        EmailSender throttledOnce = (recipient, subject, bodyHtml, parent) -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw AwsServiceException.builder().statusCode(503).message("Service unavailable").build();
+            }
+            sent.add(recipient);
+        };
+        EmailDeliveryQueue queue = new EmailDeliveryQueue(throttledOnce, new TokenBucket(1_000_000, 1_000), 10, 1, 3);
+
+        queue.sendAsync("user@example.com", "Subject", "<p/>", Span.NONE).join();
+
+        assertThat(attempts).hasValue(2);
+        assertThat(sent).containsExactly("user@example.com");
+        queue.close();
+    }
+
+    @Test
+    void givesUpOnClientErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        EmailSender rejecting = (recipient, subject, bodyHtml, parent) -> {
+            attempts.incrementAndGet();
+            throw AwsServiceException.builder().statusCode(400).message("Email address is not verified").build();
+        };
+        EmailDeliveryQueue queue = new EmailDeliveryQueue(rejecting, new TokenBucket(1_000_000, 1_000), 10, 1, 3);
+
+        CompletableFuture<Void> delivery = queue.sendAsync("user@example.com", "Subject", "<p/>", Span.NONE);
+
+        assertThatThrownBy(delivery::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(AwsServiceException.class);
+        assertThat(attempts).hasValue(1);
+        queue.close();
+    }
+
+    @Test
+    void fannedOutWorkersShareTheAccountRate() {
+        assertThat(QueryUpdates.workerSendRate(14, 1, 4)).isEqualTo(3.5);
+        assertThat(QueryUpdates.workerSendRate(14, 4, 4)).isEqualTo(14);
+        assertThat(QueryUpdates.workerSendRate(14, 2, 8)).isEqualTo(3.5);
+    }
+
+    private EmailSender recorder() {
+        return (recipient, subject, bodyHtml, parent) -> sent.add(recipient);
+    }
+}
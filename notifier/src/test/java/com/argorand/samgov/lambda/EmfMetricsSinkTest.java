@@ -0,0 +1,100 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+class EmfMetricsSinkTest {
+
+    private static final JsonMapper OBJECT_MAPPER = NotifierComponents.objectMapper();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final RunMetrics metrics = new RunMetrics();
+
+    @Test
+    void writesOneLineInEmbeddedMetricFormat() {
+        metrics.add(RunMetrics.Metric.QUERIES_PROCESSED, 3);
+        metrics.record(RunMetrics.Metric.SEARCH_LATENCY, 12.5);
+        metrics.record(RunMetrics.Metric.SEARCH_LATENCY, 7);
+
+        List<JsonNode> lines = publish();
+
+        assertThat(lines).hasSize(1);
+        JsonNode line = lines.get(0);
+        JsonNode directive = line.get("_aws").get("CloudWatchMetrics").get(0);
+        assertThat(line.get("_aws").get("Timestamp").isIntegralNumber()).isTrue();
+        assertThat(directive.get("Namespace").asString()).isEqualTo("SamGovNotifier");
+        assertThat(directive.get("Dimensions").get(0)).extracting(JsonNode::asString).containsExactly("Function");
+        assertThat(line.get("Function").asString()).isEqualTo("checkQueryUpdates");
+        assertThat(definition(directive, "QueriesProcessed").get("Unit").asString()).isEqualTo("Count");
+        assertThat(definition(directive, "SearchLatency").get("Unit").asString()).isEqualTo("Milliseconds");
+        assertThat(line.get("QueriesProcessed").asLong()).isEqualTo(3);
+        assertThat(line.get("SearchLatency")).extracting(JsonNode::asDouble).containsExactly(7.0, 12.5);
+    }
+
+    @Test
+    void reportsEveryCounterButOnlyDistributionsWithSamples() {
+        List<JsonNode> lines = publish();
+
+        JsonNode line = lines.get(0);
+        for (RunMetrics.Metric metric : RunMetrics.Metric.values()) {
+            assertThat(line.has(metric.metricName())).as(metric.metricName()).isEqualTo(metric.isCounter());
+        }
+        assertThat(line.get("_aws").get("CloudWatchMetrics").get(0).get("Metrics")).hasSize(
+            (int) List.of(RunMetrics.Metric.values()).stream().filter(RunMetrics.Metric::isCounter).count());
+    }
+
+    @Test
+    void spreadsMoreThanAHundredValuesOverSeveralLines() {
+        metrics.increment(RunMetrics.Metric.QUERIES_SKIPPED);
+        for (int i = 0; i < 250; i++) {
+            metrics.record(RunMetrics.Metric.PARSE_TIME, i);
+        }
+        metrics.record(RunMetrics.Metric.SES_SEND_LATENCY, 40);
+
+        List<JsonNode> lines = publish();
+
+        assertThat(lines).hasSize(3);
+        assertThat(lines).extracting(line -> line.get("ParseTime").size()).containsExactly(100, 100, 50);
+        List<Double> parseTimes = new ArrayList<>();
+        lines.forEach(line -> line.get("ParseTime").forEach(value -> parseTimes.add(value.asDouble())));
+        assertThat(parseTimes).hasSize(250).doesNotHaveDuplicates();
+        // Counters and short distributions are reported once
+        assertThat(lines.get(0).has("QueriesSkipped")).isTrue();
+        assertThat(lines.get(0).has("SesSendLatency")).isTrue();
+        assertThat(lines.subList(1, 3)).allSatisfy(line -> {
+            assertThat(line.has("QueriesSkipped")).isFalse();
+            assertThat(line.has("SesSendLatency")).isFalse();
+            assertThat(line.get("_aws").get("CloudWatchMetrics").get(0).get("Metrics")).hasSize(1);
+            assertThat(line.get("Function").asString()).isEqualTo("checkQueryUpdates");
+        });
+    }
+
+    private List<JsonNode> publish() {
+        Map<String, String> dimensions = new LinkedHashMap<>();
+        dimensions.put("Function", "checkQueryUpdates");
+        new EmfMetricsSink(OBJECT_MAPPER, "SamGovNotifier", dimensions, new PrintStream(out, true, StandardCharsets.UTF_8))
+            .publish(metrics);
+        return out.toString(StandardCharsets.UTF_8).lines().map(OBJECT_MAPPER::readTree).toList();
+    }
+
+    private static JsonNode definition(JsonNode directive, String name) {
+        for (JsonNode definition : directive.get("Metrics")) {
+            if (name.equals(definition.get("Name").asString())) {
+                return definition;
+            }
+        }
+        throw new AssertionError("No definition of " + name);
+    }
+}
@@ -0,0 +1,81 @@
+package com.argorand.samgov.lambda;
+
+import static com.argorand.samgov.lambda.QueryMatcherTest.hit;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.SearchHit;
+
+class LocalSearchTest {
+
+    private static final String FEED = "https://sam.gov/api/prod/sgs/v1/search/?index=opp&sort=-modifiedDate";
+
+    private final SearchPager pager = mock(SearchPager.class);
+    private final SearchWindow window = new SearchWindow(true, Duration.ofMinutes(10), 3);
+
+    @Test
+    void answersCompiledSearchesFromTheFeed() throws Exception {
+        when(pager.fetchAll(anyString(), any())).thenReturn(List.of(
+            hit("a", "Cloud hosting", List.of("541512"), List.of()),
+            hit("b", "Office construction", List.of("236220"), List.of())));
+        LocalSearch.Feed feed = localSearch().feed().join();
+
+        List<SearchHit> hits = feed.search(FEED + "&naics=541", Instant.now());
+
+        assertThat(hits).extracting(SearchHit::id).containsExactly("a");
+        assertThat(feed.searchedAt()).isBeforeOrEqualTo(Instant.now());
+    }
+
+    @Test
+    void fetchesTheFeedOnce() throws Exception {
+        when(pager.fetchAll(anyString(), any())).thenReturn(List.of());
+        LocalSearch search = localSearch();
+
+        search.feed().join();
+        search.feed().join();
+
+        verify(pager, times(1)).fetchAll(anyString(), any());
+    }
+
+    @Test
+    void sendsSearchesThatDoNotCompileToSamGov() throws Exception {
+        when(pager.fetchAll(anyString(), any())).thenReturn(List.of(hit("a", "Cloud hosting", List.of("541512"), List.of())));
+        LocalSearch.Feed feed = localSearch().feed().join();
+
+        assertThat(feed.search(FEED + "&state=VA", Instant.now())).isNull();
+        assertThat(feed.search(FEED + "&q=cloud", Instant.now())).isNull();
+    }
+
+    @Test
+    void sendsSearchesFromBeforeTheFeedToSamGov() throws Exception {
+        when(pager.fetchAll(anyString(), any())).thenReturn(List.of());
+        LocalSearch.Feed feed = localSearch().feed().join();
+
+        Instant beforeToday = window.startOfDay(Instant.now()).minusSeconds(1);
+
+        assertThat(feed.search(FEED + "&naics=541", beforeToday)).isNull();
+    }
+
+    @Test
+    void completesWithoutFeedWhenItCannotBeFetched() throws Exception {
+        when(pager.fetchAll(anyString(), any())).thenThrow(new IOException("Connection reset"));
+
+        assertThat(localSearch().feed().join()).isNull();
+    }
+
+    private LocalSearch localSearch() {
+        return new LocalSearch(pager, window, FEED, false, Span.NONE);
+    }
+}
@@ -0,0 +1,111 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class OpportunityBloomFilterTest {
+
+    private static final List<String> IDS = ids("put", 2000);
+
+    @Test
+    void hasNoFalseNegativesAcrossBlockGrowth() {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(16, 0.01, 8);
+        IDS.forEach(filter::put);
+
+        assertThat(filter.blockCount()).isGreaterThan(1);
+        assertThat(IDS).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void restoresFromBytes() {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(16, 0.01, 8);
+        IDS.forEach(filter::put);
+
+        OpportunityBloomFilter restored = OpportunityBloomFilter.fromBytes(filter.toBytes(), 16, 0.01, 8);
+
+        assertThat(restored.blockCount()).isEqualTo(filter.blockCount());
+        assertThat(restored.toBytes()).isEqualTo(filter.toBytes());
+        assertThat(IDS).allMatch(restored::mightContain);
+        for (String id : ids("probe", 1000)) {
+            assertThat(restored.mightContain(id)).isEqualTo(filter.mightContain(id));
+        }
+    }
+
+    @Test
+    void keepsGrowingAfterRestore() {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(16, 0.01, 8);
+        IDS.subList(0, 100).forEach(filter::put);
+        OpportunityBloomFilter restored = OpportunityBloomFilter.fromBytes(filter.toBytes(), 16, 0.01, 8);
+
+        IDS.subList(100, IDS.size()).forEach(restored::put);
+
+        assertThat(restored.blockCount()).isGreaterThan(filter.blockCount());
+        assertThat(IDS).allMatch(restored::mightContain);
+    }
+
+    @Test
+    void staysBelowTheFalsePositiveRateOverAllBlocks() {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(16, 0.01, 8);
+        IDS.forEach(filter::put);
+
+        long falsePositives = ids("probe", 50_000).stream().filter(filter::mightContain).count();
+
+        // Full blocks sit right at their rate, so allow for sampling error; at the full rate per
+        // block these 7 blocks would be wrong about 5% of the time
+        assertThat(falsePositives / 50_000.0).isLessThan(0.0125);
+    }
+
+    @Test
+    void dropsTheOldestBlockBeyondMaxBlocks() {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(16, 0.01, 3);
+        IDS.subList(0, 1000).forEach(filter::put);
+        int size = filter.toBytes().length;
+
+        IDS.subList(1000, IDS.size()).forEach(filter::put);
+
+        assertThat(filter.blockCount()).isEqualTo(3);
+        assertThat(filter.toBytes()).hasSize(size);
+        // The newest block always holds the latest ids
+        assertThat(IDS.subList(IDS.size() - 64, IDS.size())).allMatch(filter::mightContain);
+        // The first 100 ids were in blocks that have been dropped since
+        assertThat(IDS.subList(0, 100).stream().filter(filter::mightContain).count()).isLessThan(10);
+    }
+
+    @Test
+    void neverExceedsItsMaximumSize() {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(16, 0.01, 3);
+        long max = OpportunityBloomFilter.maxSerializedSize(16, 0.01, 3);
+
+        for (String id : IDS) {
+            filter.put(id);
+            assertThat((long) filter.toBytes().length).isLessThanOrEqualTo(max);
+        }
+        // Long after the first rotation every block has the capacity of the last
+        assertThat((long) filter.toBytes().length).isEqualTo(max);
+    }
+
+    @Test
+    void defaultHistoryFitsWellWithinAnItem() {
+        assertThat(OpportunityBloomFilter.maxSerializedSize(256, 0.001, 6)).isLessThan(150_000);
+    }
+
+    @Test
+    void rejectsUnknownFormats() {
+        OpportunityBloomFilter filter = new OpportunityBloomFilter(16, 0.01, 8);
+        filter.put("a");
+        byte[] bytes = filter.toBytes();
+        bytes[0] = 2;
+
+        assertThatThrownBy(() -> OpportunityBloomFilter.fromBytes(bytes, 16, 0.01, 8))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> ids(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> prefix + "-" + i).toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.Solicitation;
+
+class OpportunityCacheTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+
+    @Test
+    void countsHitsAndMisses() {
+        OpportunityCache cache = new OpportunityCache(10, TTL);
+        Solicitation details = details("a");
+
+        assertThat(cache.get(OpportunityCache.key("a", "2026-10-18"))).isNull();
+        cache.put(OpportunityCache.key("a", "2026-10-18"), details);
+
+        assertThat(cache.get(OpportunityCache.key("a", "2026-10-18"))).isSameAs(details);
+        // A modified opportunity is another entry
+        assertThat(cache.get(OpportunityCache.key("a", "2026-10-19"))).isNull();
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(2);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        OpportunityCache cache = new OpportunityCache(2, TTL);
+        cache.put("a", details("a"));
+        cache.put("b", details("b"));
+        cache.get("a");
+
+        cache.put("c", details("c"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictions()).isEqualTo(1);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("c")).isNotNull();
+    }
+
+    @Test
+    void expiredEntriesAreMissesAndEvictions() {
+        OpportunityCache cache = new OpportunityCache(10, Duration.ZERO);
+        cache.put("a", details("a"));
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.misses()).isEqualTo(1);
+        assertThat(cache.evictions()).isEqualTo(1);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void evictExpiredDropsEveryExpiredEntry() {
+        OpportunityCache cache = new OpportunityCache(10, Duration.ZERO);
+        cache.put("a", details("a"));
+        cache.put("b", details("b"));
+
+        cache.evictExpired();
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.evictions()).isEqualTo(2);
+        assertThat(cache.misses()).isZero();
+    }
+
+    @Test
+    void zeroEntriesDisablesCaching() {
+        OpportunityCache cache = new OpportunityCache(0, TTL);
+        cache.put("a", details("a"));
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.misses()).isEqualTo(1);
+    }
+
+    private static Solicitation details(String id) {
+        Solicitation details = new Solicitation();
+        details.setId(id);
+        return details;
+    }
+}
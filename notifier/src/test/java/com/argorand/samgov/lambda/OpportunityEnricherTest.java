@@ -0,0 +1,137 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.Solicitation;
+
+class OpportunityEnricherTest {
+
+    private final HttpClient client = mock(HttpClient.class);
+    private final OpportunityCache cache = new OpportunityCache(100, Duration.ofHours(1));
+
+    // Opportunity ids in the order they were requested, and the responses not completed yet
+    private final List<String> requested = new ArrayList<>();
+    private final List<CompletableFuture<HttpResponse<String>>> pending = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(client.sendAsync(any(), any())).thenAnswer(invocation -> {
+            HttpRequest request = invocation.getArgument(0);
+            String path = request.uri().getPath();
+            synchronized (this) {
+                requested.add(path.substring(path.lastIndexOf('/') + 1));
+                CompletableFuture<HttpResponse<String>> response = new CompletableFuture<>();
+                pending.add(response);
+                return response;
+            }
+        });
+    }
+
+    @Test
+    void fetchesOnlyResultsWithDescriptionsOnce() {
+        CompletableFuture<Map<String, Solicitation>> details = enricher(8).fetchDetailsAsync(
+            List.of(hit("a", true), hit("b", false), hit("a", true), hit("c", true)), Span.NONE);
+
+        assertThat(requested).containsExactly("a", "c");
+        completeAll(200);
+
+        assertThat(details.join()).containsOnlyKeys("a", "c");
+        assertThat(details.join().get("c").getId()).isEqualTo("c");
+    }
+
+    @Test
+    void boundsTheRequestsInFlight() {
+        CompletableFuture<Map<String, Solicitation>> details = enricher(2).fetchDetailsAsync(
+            List.of(hit("a", true), hit("b", true), hit("c", true), hit("d", true), hit("e", true)), Span.NONE);
+
+        assertThat(requested).containsExactly("a", "b");
+        complete(0, 200);
+        assertThat(requested).containsExactly("a", "b", "c");
+        completeAll(200);
+
+        assertThat(details.join()).containsOnlyKeys("a", "b", "c", "d", "e");
+    }
+
+    @Test
+    void cachedDetailsAreNotFetchedAgain() {
+        OpportunityEnricher enricher = enricher(8);
+        CompletableFuture<Map<String, Solicitation>> first = enricher.fetchDetailsAsync(List.of(hit("a", true)), Span.NONE);
+        completeAll(200);
+        first.join();
+
+        Map<String, Solicitation> second = enricher.fetchDetails(List.of(hit("a", true)), Span.NONE);
+
+        assertThat(requested).containsExactly("a");
+        assertThat(second.get("a")).isSameAs(first.join().get("a"));
+        assertThat(cache.hits()).isEqualTo(1);
+    }
+
+    @Test
+    void failedDetailsAreLeftOut() {
+        CompletableFuture<Map<String, Solicitation>> details = enricher(8).fetchDetailsAsync(
+            List.of(hit("a", true), hit("b", true)), Span.NONE);
+
+        complete(0, 200);
+        complete(1, 500);
+
+        assertThat(details.join()).containsOnlyKeys("a");
+        // Nothing is cached for a failed fetch
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    private OpportunityEnricher enricher(int maxInFlight) {
+        AdaptiveRequestController controller = new AdaptiveRequestController(client,
+            AdaptiveRequestController.Policy.passThrough(Duration.ofSeconds(5)), null, false);
+        return new OpportunityEnricher(controller, NotifierComponents.objectMapper(), cache, maxInFlight,
+            Duration.ofSeconds(5), URI.create("https://sam.gov"), RunMetrics.disabled());
+    }
+
+    private void completeAll(int status) {
+        // Completing a response can start the next request, which adds to the list
+        for (int i = 0; i < pending(); i++) {
+            complete(i, status);
+        }
+    }
+
+    private synchronized int pending() {
+        return pending.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(int index, int status) {
+        String id;
+        CompletableFuture<HttpResponse<String>> future;
+        synchronized (this) {
+            id = requested.get(index);
+            future = pending.get(index);
+        }
+        HttpResponse<String> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        when(response.body()).thenReturn("{\"id\": \"" + id + "\", \"description\": []}");
+        future.complete(response);
+    }
+
+    private static SearchHit hit(String id, boolean hasDescriptions) {
+        return new SearchHit(id, "Notice " + id, hasDescriptions, "DEPT OF DEFENSE", "2026-10-18T08:00:00.000+00:00", "o",
+            List.of(), List.of(), null, List.of(), true);
+    }
+}
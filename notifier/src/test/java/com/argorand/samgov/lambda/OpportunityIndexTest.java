@@ -0,0 +1,65 @@
+package com.argorand.samgov.lambda;
+
+import static com.argorand.samgov.lambda.QueryMatcherTest.hit;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.SearchHit;
+
+class OpportunityIndexTest {
+
+    private static final String SEARCH = "https://sam.gov/api/prod/sgs/v1/search/?index=opp&sort=-modifiedDate";
+
+    private final List<SearchHit> hits = List.of(
+        hit("a", "Cloud hosting services", List.of("541512"), List.of("D302")),
+        hit("b", "Office construction", List.of("236220"), List.of("Y1AA")),
+        hit("c", "Cloud migration", List.of("541519", "541512"), List.of("D399")),
+        hit("d", "Janitorial services", List.of(), List.of("S201")));
+    private final OpportunityIndex index = new OpportunityIndex(hits);
+
+    @Test
+    void matchesCodePrefixesInIndexOrder() {
+        assertThat(ids(match("&naics=5415"))).containsExactly("a", "c");
+        assertThat(ids(match("&naics=541519"))).containsExactly("c");
+        assertThat(ids(match("&psc=D3"))).containsExactly("a", "c");
+        assertThat(ids(match("&naics=2362&psc=D3"))).isEmpty();
+    }
+
+    @Test
+    void listsAHitWithSeveralMatchingCodesOnce() {
+        assertThat(ids(match("&naics=541"))).containsExactly("a", "c");
+    }
+
+    @Test
+    void matchesKeywordsAgainstTitles() {
+        assertThat(ids(match("&q=cloud"))).containsExactly("a", "c");
+        assertThat(ids(match("&q=cloud+services"))).containsExactly("a");
+        assertThat(ids(match("&q=construction+services&qMode=ANY"))).containsExactly("a", "b", "d");
+        assertThat(ids(match("&q=hosting+services&qMode=EXACT"))).containsExactly("a");
+        assertThat(ids(match("&q=services+hosting&qMode=EXACT"))).isEmpty();
+    }
+
+    @Test
+    void matchesEverythingWithoutFilters() {
+        assertThat(ids(match(""))).containsExactly("a", "b", "c", "d");
+    }
+
+    @Test
+    void matchesTheSameAsTheMatcherAlone() {
+        for (String filters : List.of("&naics=54", "&psc=S", "&q=cloud&naics=541519", "&organization_id=100000000", "&naics=9")) {
+            QueryMatcher matcher = QueryMatcher.compile(SEARCH + filters, true);
+            assertThat(index.match(matcher)).as(filters).isEqualTo(hits.stream().filter(matcher::matches).toList());
+        }
+    }
+
+    private List<SearchHit> match(String filters) {
+        return index.match(QueryMatcher.compile(SEARCH + filters, true));
+    }
+
+    private static List<String> ids(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::id).toList();
+    }
+}
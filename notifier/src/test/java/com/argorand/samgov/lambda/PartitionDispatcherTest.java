@@ -0,0 +1,108 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.ScanPartition;
+
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.InvocationType;
+import software.amazon.awssdk.services.lambda.model.InvokeRequest;
+import software.amazon.awssdk.services.lambda.model.InvokeResponse;
+import software.amazon.awssdk.services.lambda.model.ServiceException;
+import tools.jackson.databind.json.JsonMapper;
+
+class PartitionDispatcherTest {
+
+    private static final JsonMapper OBJECT_MAPPER = NotifierComponents.objectMapper();
+    private static final List<ScanPartition> PARTITIONS =
+        List.of(new ScanPartition(0, 3), new ScanPartition(1, 3), new ScanPartition(2, 3));
+
+    @Test
+    void inProcessRunsEveryPartitionConcurrentlyAndWaitsForAll() throws Exception {
+        Set<ScanPartition> done = ConcurrentHashMap.newKeySet();
+        // Every worker waits for all others to have started, which only concurrent workers can
+        CountDownLatch started = new CountDownLatch(PARTITIONS.size());
+
+        new InProcessPartitionDispatcher(partition -> {
+            started.countDown();
+            try {
+                assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.add(partition);
+        }).dispatch(PARTITIONS);
+
+        assertThat(done).containsExactlyInAnyOrderElementsOf(PARTITIONS);
+    }
+
+    @Test
+    void inProcessFailureDoesNotAffectTheOtherPartitions() throws Exception {
+        Set<ScanPartition> done = ConcurrentHashMap.newKeySet();
+
+        new InProcessPartitionDispatcher(partition -> {
+            if (partition.segment() == 1) {
+                throw new IllegalStateException("Segment failed");
+            }
+            done.add(partition);
+        }).dispatch(PARTITIONS);
+
+        assertThat(done).containsExactlyInAnyOrder(PARTITIONS.get(0), PARTITIONS.get(2));
+    }
+
+    @Test
+    void lambdaInvokesTheWorkerAsynchronouslyPerPartition() {
+        LambdaClient lambdaClient = mock(LambdaClient.class);
+        List<InvokeRequest> invocations = new ArrayList<>();
+        when(lambdaClient.invoke(any(InvokeRequest.class))).thenAnswer(invocation -> {
+            invocations.add(invocation.getArgument(0));
+            return InvokeResponse.builder().statusCode(202).build();
+        });
+
+        new LambdaPartitionDispatcher(lambdaClient, "notifier-worker", OBJECT_MAPPER).dispatch(PARTITIONS);
+
+        assertThat(invocations).hasSize(3).allSatisfy(request -> {
+            assertThat(request.functionName()).isEqualTo("notifier-worker");
+            assertThat(request.invocationType()).isEqualTo(InvocationType.EVENT);
+        });
+        assertThat(invocations)
+            .extracting(request -> OBJECT_MAPPER.readValue(request.payload().asUtf8String(), ScanPartition.class))
+            .containsExactlyElementsOf(PARTITIONS);
+    }
+
+    @Test
+    void lambdaSkipsPartitionsThatCouldNotBeInvoked() {
+        LambdaClient lambdaClient = mock(LambdaClient.class);
+        List<InvokeRequest> invocations = new ArrayList<>();
+        when(lambdaClient.invoke(any(InvokeRequest.class))).thenAnswer(invocation -> {
+            invocations.add(invocation.getArgument(0));
+            if (invocations.size() == 1) {
+                throw ServiceException.builder().message("Rate exceeded").build();
+            }
+            return InvokeResponse.builder().statusCode(202).build();
+        });
+
+        new LambdaPartitionDispatcher(lambdaClient, "notifier-worker", OBJECT_MAPPER).dispatch(PARTITIONS);
+
+        assertThat(invocations).hasSize(3);
+    }
+
+    @Test
+    void lambdaRequiresAWorkerFunction() {
+        assertThatThrownBy(() -> new LambdaPartitionDispatcher(mock(LambdaClient.class), " ", OBJECT_MAPPER))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
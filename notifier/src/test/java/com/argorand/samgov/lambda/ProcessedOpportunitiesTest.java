@@ -0,0 +1,97 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+class ProcessedOpportunitiesTest {
+
+    private static final ProcessedOpportunities.Policy LEGACY = new ProcessedOpportunities.Policy(false, 7, 16, 0.01, 8);
+    private static final ProcessedOpportunities.Policy COMPACT = new ProcessedOpportunities.Policy(true, 7, 16, 0.01, 8);
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 18);
+
+    @Test
+    void legacyQueriesNeedMigrationOnlyWithCompactStorage() {
+        SamQuery userQuery = legacyQuery("a", "b");
+
+        assertThat(ProcessedOpportunities.of(userQuery, LEGACY).needsMigration()).isFalse();
+        assertThat(ProcessedOpportunities.of(userQuery, LEGACY).needsCompaction(TODAY)).isFalse();
+        assertThat(ProcessedOpportunities.of(userQuery, COMPACT).needsMigration()).isTrue();
+        assertThat(ProcessedOpportunities.of(userQuery, COMPACT).needsCompaction(TODAY)).isTrue();
+        assertThat(ProcessedOpportunities.of(new SamQuery(), COMPACT).needsMigration()).isFalse();
+    }
+
+    @Test
+    void migratesTheLegacySetIntoRecentAndHistory() {
+        SamQuery userQuery = legacyQuery("a", "b");
+
+        ProcessedOpportunities.of(userQuery, COMPACT).record(userQuery, List.of("c"), TODAY);
+
+        assertThat(userQuery.getProcessedOpportunities()).isNull();
+        assertThat(userQuery.getRecentOpportunities()).containsExactly(ProcessedOpportunities.recentEntry("c", TODAY));
+        assertThat(userQuery.getOpportunityHistory()).isNotNull();
+
+        ProcessedOpportunities migrated = ProcessedOpportunities.of(userQuery, COMPACT);
+        assertThat(migrated.needsMigration()).isFalse();
+        assertThat(migrated.needsCompaction(TODAY)).isFalse();
+        assertThat(List.of("a", "b", "c")).allMatch(migrated::contains);
+        assertThat(migrated.contains("d")).isFalse();
+    }
+
+    @Test
+    void needsCompactionOnceRecentEntriesLeaveTheWindow() {
+        SamQuery userQuery = new SamQuery();
+        userQuery.setRecentOpportunities(Set.of(ProcessedOpportunities.recentEntry("a", TODAY.minusDays(7))));
+
+        assertThat(ProcessedOpportunities.of(userQuery, COMPACT).needsCompaction(TODAY)).isFalse();
+        assertThat(ProcessedOpportunities.of(userQuery, COMPACT).needsCompaction(TODAY.plusDays(1))).isTrue();
+    }
+
+    @Test
+    void foldsOldRecentEntriesIntoHistory() {
+        SamQuery userQuery = new SamQuery();
+        userQuery.setRecentOpportunities(Set.of(ProcessedOpportunities.recentEntry("a", TODAY.minusDays(8)),
+            ProcessedOpportunities.recentEntry("b", TODAY.minusDays(1))));
+
+        ProcessedOpportunities.of(userQuery, COMPACT).record(userQuery, List.of(), TODAY);
+
+        assertThat(userQuery.getRecentOpportunities()).containsExactly(ProcessedOpportunities.recentEntry("b", TODAY.minusDays(1)));
+        ProcessedOpportunities compacted = ProcessedOpportunities.of(userQuery, COMPACT);
+        assertThat(compacted.contains("a")).isTrue();
+        assertThat(compacted.contains("b")).isTrue();
+        assertThat(compacted.needsCompaction(TODAY)).isFalse();
+    }
+
+    @Test
+    void keepsTheEarliestDateOfARecentId() {
+        SamQuery userQuery = new SamQuery();
+        userQuery.setRecentOpportunities(Set.of(ProcessedOpportunities.recentEntry("a", TODAY.minusDays(8)),
+            ProcessedOpportunities.recentEntry("a", TODAY)));
+
+        assertThat(ProcessedOpportunities.of(userQuery, COMPACT).needsCompaction(TODAY)).isTrue();
+    }
+
+    @Test
+    void legacyStorageKeepsEveryId() {
+        SamQuery userQuery = legacyQuery("a");
+
+        ProcessedOpportunities.of(userQuery, LEGACY).record(userQuery, List.of("b"), TODAY);
+
+        assertThat(userQuery.getProcessedOpportunities()).containsExactlyInAnyOrder("a", "b");
+        assertThat(userQuery.getRecentOpportunities()).isNull();
+        assertThat(userQuery.getOpportunityHistory()).isNull();
+    }
+
+    private static SamQuery legacyQuery(String... ids) {
+        SamQuery userQuery = new SamQuery();
+        userQuery.setProcessedOpportunities(Set.of(ids));
+        return userQuery;
+    }
+}
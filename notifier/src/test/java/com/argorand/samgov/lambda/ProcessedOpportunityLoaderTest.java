@@ -0,0 +1,155 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+class ProcessedOpportunityLoaderTest {
+
+    private final DynamoDbClient dynamoDbClient = mock(DynamoDbClient.class);
+    private final ProcessedOpportunityLoader loader = new ProcessedOpportunityLoader(dynamoDbClient, "queries");
+
+    private final List<BatchGetItemRequest> batches = new ArrayList<>();
+
+    @Test
+    void loadsTheDedupStateOfOneQuery() {
+        SamQuery query = query("n1");
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().item(Map.of(
+            ProcessedOpportunityLoader.KEY, AttributeValue.fromS("n1"),
+            ProcessedOpportunityLoader.SENT, AttributeValue.fromSs(List.of("a", "b")),
+            ProcessedOpportunityLoader.HISTORY, AttributeValue.fromB(SdkBytes.fromByteArray(new byte[] {1, 0, 0, 0, 0})),
+            ProcessedOpportunityLoader.VERSION, AttributeValue.fromN("7"),
+            ProcessedOpportunityLoader.LAST_PROCESSED_AT, AttributeValue.fromS("2026-10-18T12:00:00Z"))).build());
+
+        assertThat(loader.loadOne(query, true, Span.NONE)).isTrue();
+
+        assertThat(query.getProcessedOpportunities()).containsExactlyInAnyOrder("a", "b");
+        assertThat(query.getOpportunityHistory()).isNotNull();
+        assertThat(query.getVersion()).isEqualTo(7);
+        assertThat(query.getLastProcessedAt()).isEqualTo("2026-10-18T12:00:00Z");
+    }
+
+    @Test
+    void clearsTheAttributesTheItemLacks() {
+        SamQuery query = query("n1");
+        query.setRecentOpportunities(new HashSet<>(Set.of("2026-10-18#a")));
+        query.setVersion(3);
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder()
+            .item(Map.of(ProcessedOpportunityLoader.KEY, AttributeValue.fromS("n1"))).build());
+
+        loader.loadOne(query, false, Span.NONE);
+
+        assertThat(query.getRecentOpportunities()).isNull();
+        assertThat(query.getVersion()).isNull();
+    }
+
+    @Test
+    void reportsADeletedQuery() {
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().build());
+
+        assertThat(loader.loadOne(query("n1"), true, Span.NONE)).isFalse();
+    }
+
+    @Test
+    void readsOnlyTheDedupAttributes() {
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenAnswer(invocation -> {
+            GetItemRequest request = invocation.getArgument(0);
+            assertThat(request.consistentRead()).isTrue();
+            assertThat(request.projectionExpression().split(", ")).hasSize(6);
+            assertThat(request.expressionAttributeNames()).containsValues(ProcessedOpportunityLoader.SENT,
+                ProcessedOpportunityLoader.RECENT, ProcessedOpportunityLoader.HISTORY, ProcessedOpportunityLoader.VERSION,
+                ProcessedOpportunityLoader.LAST_PROCESSED_AT);
+            return GetItemResponse.builder().build();
+        });
+
+        loader.loadOne(query("n1"), true, Span.NONE);
+    }
+
+    @Test
+    void loadsManyQueriesInBatchesOfAHundred() throws Exception {
+        List<SamQuery> queries = IntStream.range(0, 150).mapToObj(i -> query("n" + i)).toList();
+        respondToBatches(0);
+
+        loader.load(queries, false, Span.NONE);
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches).extracting(batch -> batch.requestItems().get("queries").keys().size()).containsExactly(100, 50);
+        assertThat(queries).allSatisfy(query ->
+            assertThat(query.getProcessedOpportunities()).containsExactly("sent-" + query.getNotificationId()));
+    }
+
+    @Test
+    void readsEveryKeyOnce() throws Exception {
+        SamQuery first = query("n1");
+        SamQuery same = query("n1");
+        respondToBatches(0);
+
+        loader.load(List.of(first, same, query("n2")), false, Span.NONE);
+
+        assertThat(batches.get(0).requestItems().get("queries").keys()).hasSize(2);
+        assertThat(first.getProcessedOpportunities()).containsExactly("sent-n1");
+    }
+
+    @Test
+    void retriesUnprocessedKeys() throws Exception {
+        List<SamQuery> queries = List.of(query("n1"), query("n2"), query("n3"));
+        respondToBatches(2);
+
+        loader.load(queries, true, Span.NONE);
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(1).requestItems().get("queries").keys()).hasSize(2);
+        assertThat(batches).allSatisfy(batch -> assertThat(batch.requestItems().get("queries").consistentRead()).isTrue());
+        assertThat(queries).allSatisfy(query -> assertThat(query.getProcessedOpportunities()).isNotNull());
+    }
+
+    /**
+     * Answers batch reads with an item per key; the first batch leaves its last {@code unprocessed}
+     * keys unprocessed.
+     */
+    private void respondToBatches(int unprocessed) {
+        when(dynamoDbClient.batchGetItem(any(BatchGetItemRequest.class))).thenAnswer(invocation -> {
+            BatchGetItemRequest request = invocation.getArgument(0);
+            batches.add(request);
+            KeysAndAttributes keysAndAttributes = request.requestItems().get("queries");
+            List<Map<String, AttributeValue>> keys = keysAndAttributes.keys();
+            int processed = batches.size() == 1 ? keys.size() - unprocessed : keys.size();
+            List<Map<String, AttributeValue>> items = keys.subList(0, processed).stream()
+                .map(key -> Map.of(ProcessedOpportunityLoader.KEY, key.get(ProcessedOpportunityLoader.KEY),
+                    ProcessedOpportunityLoader.SENT, AttributeValue.fromSs(List.of("sent-" + key.get(ProcessedOpportunityLoader.KEY).s()))))
+                .toList();
+            BatchGetItemResponse.Builder response = BatchGetItemResponse.builder().responses(Map.of("queries", items));
+            if (processed < keys.size()) {
+                response.unprocessedKeys(Map.of("queries", keysAndAttributes.toBuilder().keys(keys.subList(processed, keys.size())).build()));
+            }
+            return response.build();
+        });
+    }
+
+    private static SamQuery query(String id) {
+        SamQuery query = new SamQuery();
+        query.setNotificationId(id);
+        return query;
+    }
+}
@@ -0,0 +1,248 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.UpdateItemEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+class ProcessedOpportunityWriterTest {
+
+    private static final ProcessedOpportunities.Policy LEGACY = new ProcessedOpportunities.Policy(false, 7, 16, 0.01, 8);
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 18);
+    private static final Instant SEARCHED_AT = Instant.parse("2026-10-18T12:00:00Z");
+
+    @SuppressWarnings("unchecked")
+    private final DynamoDbTable<SamQuery> table = mock(DynamoDbTable.class);
+    private final DynamoDbClient dynamoDbClient = mock(DynamoDbClient.class);
+    private final DynamoDbAsyncClient asyncClient = mock(DynamoDbAsyncClient.class);
+    private final ProcessedOpportunityLoader loader = mock(ProcessedOpportunityLoader.class);
+    private final SamQuery query = new SamQuery();
+
+    // What every update saw, as the bean keeps changing after the call
+    private final List<UpdateItemRequest> updates = new ArrayList<>();
+    private final List<Integer> writtenVersions = new ArrayList<>();
+    private final List<Set<String>> writtenIds = new ArrayList<>();
+    private final List<Object> writtenConditionValues = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(table.tableName()).thenReturn("queries");
+        query.setNotificationId("n1");
+        query.setProcessedOpportunities(new HashSet<>(Set.of("old")));
+        query.setVersion(3);
+    }
+
+    @Test
+    void deltaWriteAddsTheIdsAndBumpsTheVersion() throws Exception {
+        failingUpdates(0);
+
+        List<String> recorded = writer(true).record(query, processed(), List.of("a", "b"), TODAY, SEARCHED_AT, Span.NONE);
+
+        assertThat(recorded).containsExactly("a", "b");
+        UpdateItemRequest update = updates.get(0);
+        assertThat(update.conditionExpression()).isEqualTo("attribute_exists(#key) AND #version = :expected");
+        assertThat(update.expressionAttributeValues().get(":expected").n()).isEqualTo("3");
+        assertThat(update.expressionAttributeValues().get(":next").n()).isEqualTo("4");
+        assertThat(update.expressionAttributeValues().get(":ids").ss()).containsExactly("a", "b");
+        assertThat(update.expressionAttributeValues().get(":watermark").s()).isEqualTo("2026-10-18T12:00:00Z");
+        assertThat(query.getVersion()).isEqualTo(4);
+        assertThat(query.getProcessedOpportunities()).containsExactlyInAnyOrder("old", "a", "b");
+    }
+
+    @Test
+    void deltaWriteRetriesOnlyTheIdsAConcurrentRunDidNotRecord() throws Exception {
+        failingUpdates(1);
+        concurrentRecord(Set.of("old", "a"), 4);
+
+        List<String> recorded = writer(true).record(query, processed(), List.of("a", "b"), TODAY, SEARCHED_AT, Span.NONE);
+
+        assertThat(recorded).containsExactly("b");
+        verify(loader).loadOne(eq(query), eq(true), any());
+        assertThat(updates).hasSize(2);
+        assertThat(updates.get(1).expressionAttributeValues().get(":expected").n()).isEqualTo("4");
+        assertThat(updates.get(1).expressionAttributeValues().get(":ids").ss()).containsExactly("b");
+        assertThat(query.getVersion()).isEqualTo(5);
+        assertThat(query.getProcessedOpportunities()).containsExactlyInAnyOrder("old", "a", "b");
+    }
+
+    @Test
+    void deltaWriteStopsWhenAConcurrentRunRecordedEverything() throws Exception {
+        failingUpdates(1);
+        concurrentRecord(Set.of("old", "a", "b"), 4);
+
+        List<String> recorded = writer(true).record(query, processed(), List.of("a", "b"), TODAY, SEARCHED_AT, Span.NONE);
+
+        assertThat(recorded).isEmpty();
+        assertThat(updates).hasSize(1);
+    }
+
+    @Test
+    void deletedQueryIsSkipped() throws Exception {
+        failingUpdates(1);
+        when(loader.loadOne(eq(query), eq(true), any())).thenReturn(false);
+
+        assertThat(writer(true).record(query, processed(), List.of("a"), TODAY, SEARCHED_AT, Span.NONE)).isEmpty();
+    }
+
+    @Test
+    void givesUpAfterTheLastAttempt() throws Exception {
+        failingUpdates(3);
+        concurrentRecord(Set.of("old"), 4);
+
+        assertThatThrownBy(() -> writer(true).record(query, processed(), List.of("a"), TODAY, SEARCHED_AT, Span.NONE))
+            .isInstanceOf(ConditionalCheckFailedException.class);
+        assertThat(updates).hasSize(3);
+        verify(loader, times(2)).loadOne(eq(query), eq(true), any());
+    }
+
+    @Test
+    void deltaWriteNeverMovesTheWatermarkBack() throws Exception {
+        failingUpdates(0);
+        query.setLastProcessedAt("2026-10-18T13:00:00Z");
+
+        writer(true).record(query, processed(), List.of("a"), TODAY, SEARCHED_AT, Span.NONE);
+
+        assertThat(updates.get(0).updateExpression()).doesNotContain("#lastProcessedAt");
+        assertThat(query.getLastProcessedAt()).isEqualTo("2026-10-18T13:00:00Z");
+    }
+
+    @Test
+    void beanWriteIsConditionedOnTheVersion() throws Exception {
+        failingBeanWrites(0);
+
+        List<String> recorded = writer(false).record(query, processed(), List.of("a"), TODAY, SEARCHED_AT, Span.NONE);
+
+        assertThat(recorded).containsExactly("a");
+        assertThat(writtenConditionValues).containsExactly("3");
+        assertThat(writtenVersions).containsExactly(4);
+        assertThat(writtenIds.get(0)).containsExactlyInAnyOrder("old", "a");
+        assertThat(query.getLastProcessedAt()).isEqualTo("2026-10-18T12:00:00Z");
+    }
+
+    @Test
+    void beanWriteIsRetriedWithTheStateReadAgain() throws Exception {
+        failingBeanWrites(1);
+        concurrentRecord(Set.of("old", "a"), 4);
+
+        List<String> recorded = writer(false).record(query, processed(), List.of("a", "b"), TODAY, SEARCHED_AT, Span.NONE);
+
+        assertThat(recorded).containsExactly("b");
+        assertThat(writtenConditionValues).containsExactly("3", "4");
+        assertThat(writtenVersions).containsExactly(4, 5);
+        // The ids of the failed write were reset by the read, the retry adds only the missing one
+        assertThat(writtenIds.get(1)).containsExactlyInAnyOrder("old", "a", "b");
+    }
+
+    @Test
+    void watermarkOnlyMovesForward() {
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class))).thenAnswer(invocation -> {
+            updates.add(invocation.getArgument(0));
+            return UpdateItemResponse.builder().build();
+        });
+
+        writer(true).advanceWatermark(query, SEARCHED_AT.plusMillis(250), Span.NONE);
+
+        UpdateItemRequest update = updates.get(0);
+        assertThat(update.conditionExpression())
+            .isEqualTo("attribute_exists(#key) AND (attribute_not_exists(#lastProcessedAt) OR #lastProcessedAt < :at)");
+        assertThat(update.expressionAttributeValues().get(":at").s()).isEqualTo("2026-10-18T12:00:00Z");
+        assertThat(query.getLastProcessedAt()).isEqualTo("2026-10-18T12:00:00Z");
+    }
+
+    @Test
+    void laterWatermarkIsKept() {
+        query.setLastProcessedAt("2026-10-18T13:00:00Z");
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class))).thenThrow(conditionFailed());
+
+        writer(true).advanceWatermark(query, SEARCHED_AT, Span.NONE);
+
+        assertThat(query.getLastProcessedAt()).isEqualTo("2026-10-18T13:00:00Z");
+    }
+
+    @Test
+    void laterWatermarkIsKeptAsync() {
+        query.setLastProcessedAt("2026-10-18T13:00:00Z");
+        when(asyncClient.updateItem(any(UpdateItemRequest.class))).thenReturn(CompletableFuture.failedFuture(conditionFailed()));
+
+        writer(true).advanceWatermarkAsync(query, SEARCHED_AT, Span.NONE).join();
+
+        assertThat(query.getLastProcessedAt()).isEqualTo("2026-10-18T13:00:00Z");
+    }
+
+    private ProcessedOpportunityWriter writer(boolean deltaWrites) {
+        return new ProcessedOpportunityWriter(table, dynamoDbClient, asyncClient, loader, deltaWrites, 3, RunMetrics.disabled());
+    }
+
+    private ProcessedOpportunities processed() {
+        return ProcessedOpportunities.of(query, LEGACY);
+    }
+
+    /**
+     * The first {@code failures} updates fail their condition, the others succeed.
+     */
+    private void failingUpdates(int failures) {
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class))).thenAnswer(invocation -> {
+            updates.add(invocation.getArgument(0));
+            if (updates.size() <= failures) {
+                throw conditionFailed();
+            }
+            return UpdateItemResponse.builder().build();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void failingBeanWrites(int failures) {
+        when(table.updateItem(any(UpdateItemEnhancedRequest.class))).thenAnswer(invocation -> {
+            UpdateItemEnhancedRequest<SamQuery> request = invocation.getArgument(0);
+            AttributeValue expected = request.conditionExpression().expressionValues().get(":expected");
+            writtenConditionValues.add(expected == null ? null : expected.n());
+            writtenVersions.add(request.item().getVersion());
+            writtenIds.add(new HashSet<>(request.item().getProcessedOpportunities()));
+            if (writtenVersions.size() <= failures) {
+                throw conditionFailed();
+            }
+            return request.item();
+        });
+    }
+
+    /**
+     * Re-reading the query returns what a concurrent run stored.
+     */
+    private void concurrentRecord(Set<String> ids, int version) {
+        when(loader.loadOne(eq(query), eq(true), any())).thenAnswer(invocation -> {
+            query.setProcessedOpportunities(new HashSet<>(ids));
+            query.setVersion(version);
+            return true;
+        });
+    }
+
+    private static ConditionalCheckFailedException conditionFailed() {
+        return ConditionalCheckFailedException.builder().message("The conditional request failed").build();
+    }
+}
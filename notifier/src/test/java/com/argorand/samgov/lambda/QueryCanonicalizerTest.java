@@ -0,0 +1,68 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class QueryCanonicalizerTest {
+
+    private static final String SEARCH = "https://sam.gov/api/prod/sgs/v1/search/";
+
+    @Test
+    void ignoresParameterOrder() {
+        assertSameKey(SEARCH + "?index=opp&naics=541512&is_active=true", SEARCH + "?is_active=true&index=opp&naics=541512");
+    }
+
+    @Test
+    void ignoresTheOrderOfRepeatedKeys() {
+        assertSameKey(SEARCH + "?naics=541512&naics=236220", SEARCH + "?naics=236220&naics=541512");
+    }
+
+    @Test
+    void keepsEveryValueOfRepeatedKeys() {
+        assertDifferentKeys(SEARCH + "?naics=541512", SEARCH + "?naics=541512&naics=236220");
+    }
+
+    @Test
+    void normalizesPercentEncoding() {
+        assertSameKey(SEARCH + "?q=cloud%20hosting", SEARCH + "?q=cloud+hosting");
+        assertSameKey(SEARCH + "?naics=541512%2C236220", SEARCH + "?naics=541512,236220");
+        assertSameKey(SEARCH + "?naics=541512%2c236220", SEARCH + "?naics=541512%2C236220");
+        assertSameKey(SEARCH + "?modified_date.from=2026-10-18-04%3A00", SEARCH + "?modified_date.from=2026-10-18-04:00");
+    }
+
+    @Test
+    void dropsParametersWithoutValue() {
+        assertSameKey(SEARCH + "?index=opp&naics=&q=%20&organization_id", SEARCH + "?index=opp");
+    }
+
+    @Test
+    void ignoresTheCaseOfSchemeAndHost() {
+        assertSameKey("HTTPS://SAM.GOV/api/prod/sgs/v1/search/?index=opp", SEARCH + "?index=opp");
+    }
+
+    @Test
+    void keepsSearchesThatDifferApart() {
+        assertDifferentKeys(SEARCH + "?naics=541", SEARCH + "?naics=5415");
+        assertDifferentKeys(SEARCH + "?q=Cloud", SEARCH + "?q=cloud");
+        assertDifferentKeys(SEARCH + "?index=opp", "https://sam.gov/api/prod/sgs/v1/SEARCH/?index=opp");
+        assertDifferentKeys(SEARCH + "?psc=541512", SEARCH + "?naics=541512");
+        // An encoded separator is part of the value, not a second parameter
+        assertDifferentKeys(SEARCH + "?q=a%26b%3Dc", SEARCH + "?q=a&b=c");
+    }
+
+    @Test
+    void rejectsInvalidUrls() {
+        assertThatThrownBy(() -> QueryCanonicalizer.canonicalize("https://sam.gov/search?q=cloud hosting"))
+            .isInstanceOf(RuntimeException.class);
+    }
+
+    private static void assertSameKey(String url, String other) {
+        assertThat(QueryCanonicalizer.canonicalize(url)).isEqualTo(QueryCanonicalizer.canonicalize(other));
+    }
+
+    private static void assertDifferentKeys(String url, String other) {
+        assertThat(QueryCanonicalizer.canonicalize(url)).isNotEqualTo(QueryCanonicalizer.canonicalize(other));
+    }
+}
@@ -0,0 +1,115 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class QueryDispatcherTest {
+
+    @Test
+    void sequentialRunsEveryQueryInlineInOrder() throws Exception {
+        List<String> ran = new ArrayList<>();
+        Thread caller = Thread.currentThread();
+
+        try (QueryDispatcher dispatcher = QueryDispatcher.sequential()) {
+            for (String id : List.of("a", "b", "c")) {
+                dispatcher.dispatch(id, () -> {
+                    assertThat(Thread.currentThread()).isSameAs(caller);
+                    ran.add(id);
+                });
+            }
+        }
+
+        assertThat(ran).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void failingQueryDoesNotAffectTheOthers() throws Exception {
+        Set<String> ran = ConcurrentHashMap.newKeySet();
+
+        for (QueryDispatcher dispatcher : List.of(QueryDispatcher.sequential(), QueryDispatcher.concurrent(2))) {
+            ran.clear();
+            try (dispatcher) {
+                dispatcher.dispatch("a", () -> ran.add("a"));
+                dispatcher.dispatch("b", () -> {
+                    throw new IllegalStateException("Query failed");
+                });
+                dispatcher.dispatch("c", () -> ran.add("c"));
+            }
+
+            assertThat(ran).containsExactlyInAnyOrder("a", "c");
+        }
+    }
+
+    @Test
+    void concurrentRunsQueriesOnVirtualThreads() throws Exception {
+        Set<Boolean> virtual = ConcurrentHashMap.newKeySet();
+
+        try (QueryDispatcher dispatcher = QueryDispatcher.concurrent(4)) {
+            for (int i = 0; i < 8; i++) {
+                dispatcher.dispatch("q" + i, () -> virtual.add(Thread.currentThread().isVirtual()));
+            }
+        }
+
+        assertThat(virtual).containsExactly(true);
+    }
+
+    @Test
+    void neverRunsMoreThanMaxConcurrencyAtOnce() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+
+        try (QueryDispatcher dispatcher = QueryDispatcher.concurrent(3)) {
+            for (int i = 0; i < 30; i++) {
+                dispatcher.dispatch("q" + i, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(5);
+                    running.decrementAndGet();
+                    done.incrementAndGet();
+                });
+            }
+        }
+
+        assertThat(maxRunning.get()).isBetween(1, 3);
+        // Closing waited for every query
+        assertThat(done.get()).isEqualTo(30);
+    }
+
+    @Test
+    void dispatchBlocksWhileTheCapIsReached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondDispatched = new CountDownLatch(1);
+
+        try (QueryDispatcher dispatcher = QueryDispatcher.concurrent(1)) {
+            dispatcher.dispatch("a", () -> release.await());
+            Thread producer = Thread.ofVirtual().start(() -> {
+                try {
+                    dispatcher.dispatch("b", () -> {});
+                    secondDispatched.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            assertThat(secondDispatched.await(100, TimeUnit.MILLISECONDS)).isFalse();
+            release.countDown();
+            assertThat(secondDispatched.await(5, TimeUnit.SECONDS)).isTrue();
+            producer.join();
+        }
+    }
+
+    @Test
+    void rejectsANonPositiveConcurrency() {
+        assertThatThrownBy(() -> QueryDispatcher.concurrent(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
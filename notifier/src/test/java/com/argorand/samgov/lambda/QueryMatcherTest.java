@@ -0,0 +1,106 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.SearchHit;
+
+class QueryMatcherTest {
+
+    private static final String SEARCH = "https://sam.gov/api/prod/sgs/v1/search/?index=opp&page=0&size=25&sort=-modifiedDate"
+        + "&mode=search&responseType=json&modified_date.from=2026-10-18-04:00&modified_date.to=2026-10-18-04:00";
+
+    @Test
+    void naicsFiltersMatchTheCodesTheyPrefix() {
+        QueryMatcher sector = QueryMatcher.compile(SEARCH + "&naics=54", false);
+        QueryMatcher industry = QueryMatcher.compile(SEARCH + "&naics=541512", false);
+
+        assertThat(sector.matches(hit("a", "Title", List.of("541512"), List.of()))).isTrue();
+        assertThat(industry.matches(hit("a", "Title", List.of("541512"), List.of()))).isTrue();
+        assertThat(industry.matches(hit("b", "Title", List.of("54"), List.of()))).isFalse();
+        assertThat(sector.matches(hit("c", "Title", List.of("236220"), List.of()))).isFalse();
+        assertThat(sector.matches(hit("d", "Title", List.of(), List.of()))).isFalse();
+    }
+
+    @Test
+    void pscFiltersMatchTheCodesTheyPrefixIgnoringCase() {
+        QueryMatcher matcher = QueryMatcher.compile(SEARCH + "&psc=d3", false);
+
+        assertThat(matcher.matches(hit("a", "Title", List.of(), List.of("D302")))).isTrue();
+        assertThat(matcher.matches(hit("b", "Title", List.of(), List.of("R425")))).isFalse();
+    }
+
+    @Test
+    void commaSeparatedCodesMatchAnyOfThem() {
+        QueryMatcher matcher = QueryMatcher.compile(SEARCH + "&naics=541%2C236", false);
+
+        assertThat(matcher.matches(hit("a", "Title", List.of("236220"), List.of()))).isTrue();
+        assertThat(matcher.matches(hit("b", "Title", List.of("541512"), List.of()))).isTrue();
+        assertThat(matcher.matches(hit("c", "Title", List.of("611430"), List.of()))).isFalse();
+    }
+
+    @Test
+    void everyFilterHasToMatch() {
+        QueryMatcher matcher = QueryMatcher.compile(SEARCH + "&naics=541&notice_type=O&is_active=true", false);
+
+        assertThat(matcher.matches(hit("a", "Title", List.of("541512"), List.of()))).isTrue();
+        assertThat(matcher.matches(new SearchHit("b", "Title", false, null, null, "k", List.of("541512"), List.of(),
+            null, List.of(), true))).isFalse();
+        assertThat(matcher.matches(new SearchHit("c", "Title", false, null, null, "o", List.of("541512"), List.of(),
+            null, List.of(), false))).isFalse();
+    }
+
+    @Test
+    void unsupportedParametersDoNotCompile() {
+        assertThat(QueryMatcher.compile(SEARCH + "&state=VA", true)).isNull();
+        assertThat(QueryMatcher.compile(SEARCH + "&response_date.from=2026-10-01", true)).isNull();
+        assertThat(QueryMatcher.compile(SEARCH.replace("index=opp", "index=ei"), true)).isNull();
+        assertThat(QueryMatcher.compile(SEARCH + "&qMode=FUZZY&q=cloud", true)).isNull();
+        assertThat(QueryMatcher.compile(SEARCH + "&is_active=maybe", true)).isNull();
+        assertThat(QueryMatcher.compile("not a url", true)).isNull();
+    }
+
+    @Test
+    void parametersWithoutValueAreIgnored() {
+        assertThat(QueryMatcher.compile(SEARCH + "&state=&naics=541", true)).isNotNull();
+    }
+
+    @Test
+    void keywordsCompileOnlyWhenEnabledAndPlain() {
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud", false)).isNull();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud", true)).isNotNull();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=%22cloud+hosting%22", true)).isNull();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud+OR+hosting", true)).isNull();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud*", true)).isNull();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=-cloud", true)).isNull();
+    }
+
+    @Test
+    void keywordsMatchTitlesOnly() {
+        QueryMatcher matcher = QueryMatcher.compile(SEARCH + "&q=cloud+hosting", true);
+
+        assertThat(matcher.matches(hit("a", "Cloud Hosting Services", List.of(), List.of()))).isTrue();
+        // A result with descriptions is still only matched by its title
+        assertThat(matcher.matches(new SearchHit("b", "IT support services", true, null, null, "o", List.of(), List.of(),
+            null, List.of(), true))).isFalse();
+    }
+
+    @Test
+    void keywordModesFollowQMode() {
+        SearchHit hit = hit("a", "Hosting of cloud services", List.of(), List.of());
+
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud+hosting", true).matches(hit)).isTrue();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud+storage", true).matches(hit)).isFalse();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud+storage&qMode=ANY", true).matches(hit)).isTrue();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud+services&qMode=EXACT", true).matches(hit)).isTrue();
+        assertThat(QueryMatcher.compile(SEARCH + "&q=cloud+hosting&qMode=EXACT", true).matches(hit)).isFalse();
+    }
+
+    static SearchHit hit(String id, String title, List<String> naics, List<String> psc) {
+        return new SearchHit(id, title, false, "DEPT OF DEFENSE", "2026-10-18T08:00:00.000+00:00", "o", naics, psc,
+            null, List.of("100000000"), true);
+    }
+}
@@ -0,0 +1,252 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+class QueryProcessorTest {
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    private final SearchPager pager = mock(SearchPager.class);
+    private final ProcessedOpportunityWriter writer = mock(ProcessedOpportunityWriter.class);
+    private final OpportunityEnricher enricher = mock(OpportunityEnricher.class);
+    private final EmailSender emailSender = mock(EmailSender.class);
+    private final SamQuery query = new SamQuery();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        query.setNotificationId("n1");
+        query.setEmail("user@example.com");
+        query.setQueryUrl("https://sam.gov/search/?index=opp&sort=-modifiedDate");
+        // Three days old, so any new watermark is on a later day and gets written
+        query.setLastProcessedAt(now.minus(Duration.ofDays(3)).toString());
+        when(writer.record(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> invocation.getArgument(2));
+        when(enricher.fetchDetails(any(), any())).thenReturn(Map.of());
+    }
+
+    @Test
+    void completeSearchMovesTheWatermarkToTheSearchTime() throws Exception {
+        search(false, false, hit("a", now.minus(Duration.ofMinutes(10))));
+
+        processor().process(query);
+
+        assertThat(recordedWatermark()).isAfterOrEqualTo(now);
+    }
+
+    @Test
+    void failedPageLeavesTheWatermark() throws Exception {
+        search(true, false, hit("a", now.minus(Duration.ofMinutes(10))));
+
+        processor().process(query);
+
+        assertThat(recordedWatermark()).isNull();
+    }
+
+    @Test
+    void pageLimitMovesTheWatermarkToTheOldestResultRead() throws Exception {
+        Instant oldest = now.minus(Duration.ofHours(5));
+        search(false, true, hit("a", now.minus(Duration.ofMinutes(10))), hit("b", oldest));
+
+        processor().process(query);
+
+        assertThat(recordedWatermark()).isEqualTo(oldest);
+    }
+
+    @Test
+    void pageLimitAtTheWindowStartMovesTheWatermarkToTheSearchTime() throws Exception {
+        // The last result is older than the window, so the unread pages hold only older ones
+        search(false, true, hit("a", now.minus(Duration.ofMinutes(10))), hit("b", now.minus(Duration.ofDays(5))));
+
+        processor().process(query);
+
+        assertThat(recordedWatermark()).isAfterOrEqualTo(now);
+    }
+
+    @Test
+    void pageLimitWithoutNewResultsAdvancesTheWatermarkToTheOldestResultRead() throws Exception {
+        Instant oldest = now.minus(Duration.ofHours(5));
+        query.setProcessedOpportunities(Set.of("a", "b"));
+        search(false, true, hit("a", now.minus(Duration.ofMinutes(10))), hit("b", oldest));
+
+        processor().process(query);
+
+        verify(writer, never()).record(any(), any(), any(), any(), any(), any());
+        verify(writer).advanceWatermark(eq(query), eq(oldest), any());
+        verify(emailSender, never()).send(any(), any(), any(), any());
+    }
+
+    @Test
+    void projectedQueryWithoutResultsIsNotLoaded() throws Exception {
+        ProcessedOpportunityLoader loader = mock(ProcessedOpportunityLoader.class);
+        search(false, false);
+
+        processor(loader).process(query);
+
+        verify(loader, never()).load(any(), anyBoolean(), any());
+        verify(writer, never()).record(any(), any(), any(), any(), any(), any());
+        verify(writer).advanceWatermark(eq(query), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void projectedQueryIsLoadedOnceThereAreResults() throws Exception {
+        ProcessedOpportunityLoader loader = mock(ProcessedOpportunityLoader.class);
+        doAnswer(invocation -> {
+            query.setProcessedOpportunities(new HashSet<>(Set.of("a")));
+            return null;
+        }).when(loader).load(any(), anyBoolean(), any());
+        search(false, false, hit("a", now.minus(Duration.ofMinutes(10))), hit("b", now.minus(Duration.ofMinutes(20))));
+
+        processor(loader).process(query);
+
+        verify(loader).load(eq(List.of(query)), eq(false), any());
+        ArgumentCaptor<List<String>> recorded = ArgumentCaptor.forClass(List.class);
+        verify(writer).record(eq(query), any(), recorded.capture(), any(), any(), any());
+        assertThat(recorded.getValue()).containsExactly("b");
+    }
+
+    @Test
+    void digestSendsOneEmailListingEveryOpportunityOnce() throws Exception {
+        SamQuery other = digestQuery("n2", "Sidewalks", "https://sam.gov/search/?index=opp&sort=-modifiedDate&keywords=sidewalk");
+        query.setQueryDescription("Roofs");
+        searches(Map.of("roof", List.of(hit("a", now.minus(Duration.ofMinutes(10))), hit("b", now.minus(Duration.ofMinutes(20)))),
+            "sidewalk", List.of(hit("b", now.minus(Duration.ofMinutes(20))), hit("c", now.minus(Duration.ofMinutes(30))))));
+        query.setQueryUrl("https://sam.gov/search/?index=opp&sort=-modifiedDate&keywords=roof");
+
+        processor().processDigest(List.of(query, other));
+
+        // Every query records all of its new results
+        assertThat(recordedIds(query)).containsExactly("a", "b");
+        assertThat(recordedIds(other)).containsExactly("b", "c");
+        ArgumentCaptor<String> subject = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+        verify(emailSender).send(eq("user@example.com"), subject.capture(), body.capture(), any());
+        assertThat(subject.getValue()).isEqualTo("2 of your SAM.gov queries have new results");
+        // b is listed under the first query that found it only
+        assertThat(body.getValue()).containsSubsequence("<h1>Roofs</h1>", "Notice a", "Notice b", "<h1>Sidewalks</h1>", "Notice c");
+        assertThat(body.getValue().split("Notice b", -1)).hasSize(2);
+    }
+
+    @Test
+    void digestRunsIdenticalSearchesOnce() throws Exception {
+        query.setQueryDescription("Roofs");
+        SamQuery same = digestQuery("n2", "Roofs again", query.getQueryUrl());
+        search(false, false, hit("a", now.minus(Duration.ofMinutes(10))));
+
+        processor().processDigest(List.of(query, same));
+
+        verify(pager).fetch(anyString(), any(), any());
+        assertThat(recordedIds(same)).containsExactly("a");
+        verify(emailSender).send(eq("user@example.com"), eq("Your SAM.gov query Roofs has new results"), any(), any());
+    }
+
+    @Test
+    void digestWithoutNewResultsSendsNothing() throws Exception {
+        query.setProcessedOpportunities(Set.of("a"));
+        search(false, false, hit("a", now.minus(Duration.ofMinutes(10))));
+
+        processor().processDigest(List.of(query));
+
+        verify(emailSender, never()).send(any(), any(), any(), any());
+        verify(writer).advanceWatermark(eq(query), any(), any());
+    }
+
+    @Test
+    void failedQueryIsLeftOutOfTheDigest() throws Exception {
+        SamQuery other = digestQuery("n2", "Sidewalks", "https://sam.gov/search/?index=opp&sort=-modifiedDate&keywords=sidewalk");
+        query.setQueryUrl("https://sam.gov/search/?index=opp&sort=-modifiedDate&keywords=roof");
+        when(pager.fetch(anyString(), any(), any())).thenAnswer(invocation -> {
+            if (invocation.<String>getArgument(0).contains("roof")) {
+                throw new IllegalStateException("Search failed");
+            }
+            return SearchPager.Results.complete(new ArrayList<>(List.of(hit("c", now.minus(Duration.ofMinutes(30))))));
+        });
+
+        processor().processDigest(List.of(query, other));
+
+        verify(emailSender).send(eq("user@example.com"), eq("Your SAM.gov query Sidewalks has new results"), any(), any());
+        verify(writer, never()).record(eq(query), any(), any(), any(), any(), any());
+    }
+
+    private void search(boolean truncated, boolean limited, SearchHit... hits) throws Exception {
+        when(pager.fetch(anyString(), any(), any()))
+            .thenReturn(new SearchPager.Results(new ArrayList<>(List.of(hits)), truncated, limited));
+    }
+
+    /**
+     * Answers every search with the results of the first keyword its URL contains.
+     */
+    private void searches(Map<String, List<SearchHit>> byKeyword) throws Exception {
+        when(pager.fetch(anyString(), any(), any())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            List<SearchHit> hits = byKeyword.entrySet().stream()
+                .filter(entry -> url.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(List.of());
+            return SearchPager.Results.complete(new ArrayList<>(hits));
+        });
+    }
+
+    private SamQuery digestQuery(String id, String description, String url) {
+        SamQuery other = new SamQuery();
+        other.setNotificationId(id);
+        other.setEmail(query.getEmail());
+        other.setQueryDescription(description);
+        other.setQueryUrl(url);
+        other.setLastProcessedAt(query.getLastProcessedAt());
+        return other;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> recordedIds(SamQuery userQuery) throws Exception {
+        ArgumentCaptor<List<String>> ids = ArgumentCaptor.forClass(List.class);
+        verify(writer).record(eq(userQuery), any(), ids.capture(), any(), any(), any());
+        return ids.getValue();
+    }
+
+    private Instant recordedWatermark() throws Exception {
+        ArgumentCaptor<Instant> watermark = ArgumentCaptor.forClass(Instant.class);
+        verify(writer).record(eq(query), any(), any(), any(), watermark.capture(), any());
+        return watermark.getValue();
+    }
+
+    private QueryProcessor processor() {
+        return processor(null);
+    }
+
+    private QueryProcessor processor(ProcessedOpportunityLoader lazyLoader) {
+        return new QueryProcessor(pager, null, new SearchWindow(true, Duration.ofHours(1), 7), enricher,
+            new ProcessedOpportunities.Policy(false, 7, 256, 0.001, 6), writer, lazyLoader, emailSender, RunMetrics.disabled(),
+            Span.NONE);
+    }
+
+    private static SearchHit hit(String id, Instant modified) {
+        return new SearchHit(id, "Notice " + id, false, "DEPT OF DEFENSE", modified.toString(), "o", List.of(), List.of(),
+            null, List.of(), true);
+    }
+}
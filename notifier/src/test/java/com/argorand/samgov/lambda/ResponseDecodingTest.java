@@ -0,0 +1,144 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class ResponseDecodingTest {
+
+    private static final String BODY = "{\"title\": \"R\u00e9paration du pont\"}";
+
+    @Test
+    void readsUncompressedBodiesAsUtf8() {
+        assertThat(readString(BODY.getBytes(StandardCharsets.UTF_8), null, "application/json")).isEqualTo(BODY);
+    }
+
+    @Test
+    void readsTheCharsetOfTheContentType() {
+        byte[] latin1 = BODY.getBytes(StandardCharsets.ISO_8859_1);
+
+        assertThat(readString(latin1, null, "application/json; charset=ISO-8859-1")).isEqualTo(BODY);
+        assertThat(readString(latin1, null, "application/json;charset=\"iso-8859-1\"")).isEqualTo(BODY);
+    }
+
+    @Test
+    void fallsBackToUtf8ForUnknownCharsets() {
+        assertThat(readString(BODY.getBytes(StandardCharsets.UTF_8), null, "application/json; charset=no-such-charset"))
+            .isEqualTo(BODY);
+    }
+
+    @Test
+    void decodesGzip() throws IOException {
+        assertThat(readString(gzip(BODY.getBytes(StandardCharsets.UTF_8)), "gzip", "application/json")).isEqualTo(BODY);
+        assertThat(readString(gzip(BODY.getBytes(StandardCharsets.UTF_8)), "x-gzip", null)).isEqualTo(BODY);
+    }
+
+    @Test
+    void decodesDeflate() throws IOException {
+        assertThat(readString(deflate(BODY.getBytes(StandardCharsets.UTF_8)), "Deflate", null)).isEqualTo(BODY);
+    }
+
+    @Test
+    void decodesCompressedBodiesWithTheirCharset() throws IOException {
+        assertThat(readString(gzip(BODY.getBytes(StandardCharsets.ISO_8859_1)), "gzip", "text/plain; charset=ISO-8859-1"))
+            .isEqualTo(BODY);
+    }
+
+    @Test
+    void passesUnknownEncodingsThrough() {
+        assertThat(readString(BODY.getBytes(StandardCharsets.UTF_8), "identity", null)).isEqualTo(BODY);
+    }
+
+    @Test
+    void decodesStreams() throws IOException {
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+
+        try (InputStream decoded = read(ResponseDecoding.ofInputStream(), gzip(body), "gzip", null)) {
+            assertThat(decoded.readAllBytes()).isEqualTo(body);
+        }
+        try (InputStream decoded = read(ResponseDecoding.ofInputStream(), deflate(body), "deflate", null)) {
+            assertThat(decoded.readAllBytes()).isEqualTo(body);
+        }
+        try (InputStream plain = read(ResponseDecoding.ofInputStream(), body, null, null)) {
+            assertThat(plain.readAllBytes()).isEqualTo(body);
+        }
+    }
+
+    private static String readString(byte[] body, String encoding, String contentType) {
+        return read(ResponseDecoding.ofString(), body, encoding, contentType);
+    }
+
+    /**
+     * Feeds {@code body} to the subscriber of {@code handler} the way the client does.
+     */
+    private static <T> T read(HttpResponse.BodyHandler<T> handler, byte[] body, String encoding, String contentType) {
+        Map<String, List<String>> headers = new HashMap<>();
+        if (encoding != null) {
+            headers.put("Content-Encoding", List.of(encoding));
+        }
+        if (contentType != null) {
+            headers.put("Content-Type", List.of(contentType));
+        }
+        HttpHeaders httpHeaders = HttpHeaders.of(headers, (name, value) -> true);
+        HttpResponse.BodySubscriber<T> subscriber = handler.apply(new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return httpHeaders;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        });
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onNext(List.of(ByteBuffer.wrap(body)));
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
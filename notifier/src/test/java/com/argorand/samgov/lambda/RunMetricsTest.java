@@ -0,0 +1,76 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class RunMetricsTest {
+
+    @Test
+    void countsAndKeepsEverySampleSorted() {
+        RunMetrics metrics = new RunMetrics();
+
+        metrics.increment(RunMetrics.Metric.QUERIES_PROCESSED);
+        metrics.add(RunMetrics.Metric.QUERIES_PROCESSED, 4);
+        for (int value : new int[] {30, 10, 20}) {
+            metrics.record(RunMetrics.Metric.DETAILS_LATENCY, value);
+        }
+
+        assertThat(metrics.count(RunMetrics.Metric.QUERIES_PROCESSED)).isEqualTo(5);
+        assertThat(metrics.values(RunMetrics.Metric.DETAILS_LATENCY)).containsExactly(10, 20, 30);
+        assertThat(metrics.values(RunMetrics.Metric.SEARCH_BYTES)).isEmpty();
+    }
+
+    @Test
+    void timesInMilliseconds() {
+        RunMetrics metrics = new RunMetrics();
+
+        metrics.time(RunMetrics.Metric.SCAN_PAGE_LATENCY, System.nanoTime() - 5_000_000);
+
+        assertThat(metrics.values(RunMetrics.Metric.SCAN_PAGE_LATENCY)[0]).isBetween(5.0, 5_000.0);
+    }
+
+    @Test
+    void disabledRecordsNothing() {
+        RunMetrics metrics = RunMetrics.disabled();
+
+        metrics.increment(RunMetrics.Metric.QUERIES_FAILED);
+        metrics.record(RunMetrics.Metric.PARSE_TIME, 1);
+        metrics.time(RunMetrics.Metric.PARSE_TIME, System.nanoTime());
+
+        assertThat(metrics.isEnabled()).isFalse();
+        assertThat(metrics.count(RunMetrics.Metric.QUERIES_FAILED)).isZero();
+        assertThat(metrics.values(RunMetrics.Metric.PARSE_TIME)).isEmpty();
+    }
+
+    @Test
+    void addsEverythingAnotherRunRecorded() {
+        RunMetrics total = new RunMetrics();
+        total.increment(RunMetrics.Metric.LOCAL_MATCHES);
+        total.record(RunMetrics.Metric.SEARCH_LATENCY, 3);
+        RunMetrics worker = new RunMetrics();
+        worker.add(RunMetrics.Metric.LOCAL_MATCHES, 2);
+        worker.record(RunMetrics.Metric.SEARCH_LATENCY, 1);
+        worker.record(RunMetrics.Metric.SEARCH_LATENCY, 2);
+
+        total.addAll(worker);
+
+        assertThat(total.count(RunMetrics.Metric.LOCAL_MATCHES)).isEqualTo(3);
+        assertThat(total.values(RunMetrics.Metric.SEARCH_LATENCY)).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void summarizesCountersAndPercentiles() {
+        RunMetrics metrics = new RunMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(RunMetrics.Metric.SEARCH_LATENCY, i);
+        }
+        metrics.increment(RunMetrics.Metric.QUERIES_SKIPPED);
+
+        assertThat(metrics.toString())
+            .contains("SearchLatency n=100 p50=50.0 ms p99=99.0 ms max=100.0 ms")
+            .contains("QueriesSkipped 1")
+            .contains("QueriesFailed 0")
+            .doesNotContain("ParseTime");
+    }
+}
@@ -0,0 +1,71 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+class ScanCheckpointsTest {
+
+    private static final Map<String, AttributeValue> POSITION = Map.of("notificationId", AttributeValue.fromS("n42"));
+
+    private final DynamoDbClient dynamoDbClient = mock(DynamoDbClient.class);
+    private final ScanCheckpoints checkpoints = new ScanCheckpoints(dynamoDbClient, "checkpoints");
+
+    // Checkpoint id to stored item
+    private final Map<String, Map<String, AttributeValue>> stored = new HashMap<>();
+
+    @Test
+    void savesAPositionUnderItsSegmentAndSegmentCount() {
+        checkpoints.save(Map.of(1, POSITION), 4);
+
+        ArgumentCaptor<PutItemRequest> put = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamoDbClient).putItem(put.capture());
+        assertThat(put.getValue().tableName()).isEqualTo("checkpoints");
+        assertThat(put.getValue().item().get(ScanCheckpoints.KEY).s()).isEqualTo("scan/4/1");
+        assertThat(put.getValue().item().get(ScanCheckpoints.LAST_EVALUATED_KEY).m()).isEqualTo(POSITION);
+        assertThat(put.getValue().item()).containsKey(ScanCheckpoints.UPDATED_AT);
+    }
+
+    @Test
+    void deletesTheCheckpointOfASegmentReadToItsEnd() {
+        checkpoints.save(Map.of(2, Map.of()), 4);
+
+        ArgumentCaptor<DeleteItemRequest> delete = ArgumentCaptor.forClass(DeleteItemRequest.class);
+        verify(dynamoDbClient).deleteItem(delete.capture());
+        assertThat(delete.getValue().key().get(ScanCheckpoints.KEY).s()).isEqualTo("scan/4/2");
+        verify(dynamoDbClient, never()).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void loadsTheCheckpointsOfTheSameSegmentCount() {
+        stored.put("scan/4/1", Map.of(ScanCheckpoints.KEY, AttributeValue.fromS("scan/4/1"),
+            ScanCheckpoints.LAST_EVALUATED_KEY, AttributeValue.fromM(POSITION)));
+        stored.put("scan/2/0", Map.of(ScanCheckpoints.KEY, AttributeValue.fromS("scan/2/0"),
+            ScanCheckpoints.LAST_EVALUATED_KEY, AttributeValue.fromM(POSITION)));
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenAnswer(invocation -> {
+            GetItemRequest request = invocation.getArgument(0);
+            assertThat(request.consistentRead()).isTrue();
+            Map<String, AttributeValue> item = stored.get(request.key().get(ScanCheckpoints.KEY).s());
+            return item == null ? GetItemResponse.builder().build() : GetItemResponse.builder().item(item).build();
+        });
+
+        assertThat(checkpoints.load(List.of(0, 1, 2), 4)).containsExactly(Map.entry(1, POSITION));
+    }
+}
@@ -0,0 +1,147 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.SearchHit;
+
+class SearchPagerTest {
+
+    private static final String SEARCH = "https://sam.gov/api/prod/sgs/v1/search/?index=opp&sort=-modifiedDate";
+
+    // Page number to body, pages without a body fail
+    private final Map<Integer, String> pages = new HashMap<>();
+    // Page number to the failure of a page without a body, an IOException by default
+    private final Map<Integer, Throwable> failures = new HashMap<>();
+
+    @Test
+    void readsEveryPage() throws Exception {
+        pages.put(0, page(0, 2, "a", "b"));
+        pages.put(1, page(1, 2, "c"));
+
+        SearchPager.Results results = pager(10).fetch(SEARCH, page -> false, Span.NONE);
+
+        assertThat(results.hits()).extracting(SearchHit::id).containsExactly("a", "b", "c");
+        assertThat(results.truncated()).isFalse();
+        assertThat(results.limited()).isFalse();
+    }
+
+    @Test
+    void failedPageTruncatesTheSearch() throws Exception {
+        pages.put(0, page(0, 3, "a", "b"));
+        pages.put(2, page(2, 3, "e"));
+
+        SearchPager.Results results = pager(10).fetch(SEARCH, page -> false, Span.NONE);
+
+        assertThat(results.hits()).extracting(SearchHit::id).containsExactly("a", "b");
+        assertThat(results.truncated()).isTrue();
+    }
+
+    @Test
+    void failedPageTruncatesTheAsyncSearch() {
+        pages.put(0, page(0, 3, "a", "b"));
+
+        SearchPager.Results results = pager(10).fetchAsync(SEARCH, page -> false, Span.NONE).join();
+
+        assertThat(results.hits()).extracting(SearchHit::id).containsExactly("a", "b");
+        assertThat(results.truncated()).isTrue();
+    }
+
+    @Test
+    void failedFirstPageFailsTheSearch() {
+        assertThatThrownBy(() -> pager(10).fetch(SEARCH, page -> false, Span.NONE)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void errorsAreRethrownUnchanged() {
+        failures.put(0, new StackOverflowError());
+
+        assertThatThrownBy(() -> pager(10).fetch(SEARCH, page -> false, Span.NONE)).isInstanceOf(StackOverflowError.class);
+    }
+
+    @Test
+    void errorOnALaterPageFailsTheSearch() {
+        pages.put(0, page(0, 3, "a", "b"));
+        failures.put(1, new StackOverflowError());
+
+        assertThatThrownBy(() -> pager(10).fetch(SEARCH, page -> false, Span.NONE)).isInstanceOf(StackOverflowError.class);
+        assertThatThrownBy(() -> pager(10).fetchAsync(SEARCH, page -> false, Span.NONE).join())
+            .hasCauseInstanceOf(StackOverflowError.class);
+    }
+
+    @Test
+    void pageLimitLimitsTheSearch() throws Exception {
+        pages.put(0, page(0, 3, "a"));
+        pages.put(1, page(1, 3, "b"));
+        pages.put(2, page(2, 3, "c"));
+
+        SearchPager.Results results = pager(2).fetch(SEARCH, page -> false, Span.NONE);
+
+        assertThat(results.hits()).extracting(SearchHit::id).containsExactly("a", "b");
+        assertThat(results.truncated()).isFalse();
+        assertThat(results.limited()).isTrue();
+    }
+
+    @Test
+    void processedPageEndsTheSearch() throws Exception {
+        pages.put(0, page(0, 2, "a"));
+        pages.put(1, page(1, 2, "b"));
+
+        SearchPager.Results results = pager(10).fetch(SEARCH, page -> true, Span.NONE);
+
+        assertThat(results.hits()).extracting(SearchHit::id).containsExactly("a");
+        assertThat(results.truncated()).isFalse();
+    }
+
+    private SearchPager pager(int maxPages) {
+        HttpClient client = mock(HttpClient.class);
+        when(client.sendAsync(any(), any())).thenAnswer(invocation -> respond(invocation.getArgument(0)));
+        AdaptiveRequestController controller = new AdaptiveRequestController(client,
+            AdaptiveRequestController.Policy.passThrough(Duration.ofSeconds(5)), null, false);
+        return new SearchPager(controller, new SearchResponseParser(NotifierComponents.objectMapper()), false, 0, maxPages,
+            URI.create("https://sam.gov"), RunMetrics.disabled());
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<HttpResponse<String>> respond(HttpRequest request) {
+        String query = request.uri().getRawQuery();
+        int number = Integer.parseInt(query.replaceAll(".*\\bpage=(\\d+).*", "$1"));
+        String body = pages.get(number);
+        if (body == null) {
+            return CompletableFuture.failedFuture(failures.getOrDefault(number, new IOException("Connection reset")));
+        }
+        HttpResponse<String> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        when(response.body()).thenReturn(body);
+        return CompletableFuture.completedFuture(response);
+    }
+
+    private static String page(int number, int totalPages, String... ids) {
+        String results = IntStream.range(0, ids.length)
+            .mapToObj(i -> String.format("{\"_id\": \"%s\", \"title\": \"Notice %s\", \"modifiedDate\": \"2026-10-18T08:00:00.000+00:00\"}",
+                ids[i], ids[i]))
+            .collect(Collectors.joining(", "));
+        return String.format("{\"_embedded\": {\"results\": [%s]}, "
+            + "\"page\": {\"size\": 2, \"totalElements\": %d, \"totalPages\": %d, \"number\": %d, \"maxAllowedRecords\": 10000}}",
+            results, totalPages * 2, totalPages, number);
+    }
+}
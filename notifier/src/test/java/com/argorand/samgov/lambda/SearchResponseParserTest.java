@@ -0,0 +1,135 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.SearchHit;
+import com.argorand.samgov.beans.SearchPage;
+
+class SearchResponseParserTest {
+
+    private static final SearchResponseParser PARSER = new SearchResponseParser(NotifierComponents.objectMapper());
+
+    private static String body;
+    private static SearchPage databind;
+    private static SearchPage streaming;
+
+    @BeforeAll
+    static void parseFixture() throws IOException {
+        try (InputStream fixture = SearchResponseParserTest.class.getResourceAsStream("/fixtures/search-response.json")) {
+            body = new String(fixture.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        databind = PARSER.parse(body);
+        streaming = PARSER.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void streamingParseMatchesDatabind() {
+        assertThat(streaming.hits()).hasSize(6).isEqualTo(databind.hits());
+        assertThat(streaming.page()).usingRecursiveComparison().isEqualTo(databind.page());
+        assertThat(streaming.page().getTotalPages()).isEqualTo(7);
+        assertThat(streaming.page().getNumber()).isEqualTo(2);
+        assertThat(streaming.page().getMaxAllowedRecords()).isEqualTo(10000);
+    }
+
+    @Test
+    void readsACompleteResult() {
+        assertThat(hit("a1b2c3d4e5f60718293a4b5c6d7e8f90")).isEqualTo(new SearchHit("a1b2c3d4e5f60718293a4b5c6d7e8f90",
+            "Cloud Hosting Services", true, "DEPT OF DEFENSE", "2026-10-18T08:00:00.000+00:00", "o", List.of("541512"),
+            List.of("D302"), "SBA", List.of("100000000", "100000017", "100000900"), true));
+    }
+
+    @Test
+    void keepsAMissingOrNullModifiedDateAsNull() {
+        assertThat(hit("b1b2c3d4e5f60718293a4b5c6d7e8f91").modifiedDate()).isNull();
+        assertThat(hit("c1b2c3d4e5f60718293a4b5c6d7e8f92").modifiedDate()).isNull();
+    }
+
+    @Test
+    void countsAnyNonNullDescriptionsValue() {
+        assertThat(hit("a1b2c3d4e5f60718293a4b5c6d7e8f90").hasDescriptions()).isTrue();
+        assertThat(hit("b1b2c3d4e5f60718293a4b5c6d7e8f91").hasDescriptions()).as("empty").isTrue();
+        assertThat(hit("c1b2c3d4e5f60718293a4b5c6d7e8f92").hasDescriptions()).as("null").isFalse();
+        assertThat(hit("d1b2c3d4e5f60718293a4b5c6d7e8f93").hasDescriptions()).as("missing").isFalse();
+    }
+
+    @Test
+    void readsTheOrganizationHierarchy() {
+        SearchHit withoutHierarchy = hit("c1b2c3d4e5f60718293a4b5c6d7e8f92");
+        assertThat(withoutHierarchy.organizationName()).isNull();
+        assertThat(withoutHierarchy.organizationIds()).isEmpty();
+
+        assertThat(hit("d1b2c3d4e5f60718293a4b5c6d7e8f93").organizationIds()).isEmpty();
+
+        SearchHit withoutLevelOne = hit("e1b2c3d4e5f60718293a4b5c6d7e8f94");
+        assertThat(withoutLevelOne.organizationName()).isNull();
+        assertThat(withoutLevelOne.organizationIds()).containsExactly("100000017");
+
+        // Only the first level one organization names the result
+        assertThat(hit("f1b2c3d4e5f60718293a4b5c6d7e8f95").organizationName()).isNull();
+    }
+
+    @Test
+    void skipsOrganizationFieldsThatAreNotScalars() {
+        String body = """
+            {"_embedded": {"results": [{"_id": "n1",
+              "organizationHierarchy": [
+                {"level": {"value": 1, "name": "NESTED"}, "name": ["A", "B"], "organizationId": {"organizationId": "nested"}},
+                {"level": 1, "name": "DEPT OF DEFENSE", "organizationId": "100000000"}],
+              "title": "Read after the hierarchy"}]}}
+            """;
+
+        SearchHit hit = PARSER.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))).hits().get(0);
+
+        assertThat(hit.organizationName()).isEqualTo("DEPT OF DEFENSE");
+        assertThat(hit.organizationIds()).containsExactly("100000000");
+        assertThat(hit.title()).isEqualTo("Read after the hierarchy");
+    }
+
+    @Test
+    void readsCodesInEveryShape() {
+        SearchHit scalarNaics = hit("b1b2c3d4e5f60718293a4b5c6d7e8f91");
+        assertThat(scalarNaics.naics()).containsExactly("236220");
+        assertThat(scalarNaics.setAside()).isNull();
+        assertThat(scalarNaics.active()).isFalse();
+
+        SearchHit withoutCodes = hit("c1b2c3d4e5f60718293a4b5c6d7e8f92");
+        assertThat(withoutCodes.naics()).isEmpty();
+        assertThat(withoutCodes.psc()).isEmpty();
+        assertThat(withoutCodes.noticeType()).isNull();
+        assertThat(withoutCodes.active()).isFalse();
+
+        SearchHit plainSetAside = hit("d1b2c3d4e5f60718293a4b5c6d7e8f93");
+        assertThat(plainSetAside.setAside()).isEqualTo("8A");
+        assertThat(plainSetAside.naics()).containsExactly("561720", "561790");
+        assertThat(plainSetAside.psc()).containsExactly("S201");
+
+        assertThat(hit("e1b2c3d4e5f60718293a4b5c6d7e8f94").noticeType()).isNull();
+    }
+
+    @Test
+    void readsAResponseWithoutPagingOrResults() {
+        String empty = "{\"_embedded\": {\"results\": []}}";
+
+        SearchPage parsed = PARSER.parse(new ByteArrayInputStream(empty.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(parsed.hits()).isEmpty();
+        assertThat(parsed.page()).isNull();
+        assertThat(PARSER.parse(empty).page()).isNull();
+    }
+
+    // Both parsers have to agree for the assertions on one of them to hold for the other
+    private static SearchHit hit(String id) {
+        SearchHit hit = streaming.hits().stream().filter(h -> id.equals(h.id())).findFirst().orElseThrow();
+        assertThat(hit).isEqualTo(databind.hits().stream().filter(h -> id.equals(h.id())).findFirst().orElseThrow());
+        return hit;
+    }
+}
@@ -0,0 +1,207 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.argorand.samgov.beans.dynamodb.SamQuery;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class SegmentedScanTest {
+
+    @SuppressWarnings("unchecked")
+    private final DynamoDbTable<SamQuery> table = mock(DynamoDbTable.class);
+
+    // The pages of segment 0 in scan order, every page but the last ends at its last item
+    private final List<List<String>> pages = List.of(List.of("a", "b"), List.of("c", "d"), List.of("e"));
+    private int failAfterPages = Integer.MAX_VALUE;
+    // The single page of every other segment
+    private final Map<Integer, List<String>> otherSegments = new HashMap<>();
+    private final List<ScanEnhancedRequest> requests = new ArrayList<>();
+    private final Set<Thread> scanThreads = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() {
+        when(table.tableName()).thenReturn("queries");
+        when(table.tableSchema()).thenReturn(TableSchema.fromBean(SamQuery.class));
+        when(table.keyFrom(any())).thenAnswer(invocation ->
+            Key.builder().partitionValue(((SamQuery) invocation.getArgument(0)).getNotificationId()).build());
+        when(table.scan(any(ScanEnhancedRequest.class))).thenAnswer(invocation -> scan(invocation.getArgument(0)));
+    }
+
+    @Test
+    void readsTheSegmentFromItsStart() {
+        try (SegmentedScan scan = scan(Map.of())) {
+            assertThat(ids(scan.iterator(), Integer.MAX_VALUE)).containsExactly("a", "b", "c", "d", "e");
+            assertThat(scan.positions()).containsExactly(Map.entry(0, Map.of()));
+        }
+    }
+
+    @Test
+    void resumedSegmentWrapsAroundUpToItsCheckpoint() {
+        try (SegmentedScan scan = scan(Map.of(0, key("b")))) {
+            assertThat(ids(scan.iterator(), Integer.MAX_VALUE)).containsExactly("c", "d", "e", "a");
+            assertThat(scan.positions()).containsExactly(Map.entry(0, Map.of()));
+        }
+    }
+
+    @Test
+    void tracksTheLastPageHandedOut() {
+        try (SegmentedScan scan = scan(Map.of())) {
+            Iterator<SamQuery> items = scan.iterator();
+
+            assertThat(ids(items, 1)).containsExactly("a");
+            assertThat(scan.positions()).isEmpty();
+            assertThat(ids(items, 3)).containsExactly("b", "c", "d");
+            assertThat(scan.positions()).containsExactly(Map.entry(0, key("d")));
+        }
+    }
+
+    @Test
+    void endOfTheFirstPassMovesTheCheckpointToTheStart() {
+        try (SegmentedScan scan = scan(Map.of(0, key("b")))) {
+            Iterator<SamQuery> items = scan.iterator();
+
+            assertThat(ids(items, 2)).containsExactly("c", "d");
+            assertThat(scan.positions()).containsExactly(Map.entry(0, key("d")));
+            assertThat(ids(items, 1)).containsExactly("e");
+            assertThat(scan.positions()).containsExactly(Map.entry(0, Map.of()));
+        }
+    }
+
+    @Test
+    void failedSegmentKeepsItsCheckpoint() {
+        failAfterPages = 1;
+        try (SegmentedScan scan = scan(Map.of())) {
+            assertThat(ids(scan.iterator(), Integer.MAX_VALUE)).containsExactly("a", "b");
+            // Page "b" was handed out, but the segment is left where the run started it
+            assertThat(scan.positions()).isEmpty();
+        }
+    }
+
+    @Test
+    void scansOnlyItsSegments() {
+        try (SegmentedScan scan = new SegmentedScan(table, List.of(0, 2), 4, List.of(), Map.of(), RunMetrics.disabled(), Span.NONE)) {
+            // Segment 2 is empty
+            assertThat(ids(scan.iterator(), Integer.MAX_VALUE)).containsExactly("a", "b", "c", "d", "e");
+            assertThat(scan.positions()).containsOnlyKeys(0, 2);
+        }
+    }
+
+    @Test
+    void readsEverySegmentOnItsOwnVirtualThread() {
+        otherSegments.put(1, List.of("x", "y"));
+        otherSegments.put(2, List.of("z"));
+
+        try (SegmentedScan scan = new SegmentedScan(table, 3, List.of("notificationId", "version"))) {
+            assertThat(ids(scan.iterator(), Integer.MAX_VALUE)).containsExactlyInAnyOrder("a", "b", "c", "d", "e", "x", "y", "z");
+            assertThat(scan.positions()).containsOnlyKeys(0, 1, 2);
+        }
+        assertThat(scanThreads).hasSize(3).allMatch(Thread::isVirtual);
+        assertThat(requests).extracting(ScanEnhancedRequest::segment).containsExactlyInAnyOrder(0, 1, 2);
+        assertThat(requests).allSatisfy(request -> {
+            assertThat(request.totalSegments()).isEqualTo(3);
+            assertThat(request.attributesToProject()).containsExactly("notificationId", "version");
+        });
+    }
+
+    @Test
+    void keepsTheOrderOfEachSegment() {
+        otherSegments.put(1, List.of("v", "w", "x", "y", "z"));
+
+        try (SegmentedScan scan = new SegmentedScan(table, 2, List.of())) {
+            List<String> ids = ids(scan.iterator(), Integer.MAX_VALUE);
+
+            assertThat(ids.stream().filter(id -> id.compareTo("v") < 0)).containsExactly("a", "b", "c", "d", "e");
+            assertThat(ids.stream().filter(id -> id.compareTo("v") >= 0)).containsExactly("v", "w", "x", "y", "z");
+        }
+    }
+
+    @Test
+    void rejectsSegmentsOutsideTheTable() {
+        assertThatThrownBy(() -> new SegmentedScan(table, List.of(4), 4, List.of(), Map.of(), RunMetrics.disabled(), Span.NONE))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SegmentedScan(table, List.of(), 4, List.of(), Map.of(), RunMetrics.disabled(), Span.NONE))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private SegmentedScan scan(Map<Integer, Map<String, AttributeValue>> startKeys) {
+        return new SegmentedScan(table, List.of(0), 1, List.of(), startKeys, RunMetrics.disabled(), Span.NONE);
+    }
+
+    private PageIterable<SamQuery> scan(ScanEnhancedRequest request) {
+        synchronized (requests) {
+            requests.add(request);
+        }
+        scanThreads.add(Thread.currentThread());
+        List<Page<SamQuery>> result = new ArrayList<>();
+        if (otherSegments.containsKey(request.segment())) {
+            result.add(Page.create(otherSegments.get(request.segment()).stream().map(SegmentedScanTest::query).toList(), null));
+        } else if (request.segment() == 0) {
+            boolean started = request.exclusiveStartKey() == null;
+            for (int i = 0; i < pages.size(); i++) {
+                List<String> ids = pages.get(i);
+                Map<String, AttributeValue> pageEnd = i == pages.size() - 1 ? null : key(ids.get(ids.size() - 1));
+                if (started) {
+                    result.add(Page.create(ids.stream().map(SegmentedScanTest::query).toList(), pageEnd));
+                }
+                started |= pageEnd != null && pageEnd.equals(request.exclusiveStartKey());
+            }
+        }
+        int failAfter = failAfterPages;
+        return PageIterable.create(() -> new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next >= failAfter) {
+                    throw new IllegalStateException("Scan failed");
+                }
+                return next < result.size();
+            }
+
+            @Override
+            public Page<SamQuery> next() {
+                return result.get(next++);
+            }
+        });
+    }
+
+    private static List<String> ids(Iterator<SamQuery> items, int max) {
+        List<String> ids = new ArrayList<>();
+        while (ids.size() < max && items.hasNext()) {
+            ids.add(items.next().getNotificationId());
+        }
+        return ids;
+    }
+
+    private static SamQuery query(String id) {
+        SamQuery query = new SamQuery();
+        query.setNotificationId(id);
+        return query;
+    }
+
+    private static Map<String, AttributeValue> key(String id) {
+        return Map.of("notificationId", AttributeValue.fromS(id));
+    }
+}
@@ -0,0 +1,122 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+
+class SpanTest {
+
+    private static final String TRACE_ID = "1-5759e988-bd862e3fe1be46a994272793";
+
+    private final List<Map<String, Object>> exported = new ArrayList<>();
+    private final Span root = new Span(exported::add, TRACE_ID, null, "checkQueryUpdates", null);
+
+    @Test
+    void rootSpanIsASegment() {
+        root.annotate("segments", 4).end();
+
+        Map<String, Object> document = exported.get(0);
+        assertThat(document).containsEntry("name", "checkQueryUpdates").containsEntry("trace_id", TRACE_ID)
+            .doesNotContainKeys("parent_id", "type", "namespace", "fault", "error");
+        assertThat((String) document.get("id")).matches("[0-9a-f]{16}");
+        assertThat((double) document.get("end_time")).isGreaterThanOrEqualTo((double) document.get("start_time"));
+        assertThat(document.get("annotations")).isEqualTo(Map.of("segments", 4));
+    }
+
+    @Test
+    void childIsASubsegmentOfItsParent() {
+        Span query = root.child("query", null);
+        Span search = query.child("sam.gov", Span.REMOTE);
+
+        search.end();
+        query.end();
+        root.end();
+
+        assertThat(exported).hasSize(3);
+        assertThat(exported.get(0)).containsEntry("parent_id", exported.get(1).get("id")).containsEntry("type", "subsegment")
+            .containsEntry("namespace", "remote").containsEntry("trace_id", TRACE_ID);
+        assertThat(exported.get(1)).containsEntry("parent_id", exported.get(2).get("id")).containsEntry("type", "subsegment")
+            .doesNotContainKey("namespace");
+    }
+
+    @Test
+    void httpCallCarriesRequestAndResponse() {
+        root.child("sam.gov", Span.REMOTE).http("GET", URI.create("https://sam.gov/api/prod/sgs/v1/search/")).status(200).end();
+
+        assertThat(exported.get(0).get("http")).isEqualTo(Map.of(
+            "request", Map.of("method", "GET", "url", "https://sam.gov/api/prod/sgs/v1/search/"),
+            "response", Map.of("status", 200)));
+        assertThat(exported.get(0)).doesNotContainKeys("error", "fault", "throttle");
+    }
+
+    @Test
+    void awsCallCarriesOperationAndTable() {
+        root.child("DynamoDB", Span.AWS).aws("UpdateItem", "queries").end();
+        root.child("SES", Span.AWS).aws("SendEmail", null).end();
+
+        assertThat(exported.get(0).get("aws")).isEqualTo(Map.of("operation", "UpdateItem", "table_name", "queries"));
+        assertThat(exported.get(0)).containsEntry("namespace", "aws");
+        assertThat(exported.get(1).get("aws")).isEqualTo(Map.of("operation", "SendEmail"));
+    }
+
+    @Test
+    void statusMarksThrottlesErrorsAndFaults() {
+        root.child("throttled", Span.REMOTE).status(429).end();
+        root.child("missing", Span.REMOTE).status(404).end();
+        root.child("unavailable", Span.REMOTE).status(503).end();
+
+        assertThat(exported.get(0)).containsEntry("throttle", true).containsEntry("error", true).doesNotContainKey("fault");
+        assertThat(exported.get(1)).containsEntry("error", true).doesNotContainKeys("throttle", "fault");
+        assertThat(exported.get(2)).containsEntry("fault", true).doesNotContainKeys("throttle", "error");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failureIsAFaultWithItsCause() {
+        root.end(new CompletionException(new IllegalStateException("Search failed")));
+
+        assertThat(exported.get(0)).containsEntry("fault", true);
+        Map<String, Object> exception = ((List<Map<String, Object>>) ((Map<String, Object>) exported.get(0).get("cause"))
+            .get("exceptions")).get(0);
+        assertThat(exception).containsEntry("type", IllegalStateException.class.getName())
+            .containsEntry("message", "Search failed");
+    }
+
+    @Test
+    void onlyTheFirstEndIsExported() {
+        root.end();
+        root.end(new IllegalStateException("Too late"));
+
+        assertThat(exported).hasSize(1);
+        assertThat(exported.get(0)).doesNotContainKey("fault");
+    }
+
+    @Test
+    void endsWhenTheFutureCompletes() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> ended = root.endOn(future);
+
+        assertThat(exported).isEmpty();
+        future.completeExceptionally(new IllegalStateException("Failed"));
+
+        assertThat(ended).isCompletedExceptionally();
+        assertThat(exported.get(0)).containsEntry("fault", true);
+    }
+
+    @Test
+    void noneRecordsNothing() {
+        Span child = Span.NONE.child("query", null).annotate("notificationId", "n1").http("GET", URI.create("https://sam.gov"));
+
+        child.end();
+
+        assertThat(child).isSameAs(Span.NONE);
+        assertThat(child.isRecording()).isFalse();
+    }
+}
@@ -0,0 +1,62 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private long now = 1_000 * SECOND;
+
+    @Test
+    void burstUpToTheCapacityDoesNotWait() {
+        TokenBucket bucket = new TokenBucket(2, 3, () -> now);
+
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isEqualTo(SECOND / 2);
+    }
+
+    @Test
+    void waitingCallersAreServedAtTheRate() {
+        TokenBucket bucket = new TokenBucket(4, 1, () -> now);
+
+        assertThat(bucket.reserve()).isZero();
+        // Each caller takes a token on credit, so the waits add up
+        assertThat(bucket.reserve()).isEqualTo(SECOND / 4);
+        assertThat(bucket.reserve()).isEqualTo(SECOND / 2);
+    }
+
+    @Test
+    void refillsWithTheElapsedTime() {
+        TokenBucket bucket = new TokenBucket(10, 1, () -> now);
+        bucket.reserve();
+
+        now += SECOND / 20;
+        assertThat(bucket.reserve()).isEqualTo(SECOND / 20);
+
+        now += SECOND;
+        assertThat(bucket.reserve()).isZero();
+    }
+
+    @Test
+    void neverRefillsPastTheCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 2, () -> now);
+
+        now += 60 * SECOND;
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isEqualTo(SECOND / 10);
+    }
+
+    @Test
+    void rejectsANonPositiveRate() {
+        assertThatThrownBy(() -> new TokenBucket(0, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,62 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TracerTest {
+
+    private final List<Map<String, Object>> exported = new ArrayList<>();
+    private final Tracer tracer = new Tracer(exported::add);
+
+    @AfterEach
+    void clearTraceHeader() {
+        System.clearProperty(Tracer.TRACE_HEADER_PROPERTY);
+    }
+
+    @Test
+    void runContinuesTheTraceOfTheInvocation() {
+        System.setProperty(Tracer.TRACE_HEADER_PROPERTY,
+            "Root=1-5759e988-bd862e3fe1be46a994272793;Parent=53995c3f42cd8ad8;Sampled=1");
+
+        tracer.startRun("checkQueryUpdates").end();
+
+        assertThat(exported.get(0)).containsEntry("trace_id", "1-5759e988-bd862e3fe1be46a994272793")
+            .containsEntry("parent_id", "53995c3f42cd8ad8").containsEntry("type", "subsegment")
+            .containsEntry("name", "checkQueryUpdates");
+    }
+
+    @Test
+    void unsampledInvocationIsNotRecorded() {
+        System.setProperty(Tracer.TRACE_HEADER_PROPERTY,
+            "Root=1-5759e988-bd862e3fe1be46a994272793;Parent=53995c3f42cd8ad8;Sampled=0");
+
+        Span run = tracer.startRun("checkQueryUpdates");
+        run.end();
+
+        assertThat(run).isSameAs(Span.NONE);
+        assertThat(exported).isEmpty();
+    }
+
+    @Test
+    void runWithoutATraceHeaderStartsANewTrace() {
+        // Without a parent the header cannot be continued
+        System.setProperty(Tracer.TRACE_HEADER_PROPERTY, "Root=1-5759e988-bd862e3fe1be46a994272793");
+
+        tracer.startRun("checkQueryUpdates").end();
+
+        assertThat((String) exported.get(0).get("trace_id")).matches("1-[0-9a-f]{8}-[0-9a-f]{24}")
+            .isNotEqualTo("1-5759e988-bd862e3fe1be46a994272793");
+        assertThat(exported.get(0)).doesNotContainKeys("parent_id", "type");
+    }
+
+    @Test
+    void disabledTracerRecordsNothing() {
+        assertThat(Tracer.disabled().startRun("checkQueryUpdates")).isSameAs(Span.NONE);
+    }
+}
@@ -0,0 +1,35 @@
+package com.argorand.samgov.lambda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import tools.jackson.databind.JsonNode;
+
+class XRayUdpExporterTest {
+
+    @Test
+    void sendsEveryDocumentAsOneDatagramWithTheDaemonHeader() throws Exception {
+        try (DatagramChannel daemon = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0))) {
+            int port = ((InetSocketAddress) daemon.getLocalAddress()).getPort();
+            XRayUdpExporter exporter = new XRayUdpExporter(NotifierComponents.objectMapper(),
+                "tcp:127.0.0.1:2000 udp:127.0.0.1:" + port);
+
+            exporter.export(Map.of("name", "checkQueryUpdates", "id", "53995c3f42cd8ad8"));
+
+            ByteBuffer received = ByteBuffer.allocate(65_536);
+            daemon.receive(received);
+            String[] datagram = new String(received.array(), 0, received.position(), StandardCharsets.UTF_8).split("\n", 2);
+            assertThat(datagram[0]).isEqualTo("{\"format\": \"json\", \"version\": 1}");
+            JsonNode document = NotifierComponents.objectMapper().readTree(datagram[1]);
+            assertThat(document.get("name").asString()).isEqualTo("checkQueryUpdates");
+            assertThat(document.get("id").asString()).isEqualTo("53995c3f42cd8ad8");
+        }
+    }
+}
@@ -1,6 +1,13 @@
 locals {
   schedule_expression = "rate(30 minutes)"
   function_version    = "0.4.4-SNAPSHOT"
+  // Scheduled function coordinates workers instead of processing the whole table itself
+  fanout_enabled      = false
+  worker_function     = "samgov_notifier_worker"
+  // Plain handler in the jar without Spring instead of the Spring Cloud Function invoker
+  slim_handler        = false
+  function_handler    = local.slim_handler ? "com.argorand.samgov.lambda.NotifierHandler::handleRequest" : "org.springframework.cloud.function.adapter.aws.FunctionInvoker"
+  function_jar        = "samgov-${local.function_version}-${local.slim_handler ? "slim" : "aws"}.jar"
 }
 
 data "aws_caller_identity" "current" {}
@@ -65,7 +72,7 @@ resource "aws_s3_bucket_server_side_encryption_configuration" "argorand_lambdas_
 resource "aws_lambda_function" "samgov_notifier" {
   function_name = "samgov_notifier"
   runtime       = "java25"
-  handler       = "org.springframework.cloud.function.adapter.aws.FunctionInvoker"
+  handler       = local.function_handler
   role          = aws_iam_role.lambda_execution_role.arn
   architectures = [ "arm64" ]
   timeout       = 120
@@ -86,7 +93,7 @@ resource "aws_lambda_function" "samgov_notifier" {
   # }
 
   s3_bucket = aws_s3_bucket.argorand_lambdas_repository.bucket
-  s3_key    = "samgov-${local.function_version}-aws.jar"
+  s3_key    = local.function_jar
 
   environment {
     variables = {
@@ -96,10 +103,55 @@ resource "aws_lambda_function" "samgov_notifier" {
       RANDOM_VAR             = "42873498237987"
       LOGGING_LEVEL_SOFTWARE_AMAZON_AWSSDK = "DEBUG"
       AWS_DEFAULTS_MODE      = "standard"
+      SPRING_CLOUD_FUNCTION_DEFINITION = local.fanout_enabled ? "coordinateQueryUpdates" : "checkQueryUpdates"
+      SAMGOV_TIME_BUDGET               = "90s"
+      SAMGOV_CHECKPOINT_TABLE          = aws_dynamodb_table.samgov-checkpoints.name
+      SAMGOV_METRICS_SINK              = "emf"
+      SAMGOV_TRACING_EXPORTER          = "xray"
+      SAMGOV_FANOUT_WORKER_FUNCTION    = local.worker_function
     }
   }
 }
 
+resource "aws_lambda_function" "samgov_notifier_worker" {
+  function_name = local.worker_function
+  runtime       = "java25"
+  handler       = local.function_handler
+  role          = aws_iam_role.lambda_execution_role.arn
+  architectures = [ "arm64" ]
+  timeout       = 120
+  memory_size   = 4096
+  publish       = true
+
+  tracing_config {
+    mode = "Active"
+  }
+
+  s3_bucket = aws_s3_bucket.argorand_lambdas_repository.bucket
+  s3_key    = local.function_jar
+
+  environment {
+    variables = {
+      SAVED_QUERIES_TABLE    = aws_dynamodb_table.samgov-v2.name
+      SPRING_PROFILES_ACTIVE = "prod"
+      SES_SENDER             = "noreply@argorand.io"
+      AWS_DEFAULTS_MODE      = "standard"
+      SPRING_CLOUD_FUNCTION_DEFINITION = "processQueryPartition"
+      SAMGOV_TIME_BUDGET               = "90s"
+      SAMGOV_CHECKPOINT_TABLE          = aws_dynamodb_table.samgov-checkpoints.name
+      SAMGOV_METRICS_SINK              = "emf"
+      SAMGOV_TRACING_EXPORTER          = "xray"
+    }
+  }
+}
+
+resource "aws_lambda_function_event_invoke_config" "samgov_notifier_worker" {
+  function_name                = aws_lambda_function.samgov_notifier_worker.function_name
+  // A retried partition would find its notified opportunities already recorded
+  maximum_retry_attempts       = 1
+  maximum_event_age_in_seconds = 900
+}
+
 resource "aws_dynamodb_table" "samgov" {
   name                        = "samgov"
   billing_mode                = "PROVISIONED"
@@ -121,6 +173,18 @@ resource "aws_dynamodb_table" "samgov" {
 
 }
 
+resource "aws_dynamodb_table" "samgov-checkpoints" {
+  name         = "samgov-checkpoints"
+  billing_mode = "PAY_PER_REQUEST"
+
+  attribute {
+    name = "checkpointId"
+    type = "S"
+  }
+
+  hash_key = "checkpointId"
+}
+
 resource "aws_dynamodb_table" "samgov-v2" {
   name                        = "samgov-v2"
   billing_mode                = "PROVISIONED"
@@ -236,6 +300,7 @@ resource "aws_iam_policy" "lambda_permissions" {
       {
         Action = [
           "dynamodb:GetItem",
+          "dynamodb:BatchGetItem",
           "dynamodb:Query",
           "dynamodb:Scan",
           "dynamodb:UpdateItem"
@@ -256,6 +321,33 @@ resource "aws_iam_policy" "lambda_permissions" {
           "arn:aws:ses:us-east-1:${data.aws_caller_identity.current.account_id}:identity/argorand.io"
         ]
       },
+      {
+        Action = [
+          "dynamodb:GetItem",
+          "dynamodb:PutItem",
+          "dynamodb:DeleteItem"
+        ],
+        Effect   = "Allow",
+        Resource = aws_dynamodb_table.samgov-checkpoints.arn
+      },
+      {
+        Action   = "lambda:InvokeFunction",
+        Effect   = "Allow",
+        Resource = "arn:aws:lambda:us-east-1:${data.aws_caller_identity.current.account_id}:function:${local.worker_function}"
+      },
+      {
+        Action = [
+          "xray:PutTraceSegments",
+          "xray:PutTelemetryRecords"
+        ],
+        Effect   = "Allow",
+        Resource = "*"
+      },
+      {
+        Action   = "ses:GetSendQuota",
+        Effect   = "Allow",
+        Resource = "*"
+      },
       {
         Action = [
           "s3:GetObject"